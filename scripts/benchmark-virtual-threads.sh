@@ -0,0 +1,84 @@
+#!/usr/bin/env bash
+# Compares throughput and latency with platform and virtual request threads under many concurrent
+# connections. Starts the packaged application once per mode against the configured MongoDB, logs in,
+# and drives one endpoint with wrk (https://github.com/wg/wrk).
+#
+#   mvn -B package -DskipTests
+#   ADMIN_USERNAME=admin@example.com ADMIN_PASSWORD=secret scripts/benchmark-virtual-threads.sh
+#
+# Settings (environment): CONNECTIONS (5000), THREADS (8), DURATION (60s), WARMUP (15s),
+# ENDPOINT (/api/v1/users?page=0&size=10), PORT (8080), JAR (target/tradexcelsior-*.jar).
+# 5000 connections need a higher open-file limit than most shells default to (ulimit -n).
+set -euo pipefail
+
+CONNECTIONS=${CONNECTIONS:-5000}
+THREADS=${THREADS:-8}
+DURATION=${DURATION:-60s}
+WARMUP=${WARMUP:-15s}
+ENDPOINT=${ENDPOINT:-/api/v1/users?page=0&size=10}
+PORT=${PORT:-8080}
+JAR=${JAR:-$(ls target/tradexcelsior-*.jar | grep -v plain | head -n 1)}
+RESULTS=${RESULTS:-target/benchmark}
+
+: "${ADMIN_USERNAME:?set ADMIN_USERNAME}"
+: "${ADMIN_PASSWORD:?set ADMIN_PASSWORD}"
+command -v wrk >/dev/null || { echo "wrk is required" >&2; exit 1; }
+
+ulimit -n $((CONNECTIONS * 2 + 1024)) 2>/dev/null || echo "warning: could not raise the open-file limit to fit $CONNECTIONS connections" >&2
+mkdir -p "$RESULTS"
+BASE_URL="http://localhost:$PORT"
+
+run_mode() {
+  local mode=$1 virtual=$2
+  local log="$RESULTS/$mode-app.log"
+
+  echo "=== $mode threads ==="
+  # Tomcat accepts up to max-connections sockets; with platform threads at most threads.max are served at once
+  java -jar "$JAR" \
+    --server.port="$PORT" \
+    --spring.threads.virtual.enabled="$virtual" \
+    --diagnostics.virtual-threads.pinning.enabled="$virtual" \
+    --server.tomcat.max-connections=$((CONNECTIONS + 1000)) \
+    --server.tomcat.accept-count=1000 \
+    --changes.enabled=false \
+    --email.outbox.enabled=false \
+    >"$log" 2>&1 &
+  local pid=$!
+  trap "kill $pid 2>/dev/null || true" EXIT
+
+  for _ in $(seq 1 60); do
+    curl -s -o /dev/null "$BASE_URL/auth/login" -X POST -H 'Content-Type: application/json' -d '{}' && break
+    sleep 1
+  done
+
+  local token
+  token=$(curl -s "$BASE_URL/auth/login" -X POST -H 'Content-Type: application/json' \
+    -d "{\"username\":\"$ADMIN_USERNAME\",\"password\":\"$ADMIN_PASSWORD\"}" \
+    | sed -n 's/.*"jwtToken":"\([^"]*\)".*/\1/p')
+  if [ -z "$token" ]; then
+    echo "login failed, see $log" >&2
+    kill "$pid"
+    exit 1
+  fi
+
+  wrk -t"$THREADS" -c"$CONNECTIONS" -d"$WARMUP" -H "Authorization: Bearer $token" "$BASE_URL$ENDPOINT" >/dev/null
+  wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" --latency -H "Authorization: Bearer $token" "$BASE_URL$ENDPOINT" \
+    | tee "$RESULTS/$mode-wrk.txt"
+
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  trap - EXIT
+}
+
+run_mode platform false
+run_mode virtual true
+
+echo
+echo "=== Summary ($CONNECTIONS connections, $DURATION, $ENDPOINT) ==="
+for mode in platform virtual; do
+  printf '%-9s %s | %s | errors: %s\n' "$mode" \
+    "$(grep 'Requests/sec' "$RESULTS/$mode-wrk.txt")" \
+    "$(grep ' 99%' "$RESULTS/$mode-wrk.txt" | xargs)" \
+    "$(grep -E 'Socket errors|Non-2xx' "$RESULTS/$mode-wrk.txt" | xargs || echo none)"
+done
+echo "Pinning report for the virtual run: grep -A20 'pinned' $RESULTS/virtual-app.log"
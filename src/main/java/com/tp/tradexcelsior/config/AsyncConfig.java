@@ -1,10 +1,110 @@
 package com.tp.tradexcelsior.config;
 
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 @EnableAsync
 public class AsyncConfig {
   // This class will enable @Async functionality in your application
-}
\ No newline at end of file
+
+  // Default executor for plain @Async methods and MVC async requests. Declaring any executor bean
+  // switches off Spring Boot's auto-configured one, so it is re-declared here under the same names.
+  // With spring.threads.virtual.enabled (which also moves Tomcat's request threads and the scheduler
+  // onto virtual threads) every task gets its own virtual thread instead of waiting for a pool thread.
+  // The dedicated pools below stay on platform threads: their size is the limit they exist to enforce.
+  @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+  public AsyncTaskExecutor taskExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+    if (virtualThreads) {
+      SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("task-");
+      executor.setVirtualThreads(true);
+      return executor;
+    }
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(8);
+    executor.setThreadNamePrefix("task-");
+    return executor;
+  }
+
+  // Background population of the image content cache. Best effort: when the queue is full the
+  // request is simply served from GridFS again and the cache fills on a later hit.
+  @Bean(name = "imageCacheExecutor")
+  public ThreadPoolTaskExecutor imageCacheExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(2);
+    executor.setMaxPoolSize(2);
+    executor.setQueueCapacity(100);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+    executor.setThreadNamePrefix("image-cache-");
+    return executor;
+  }
+
+  // Resized variant generation after uploads. Decoding is CPU and memory heavy, so only a couple run
+  // at once; when the queue is full the uploading thread generates the variants itself.
+  @Bean(name = "imageProcessingExecutor")
+  public ThreadPoolTaskExecutor imageProcessingExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(2);
+    executor.setMaxPoolSize(2);
+    executor.setQueueCapacity(500);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.setThreadNamePrefix("image-processing-");
+    return executor;
+  }
+
+  // Parallel storage of batch uploads. GridFS writes are mostly waiting on MongoDB, so a few more
+  // threads than cores help; a full queue makes the request thread store the file itself.
+  @Bean(name = "imageUploadExecutor")
+  public ThreadPoolTaskExecutor imageUploadExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(6);
+    executor.setMaxPoolSize(6);
+    executor.setQueueCapacity(200);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.setThreadNamePrefix("image-upload-");
+    return executor;
+  }
+
+  // BCrypt hashing for bulk user imports. Pure CPU work, so one thread per core; the queue holds about
+  // one import batch ahead and a full queue makes the request thread hash the password itself.
+  @Bean(name = "passwordHashExecutor")
+  public ThreadPoolTaskExecutor passwordHashExecutor() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(1000);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.setThreadNamePrefix("password-hash-");
+    return executor;
+  }
+
+  // Outbox senders: each sends its share of a dispatch batch over one SMTP connection. The dispatch
+  // waits for all of them, so the queue never holds more than one batch.
+  @Bean(name = "emailOutboxExecutor")
+  public ThreadPoolTaskExecutor emailOutboxExecutor(@Value("${email.outbox.workers:2}") int workers) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(workers);
+    executor.setMaxPoolSize(workers);
+    executor.setQueueCapacity(workers);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.setThreadNamePrefix("email-outbox-");
+    return executor;
+  }
+
+  // Writes queued trend changes to server-sent event clients, one subscriber's queue at a time
+  @Bean(name = "trendStreamExecutor")
+  public ThreadPoolTaskExecutor trendStreamExecutor(@Value("${watchlist.trends.stream.senders:4}") int senders) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(senders);
+    executor.setMaxPoolSize(senders);
+    executor.setThreadNamePrefix("trend-stream-");
+    return executor;
+  }
+}
@@ -0,0 +1,104 @@
+package com.tp.tradexcelsior.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp.tradexcelsior.controller.ReactiveReadRoutes;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+// Runs the reactive API (ReactiveReadRoutes) on a Reactor Netty server with its own port and a few
+// event-loop threads. An application has one web stack, and this one is Tomcat with Spring MVC, so the
+// reactive routes cannot share its port; everything else keeps being served by Tomcat.
+@Slf4j
+@Component
+public class ReactiveApiServer implements SmartLifecycle {
+
+  @Value("${reactive.api.enabled:false}")
+  private boolean enabled;
+
+  @Value("${reactive.api.port:8081}")
+  private int port;
+
+  // 0 means one per CPU
+  @Value("${reactive.api.event-loop-threads:0}")
+  private int eventLoopThreads;
+
+  @Autowired
+  private ReactiveReadRoutes reactiveReadRoutes;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private LoopResources loopResources;
+
+  private volatile DisposableServer server;
+
+  @Override
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+
+    // JSON written like the servlet endpoints write it
+    HandlerStrategies strategies = HandlerStrategies.builder()
+        .codecs(codecs -> codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper)))
+        .build();
+    HttpHandler httpHandler = WebHttpHandlerBuilder
+        .webHandler(RouterFunctions.toWebHandler(reactiveReadRoutes.routes(), strategies))
+        .filter(new CorsWebFilter(corsConfigurationSource()))
+        .build();
+
+    int threads = eventLoopThreads > 0 ? eventLoopThreads : Runtime.getRuntime().availableProcessors();
+    loopResources = LoopResources.create("reactive-api", threads, true);
+    server = HttpServer.create()
+        .port(port)
+        .runOn(loopResources)
+        .handle(new ReactorHttpHandlerAdapter(httpHandler))
+        .bindNow();
+    log.info("Reactive API listening on port {} under {} with {} event-loop threads",
+        server.port(), ReactiveReadRoutes.PREFIX, threads);
+  }
+
+  @Override
+  public void stop() {
+    DisposableServer running = server;
+    if (running != null) {
+      server = null;
+      running.disposeNow();
+      loopResources.disposeLater().block();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return server != null;
+  }
+
+  // The frontend origin allowed in WebConfig; the reactive API is read-only
+  private UrlBasedCorsConfigurationSource corsConfigurationSource() {
+    CorsConfiguration configuration = new CorsConfiguration();
+    configuration.setAllowedOrigins(List.of("http://localhost:3000"));
+    configuration.setAllowedMethods(List.of("GET", "OPTIONS"));
+    configuration.addAllowedHeader("*");
+    configuration.setAllowCredentials(true);
+
+    UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+    source.registerCorsConfiguration("/**", configuration);
+    return source;
+  }
+}
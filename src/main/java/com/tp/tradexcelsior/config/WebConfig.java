@@ -1,7 +1,11 @@
 package com.tp.tradexcelsior.config;
 
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -14,10 +18,21 @@ public class WebConfig {
             public void addCorsMappings(CorsRegistry registry) {
                 registry.addMapping("/**")
                         .allowedOrigins("http://localhost:3000") // frontend port
-                        .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
+                        .allowedMethods("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
                         .allowCredentials(true);
             }
         };
     }
+
+    // The container's limit has to admit batch uploads; MultipartSizeLimitFilter keeps every other
+    // multipart request to spring.servlet.multipart.max-request-size
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties multipartProperties,
+            @Value("${image.batch.max-request-size:200MB}") DataSize maxBatchRequestSize) {
+        MultipartConfigElement configured = multipartProperties.createMultipartConfig();
+        return new MultipartConfigElement(configured.getLocation(), configured.getMaxFileSize(),
+                Math.max(configured.getMaxRequestSize(), maxBatchRequestSize.toBytes()),
+                configured.getFileSizeThreshold());
+    }
 }
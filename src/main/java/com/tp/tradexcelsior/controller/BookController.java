@@ -4,11 +4,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tp.tradexcelsior.dto.request.BookRequestDto;
 import com.tp.tradexcelsior.dto.request.SuccessStoriesRequestDto;
 import com.tp.tradexcelsior.dto.response.BookResponseDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.SuccessStoriesResponseDto;
 import com.tp.tradexcelsior.service.impl.BookService;
 import com.tp.tradexcelsior.service.impl.ImageService;
+import com.tp.tradexcelsior.util.CachedResponse;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
@@ -19,7 +24,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,6 +38,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 @Tag(name = "Book Management", description = "APIs for managing books")
@@ -50,11 +58,27 @@ public class BookController {
         this.bookService = bookService;
     }
 
-    @Operation(summary = "Get all books", description = "Fetch all available books")
+    @Operation(summary = "Get all books", description = "Fetch all available books. Use expand=image to include image details.")
+    @ApiResponse(responseCode = "200", description = "All books; with expand=image every book carries its image details",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = BookListResponse.class)))
     @GetMapping
-    public ResponseEntity<ResponseWrapper<List<BookResponseDto>>> getAllBooks() {
-        ResponseWrapper<List<BookResponseDto>> books = bookService.getAllBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getAllBooks(
+            @RequestParam(value = "expand", required = false) String expand, WebRequest webRequest) {
+        if ("image".equals(expand)) {
+            ResponseWrapper<List<BookResponseDto>> books = bookService.getAllBooks(true);
+            return ResponseEntity.ok(books);
+        }
+
+        // Plain list: cached JSON bytes, revalidated by clients with If-None-Match
+        CachedResponse books = bookService.getAllBooksResponse();
+        if (webRequest.checkNotModified(books.eTag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(books.eTag())
+                .body(books.body());
     }
 
     @Operation(summary = "Add a new book", description = "Create a new book in the system")
@@ -134,9 +158,24 @@ public class BookController {
     }
 
     @GetMapping("/search")
-    @Operation(summary = "Search book by name.", description = "Get the list of search result of book by its name.")
-    public ResponseEntity<ResponseWrapper<List<BookResponseDto>>> searchBooks(@RequestParam String name) {
-        ResponseWrapper<List<BookResponseDto>> searchedBooks = bookService.searchBooks(name);
+    @Operation(summary = "Search book by name.", description = "Get the list of search result of book by its name. Use expand=image to include image details.")
+    public ResponseEntity<ResponseWrapper<List<BookResponseDto>>> searchBooks(@RequestParam String name,
+            @RequestParam(value = "expand", required = false) String expand) {
+        ResponseWrapper<List<BookResponseDto>> searchedBooks = bookService.searchBooks(name, "image".equals(expand));
         return ResponseEntity.ok(searchedBooks);
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Get books changed since a watermark", description = "Returns books created, modified or deleted after the given watermark, oldest first. "
+            + "Omit since for a full sync; pass the returned watermark as since on the next call.")
+    @GetMapping("/changes")
+    public ResponseEntity<ResponseWrapper<ChangeSetDto<BookResponseDto>>> getBookChanges(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        ResponseWrapper<ChangeSetDto<BookResponseDto>> changes = bookService.getBookChanges(since, limit);
+        return ResponseEntity.ok(changes);
+    }
+
+    // Swagger schema of the list body; both the cached bytes and the expanded list are this wrapper
+    static class BookListResponse extends ResponseWrapper<List<BookResponseDto>> {
+    }
+}
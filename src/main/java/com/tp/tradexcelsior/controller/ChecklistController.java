@@ -1,12 +1,19 @@
 package com.tp.tradexcelsior.controller;
 
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.ChecklistDTO;
 import com.tp.tradexcelsior.service.impl.ChecklistService;
+import com.tp.tradexcelsior.util.CachedResponse;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.util.List;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,7 +23,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @Tag(name = "Checklist Management", description = "Endpoints for managing checklists")
 @RestController
@@ -36,11 +45,21 @@ public class ChecklistController {
     }
     
     @Operation(summary = "Get all checklists")
+    @ApiResponse(responseCode = "200", description = "All checklists",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ChecklistListResponse.class)))
     // Get All Checklists
     @GetMapping
-    public ResponseEntity<ResponseWrapper<List<ChecklistDTO>>> getAllChecklists() {
-        ResponseWrapper<List<ChecklistDTO>> allChecklists = checklistService.getAllChecklists();
-        return ResponseEntity.ok(allChecklists);
+    public ResponseEntity<byte[]> getAllChecklists(WebRequest webRequest) {
+        // Cached JSON bytes, revalidated by clients with If-None-Match
+        CachedResponse allChecklists = checklistService.getAllChecklistsResponse();
+        if (webRequest.checkNotModified(allChecklists.eTag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(allChecklists.eTag())
+                .body(allChecklists.body());
     }
 
     @Operation(summary = "Get a checklist by ID")
@@ -63,4 +82,18 @@ public class ChecklistController {
         ResponseWrapper<String> response = checklistService.deleteChecklist(id);
         return ResponseEntity.ok(response);
     }
+
+    @Operation(summary = "Get checklists changed since a watermark", description = "Returns checklists created, modified or deleted after the given watermark, oldest first. "
+            + "Omit since for a full sync; pass the returned watermark as since on the next call.")
+    @GetMapping("/changes")
+    public ResponseEntity<ResponseWrapper<ChangeSetDto<ChecklistDTO>>> getChecklistChanges(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        ResponseWrapper<ChangeSetDto<ChecklistDTO>> changes = checklistService.getChecklistChanges(since, limit);
+        return ResponseEntity.ok(changes);
+    }
+
+    // Body of the list response (the cached bytes are this wrapper serialized); documents the schema only
+    static class ChecklistListResponse extends ResponseWrapper<List<ChecklistDTO>> {
+    }
 }
@@ -2,9 +2,11 @@ package com.tp.tradexcelsior.controller;
 
 import com.tp.tradexcelsior.dto.request.CoreWatchlistRequestDto;
 import com.tp.tradexcelsior.dto.request.WatchlistTrendUpdateDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.CoreWatchlistResponseDto;
 import com.tp.tradexcelsior.dto.response.PagedResponse;
 import com.tp.tradexcelsior.service.impl.CoreWatchlistService;
+import com.tp.tradexcelsior.service.impl.TrendBroadcaster;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,6 +17,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,6 +28,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 @Tag(name = "CoreWatchList Management", description = "APIs for managing CoreWatchList")
 @RestController
 @RequestMapping("/api/v1/core-watchlist")
@@ -33,6 +37,9 @@ public class CoreWatchlistController {
   @Autowired
   private CoreWatchlistService coreWatchlistService;
 
+  @Autowired
+  private TrendBroadcaster trendBroadcaster;
+
   // Create a new core watchlist
   @Operation(summary = "Create a new core watchlist", description = "Create a new core watchlist entry for a company")
   @PostMapping
@@ -113,4 +120,26 @@ public class CoreWatchlistController {
 
     return ResponseEntity.ok(response);
   }
+
+  @Operation(summary = "Get core watchlists changed since a watermark", description = "Returns core watchlists created, modified or deleted after the given watermark, oldest first. "
+      + "Omit since for a full sync; pass the returned watermark as since on the next call.")
+  @GetMapping("/changes")
+  public ResponseEntity<ResponseWrapper<ChangeSetDto<CoreWatchlistResponseDto>>> getCoreWatchlistChanges(
+      @RequestParam(value = "since", required = false) String since,
+      @RequestParam(value = "limit", defaultValue = "100") int limit) {
+    ResponseWrapper<ChangeSetDto<CoreWatchlistResponseDto>> changes = coreWatchlistService.getCoreWatchlistChanges(since, limit);
+    return ResponseEntity.ok(changes);
+  }
+
+  // Server-sent events carrying each current month trend change, so clients stop polling the list for them
+  @Operation(summary = "Stream trend changes", description = "Server-sent events: a 'trend' event (id, company, monthYear, trend) for every current month trend update, "
+      + "and a 'dropped' event with the number of changes skipped when the client fell behind (re-read the list then). Comment lines are heartbeats.")
+  @GetMapping(value = "/trends/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamTrendChanges() {
+    SseEmitter emitter = trendBroadcaster.subscribe();
+    if (emitter == null) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+    return ResponseEntity.ok(emitter);
+  }
 }
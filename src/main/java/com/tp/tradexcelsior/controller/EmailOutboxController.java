@@ -0,0 +1,38 @@
+package com.tp.tradexcelsior.controller;
+
+import com.tp.tradexcelsior.dto.response.EmailOutboxStatsDto;
+import com.tp.tradexcelsior.service.impl.EmailOutboxService;
+import com.tp.tradexcelsior.util.ResponseWrapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(name = "Email Outbox", description = "Monitoring of the outgoing email queue")
+@RestController
+@RequestMapping("/api/v1/email-outbox")
+public class EmailOutboxController {
+
+  @Autowired
+  private EmailOutboxService emailOutboxService;
+
+  @Operation(summary = "Get email queue depth", description = "Counts of queued, due, in-flight, sent and failed emails, "
+      + "and how long the oldest due email has been waiting.")
+  @GetMapping("/stats")
+  public ResponseEntity<ResponseWrapper<EmailOutboxStatsDto>> getStats() {
+    EmailOutboxStatsDto stats = emailOutboxService.getStats();
+    return ResponseEntity.ok(ResponseWrapper.success(HttpStatus.OK.value(), stats, "Email outbox stats fetched."));
+  }
+
+  @Operation(summary = "Retry failed emails", description = "Queue the emails that ran out of attempts again.")
+  @PostMapping("/retry-failed")
+  public ResponseEntity<ResponseWrapper<Long>> retryFailed() {
+    long requeued = emailOutboxService.retryFailed();
+    return ResponseEntity.ok(ResponseWrapper.success(HttpStatus.OK.value(), requeued, requeued + " emails queued again."));
+  }
+}
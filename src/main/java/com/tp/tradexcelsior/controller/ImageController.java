@@ -1,20 +1,36 @@
 package com.tp.tradexcelsior.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp.tradexcelsior.dto.response.CursorPagedResponse;
+import com.tp.tradexcelsior.dto.response.ImageCleanupReportDto;
 import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.dto.response.ImageStorageMigrationReportDto;
+import com.tp.tradexcelsior.dto.response.ImageUploadResultDto;
 import com.tp.tradexcelsior.exception.custom.ImageNotFoundException;
+import com.tp.tradexcelsior.service.impl.ImageCleanupService;
 import com.tp.tradexcelsior.service.impl.ImageService;
+import com.tp.tradexcelsior.service.impl.ImageStorageMigrationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -22,16 +38,38 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Tag(name = "Image Management", description = "APIs for managing images")
 @RestController
 @RequestMapping("/images")
 public class ImageController {
 
+  // Tomcat request attributes that hand a file to the connector, which sends it with
+  // FileChannel.transferTo instead of copying it through the response stream
+  private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+  private static final int MAX_PAGE_SIZE = 500;
+
+  private static final String NDJSON = "application/x-ndjson";
+
   @Autowired
   private ImageService imageService;
 
+  @Autowired
+  private ImageCleanupService imageCleanupService;
+
+  @Autowired
+  private ImageStorageMigrationService imageStorageMigrationService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
   // Endpoint to upload the image and return its name
   @Operation(summary = "Upload an image", description = "Upload an image file to the server and return the image filename.")
   @PostMapping
@@ -48,54 +86,164 @@ public class ImageController {
     }
   }
 
-  // Endpoint to fetch an image by its MongoDB ObjectId
-  @Operation(summary = "Get an image by imageId", description = "Get the image by its imageId from the server.")
+  // Endpoint to upload many images in one request; files are stored in parallel and each gets its own result
+  @Operation(summary = "Upload images in bulk", description = "Upload several image files at once under their original filenames. Each file must be an image whose content matches its extension; the response lists the outcome per file.")
+  @PreAuthorize("hasRole('ADMIN')")
+  @PostMapping("/batch")
+  public ResponseEntity<List<ImageUploadResultDto>> uploadImages(@RequestParam("files") List<MultipartFile> files) {
+    return ResponseEntity.ok(imageService.uploadImages(files));
+  }
+
+  // Endpoint to fetch an image by its MongoDB ObjectId. Range requests are honoured
+  // (206 Partial Content, multipart ranges) so clients can resume or fetch parts of large files.
+  // The bytes behind an id never change, so responses carry a strong ETag and are cacheable forever;
+  // revalidations are answered with 304 from the metadata lookup alone.
+  // With ?w= the smallest resized variant at least that wide is served instead of the original.
+  @Operation(summary = "Get an image by imageId", description = "Get the image by its imageId from the server. Supports HTTP Range and conditional (If-None-Match / If-Modified-Since) requests. Use w to get a resized variant.")
   @GetMapping("/id/{imageId}")
-  public ResponseEntity<byte[]> getImageById(@PathVariable String imageId) {
+  public ResponseEntity<Resource> getImageById(@PathVariable String imageId,
+      @RequestParam(value = "w", required = false) Integer width, WebRequest webRequest,
+      HttpServletRequest request) throws IOException {
     try {
-      // Fetch the image bytes using the service method
-      byte[] imageBytes = imageService.getImageById(imageId);
+      // Single (cached) metadata lookup for everything the response needs
+      ImageDto original = imageService.resolveImageById(imageId);
+      ImageDto image = imageService.selectVariant(original, width);
 
-      String contentType;
-      contentType = imageService.getImageContentTypeById(imageId);
+      // No download stream has been opened yet; a matching validator ends the request here
+      if (webRequest.checkNotModified(imageService.getETag(image), image.getUploadDate().toEpochMilli())) {
+        return null;
+      }
 
+      String contentType = image.getContentType();
       if(contentType.isEmpty()){
         contentType = "image/jpeg";
       }
 
-      // Return the image in the response with correct headers for display in browser
-      return ResponseEntity
+      // Return the image in the response with correct headers for display in browser;
+      // Spring answers Range headers on a Resource body with the requested regions
+      // Until its variants exist a ?w= request gets the original, which must not be cached for good
+      CacheControl cacheControl = (width != null && original.getVariants() == null)
+          ? CacheControl.noCache()
+          : CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+      ResponseEntity.BodyBuilder response = ResponseEntity
           .status(HttpStatus.OK)
           .header(HttpHeaders.CONTENT_TYPE, contentType)
-          .body(imageBytes);
+          .cacheControl(cacheControl);
+      return imageBody(response, imageService.getImageResource(image), request);
     } catch (RuntimeException e) {
       // Handle image not found or other runtime exceptions
       return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
     }
   }
 
-  // Endpoint to retrieve the image by filename
-  @Operation(summary = "Get an image by filename", description = "Retrieve the image by its filename.")
+  // Endpoint to retrieve the image by filename, with Range request support. A name can be re-bound
+  // to a new upload, so clients must revalidate; unchanged images still cost only a 304.
+  @Operation(summary = "Get an image by filename", description = "Retrieve the image by its filename. Supports HTTP Range and conditional requests. Use w to get a resized variant.")
   @GetMapping("/{imageName}")
-  public ResponseEntity<byte[]> getImage(@PathVariable String imageName) throws IOException {
-    byte[] imageBytes = imageService.getImageByName(imageName);
-    String contentType = imageService.getImageContentType(imageName);
-    return ResponseEntity.ok()
-        .header("Content-Type", contentType) // Assuming JPEG; you can set dynamically
-        .header("Content-Length", String.valueOf(imageBytes.length))
-        .body(imageBytes); // Return the image as byte array in the response body
+  public ResponseEntity<Resource> getImage(@PathVariable String imageName,
+      @RequestParam(value = "w", required = false) Integer width, WebRequest webRequest,
+      HttpServletRequest request) throws IOException {
+    ImageDto image = imageService.selectVariant(imageService.resolveImageByName(imageName), width);
+    if (webRequest.checkNotModified(imageService.getETag(image), image.getUploadDate().toEpochMilli())) {
+      return null;
+    }
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .header(HttpHeaders.CONTENT_TYPE, image.getContentType())
+        .cacheControl(CacheControl.noCache());
+    return imageBody(response, imageService.getImageResource(image), request);
   }
 
+  // Full-body responses for files on local disk (disk cache or filesystem storage) are handed to the connector's sendfile
+  // support; everything else (and every Range request) is written by Spring from the Resource
+  private ResponseEntity<Resource> imageBody(ResponseEntity.BodyBuilder response, Resource resource,
+      HttpServletRequest request) throws IOException {
+    if (resource instanceof FileSystemResource fileResource
+        && request.getHeader(HttpHeaders.RANGE) == null
+        && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+      long length = fileResource.contentLength();
+      request.setAttribute(SENDFILE_FILENAME_ATTR, fileResource.getFile().getAbsolutePath());
+      request.setAttribute(SENDFILE_START_ATTR, 0L);
+      request.setAttribute(SENDFILE_END_ATTR, length);
+      return response.contentLength(length).build();
+    }
 
-  // Endpoint to retrieve all images
-  @Operation(summary = "Get all images", description = "Fetch a list of all images stored in the system with their filenames and content types.")
+    return response.body(resource); // Streamed from its store, full body or the requested ranges
+  }
+
+
+  // Endpoint to sweep GridFS for images no longer referenced by any entity; dry run by default
+  @Operation(summary = "Clean up orphaned images", description = "Delete images not referenced by any book, reference or success story and older than the grace period. With dryRun=true only reports what would be deleted. Images still holding references that nothing links to are only reported, as counted but unreferenced.")
+  @PreAuthorize("hasRole('ADMIN')")
+  @PostMapping("/cleanup")
+  public ResponseEntity<ImageCleanupReportDto> cleanupOrphanedImages(
+      @RequestParam(value = "dryRun", defaultValue = "true") boolean dryRun) {
+    return ResponseEntity.ok(imageCleanupService.cleanupOrphanedImages(dryRun));
+  }
+
+  // Endpoint to fetch the report of the last cleanup run
+  @Operation(summary = "Get the last orphaned image cleanup report", description = "Report of the most recent scheduled or manual cleanup run.")
+  @PreAuthorize("hasRole('ADMIN')")
+  @GetMapping("/cleanup/report")
+  public ResponseEntity<ImageCleanupReportDto> getLastCleanupReport() {
+    ImageCleanupReportDto report = imageCleanupService.getLastReport();
+    return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+  }
+
+  // Endpoint to move stored image content to another storage backend, a bounded number of files per call
+  @Operation(summary = "Migrate image storage", description = "Move the content of up to limit images into the given storage backend (gridfs or filesystem). Image ids and names do not change.")
+  @PreAuthorize("hasRole('ADMIN')")
+  @PostMapping("/storage/migrate")
+  public ResponseEntity<ImageStorageMigrationReportDto> migrateImageStorage(
+      @RequestParam("target") String target,
+      @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+    return ResponseEntity.ok(imageStorageMigrationService.migrate(target, limit));
+  }
+
+  // Endpoint to retrieve all images. Kept as a plain list for existing clients; large collections are
+  // better read with limit (pages) or /export (stream)
+  @Operation(summary = "Get all images", description = "Fetch a list of all images stored in the system with their filenames and content types. Pass limit to get them a page at a time instead.")
   @GetMapping
   public ResponseEntity<List<ImageDto>> getAllImages() {
-    List<ImageDto> imageDtos = imageService.getAllImages();
+    List<ImageDto> imageDtos = new ArrayList<>();
+    imageService.forEachImage(null, null, imageDtos::add);
     return ResponseEntity.ok(imageDtos);
   }
 
-  @Operation(summary = "Delete an image by filename", description = "Delete the image by its filename from the server.")
+  // Endpoint to list images a page at a time; pass the returned nextCursor (with limit) to get the
+  // following page. The limit parameter selects this form of GET /images.
+  @Operation(summary = "List images a page at a time", description = "Fetch a page of images with their filenames and content types, optionally filtered by filename prefix and content type. Requires limit; use nextCursor from the response to fetch the next page.")
+  @GetMapping(params = "limit")
+  public ResponseEntity<CursorPagedResponse<ImageDto>> getImages(
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "limit") int limit,
+      @RequestParam(value = "prefix", required = false) String prefix,
+      @RequestParam(value = "contentType", required = false) String contentType) {
+    int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    return ResponseEntity.ok(imageService.getImages(cursor, pageSize, prefix, contentType));
+  }
+
+  // Endpoint streaming every matching image as newline-delimited JSON, for bulk tooling
+  @Operation(summary = "Export images as NDJSON", description = "Stream the metadata of all images (optionally filtered by filename prefix and content type), one JSON object per line.")
+  @GetMapping(value = "/export", produces = NDJSON)
+  public ResponseEntity<StreamingResponseBody> exportImages(
+      @RequestParam(value = "prefix", required = false) String prefix,
+      @RequestParam(value = "contentType", required = false) String contentType) {
+    StreamingResponseBody body = outputStream -> imageService.forEachImage(prefix, contentType, image -> {
+      try {
+        outputStream.write(objectMapper.writeValueAsBytes(image));
+        outputStream.write('\n');
+      } catch (IOException e) {
+        throw new UncheckedIOException(e); // Client went away; stops reading the cursor
+      }
+    });
+
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(NDJSON))
+        .body(body);
+  }
+
+  @Operation(summary = "Delete an image by filename", description = "Delete the image by its filename from the server. Content still used by books, references, success stories or other uploads is kept until they let go of it.")
   @DeleteMapping("/{imageName}")
   public ResponseEntity<String> deleteImage(@PathVariable String imageName) {
     try {
@@ -108,7 +256,7 @@ public class ImageController {
 
 
   // Endpoint to delete an image by its MongoDB ObjectId
-  @Operation(summary = "Delete an image by imageId", description = "Delete the image by its imageId from the server.")
+  @Operation(summary = "Delete an image by imageId", description = "Delete the image by its imageId from the server. Content still used by books, references, success stories or other uploads is kept until they let go of it.")
   @DeleteMapping("/id/{imageId}")
   public ResponseEntity<String> deleteImageById(@PathVariable String imageId) {
     try {
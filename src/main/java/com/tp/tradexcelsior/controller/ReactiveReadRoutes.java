@@ -0,0 +1,131 @@
+package com.tp.tradexcelsior.controller;
+
+import com.tp.tradexcelsior.dto.response.BookResponseDto;
+import com.tp.tradexcelsior.dto.response.CoreWatchlistResponseDto;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.dto.response.ReferenceResponseDto;
+import com.tp.tradexcelsior.exception.custom.ImageNotFoundException;
+import com.tp.tradexcelsior.filters.ReactiveJwtAuthenticationFilter;
+import com.tp.tradexcelsior.service.impl.ImageService;
+import com.tp.tradexcelsior.service.impl.ReactiveCatalogService;
+import java.util.concurrent.TimeUnit;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Reactive twins of the busiest read endpoints, served by ReactiveApiServer under /reactive:
+//   GET /reactive/api/v1/core-watchlist   (sortBy: company or lastModified, sortDirection)
+//   GET /reactive/api/v1/book
+//   GET /reactive/api/v1/reference
+//   GET /reactive/images/id/{imageId}     (w)
+// Lists are neither wrapped nor paged: items are written while the cursor is read, as a JSON array or,
+// with Accept: application/x-ndjson, one object per line.
+@Component
+public class ReactiveReadRoutes {
+
+  public static final String PREFIX = "/reactive";
+
+  @Autowired
+  private ReactiveCatalogService reactiveCatalogService;
+
+  @Autowired
+  private ImageService imageService;
+
+  @Autowired
+  private ReactiveJwtAuthenticationFilter authenticationFilter;
+
+  public RouterFunction<ServerResponse> routes() {
+    return RouterFunctions.route()
+        .path(PREFIX, builder -> builder
+            .GET("/api/v1/core-watchlist", this::getCoreWatchlists)
+            .GET("/api/v1/book", this::getBooks)
+            .GET("/api/v1/reference", this::getReferences)
+            .GET("/images/id/{imageId}", this::getImageById))
+        .filter(authenticationFilter)
+        .build();
+  }
+
+  private Mono<ServerResponse> getCoreWatchlists(ServerRequest request) {
+    String sortBy = request.queryParam("sortBy").orElse("company");
+    if (!ReactiveCatalogService.CORE_WATCHLIST_SORT_FIELDS.contains(sortBy)) {
+      return ServerResponse.badRequest().contentType(MediaType.TEXT_PLAIN)
+          .bodyValue("sortBy must be one of " + ReactiveCatalogService.CORE_WATCHLIST_SORT_FIELDS);
+    }
+    Flux<CoreWatchlistResponseDto> watchlists = reactiveCatalogService.getCoreWatchlists(
+        sortBy, request.queryParam("sortDirection").orElse("asc"));
+    return list(request, watchlists, CoreWatchlistResponseDto.class);
+  }
+
+  private Mono<ServerResponse> getBooks(ServerRequest request) {
+    return list(request, reactiveCatalogService.getBooks(), BookResponseDto.class);
+  }
+
+  private Mono<ServerResponse> getReferences(ServerRequest request) {
+    return list(request, reactiveCatalogService.getReferences(), ReferenceResponseDto.class);
+  }
+
+  private <T> Mono<ServerResponse> list(ServerRequest request, Flux<T> items, Class<T> type) {
+    MediaType mediaType = request.headers().accept().contains(MediaType.APPLICATION_NDJSON)
+        ? MediaType.APPLICATION_NDJSON
+        : MediaType.APPLICATION_JSON;
+    return ServerResponse.ok().contentType(mediaType).body(items, type);
+  }
+
+  // Same contract as GET /images/id/{imageId}: ?w= variants, a strong ETag, 304 on revalidation and
+  // Range support for content held locally. GridFS content goes out chunk by chunk without ranges.
+  private Mono<ServerResponse> getImageById(ServerRequest request) {
+    Integer width;
+    try {
+      width = request.queryParam("w").map(Integer::valueOf).orElse(null);
+    } catch (NumberFormatException e) {
+      return ServerResponse.badRequest().build();
+    }
+
+    String imageId = request.pathVariable("imageId");
+    if (!ObjectId.isValid(imageId)) {
+      return ServerResponse.badRequest().build();
+    }
+
+    // Only a missing image is a 404; anything else (MongoDB unavailable, ...) stays a server error
+    return reactiveCatalogService.resolveImageById(imageId)
+        .flatMap(original -> reactiveCatalogService.selectVariant(original, width)
+            .flatMap(image -> request.checkNotModified(image.getUploadDate(), imageService.getETag(image))
+                .switchIfEmpty(Mono.defer(() -> imageResponse(image, cacheControl(original, width))))))
+        .onErrorResume(ImageNotFoundException.class, e -> ServerResponse.notFound().build());
+  }
+
+  // Until its variants exist a ?w= request gets the original, which must not be cached for good
+  private CacheControl cacheControl(ImageDto original, Integer width) {
+    return (width != null && original.getVariants() == null)
+        ? CacheControl.noCache()
+        : CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+  }
+
+  private Mono<ServerResponse> imageResponse(ImageDto image, CacheControl cacheControl) {
+    String contentType = image.getContentType();
+    ServerResponse.BodyBuilder response = ServerResponse.ok()
+        .contentType(MediaType.parseMediaType(contentType.isEmpty() ? "image/jpeg" : contentType))
+        .eTag(imageService.getETag(image))
+        .lastModified(image.getUploadDate())
+        .cacheControl(cacheControl);
+
+    // Files are sent by Netty with zero-copy file transfer, cached bytes straight from the heap
+    Resource localContent = reactiveCatalogService.getLocalContent(image);
+    if (localContent != null) {
+      return response.body(BodyInserters.fromResource(localContent));
+    }
+
+    return response.contentLength(image.getLength())
+        .body(BodyInserters.fromDataBuffers(reactiveCatalogService.streamContent(image)));
+  }
+}
@@ -3,11 +3,16 @@ package com.tp.tradexcelsior.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tp.tradexcelsior.dto.request.BookRequestDto;
 import com.tp.tradexcelsior.dto.request.ReferenceRequestDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.ReferenceResponseDto;
 import com.tp.tradexcelsior.service.impl.ImageService;
 import com.tp.tradexcelsior.service.impl.ReferenceService;
+import com.tp.tradexcelsior.util.CachedResponse;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
@@ -18,7 +23,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,8 +34,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 @Tag(name = "Reference Management", description = "APIs for managing references")
@@ -48,11 +57,27 @@ public class ReferenceController {
     }
 
     // Get all references
-    @Operation(summary = "Get all references")
+    @Operation(summary = "Get all references", description = "Use expand=image to include image details.")
+    @ApiResponse(responseCode = "200", description = "All references; with expand=image every reference carries its image details",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ReferenceListResponse.class)))
     @GetMapping
-    public ResponseEntity<ResponseWrapper<List<ReferenceResponseDto>>> getAllReferences() {
-        ResponseWrapper<List<ReferenceResponseDto>> allReferences = referenceService.getAllReferences();
-        return ResponseEntity.ok(allReferences);
+    public ResponseEntity<?> getAllReferences(
+            @RequestParam(value = "expand", required = false) String expand, WebRequest webRequest) {
+        if ("image".equals(expand)) {
+            ResponseWrapper<List<ReferenceResponseDto>> allReferences = referenceService.getAllReferences(true);
+            return ResponseEntity.ok(allReferences);
+        }
+
+        // Plain list: cached JSON bytes, revalidated by clients with If-None-Match
+        CachedResponse allReferences = referenceService.getAllReferencesResponse();
+        if (webRequest.checkNotModified(allReferences.eTag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(allReferences.eTag())
+                .body(allReferences.body());
     }
 
     // Get a single reference by ID
@@ -134,4 +159,18 @@ public class ReferenceController {
         ResponseWrapper<String> response = referenceService.deleteReference(id);
         return ResponseEntity.ok(response);
     }
+
+    @Operation(summary = "Get references changed since a watermark", description = "Returns references created, modified or deleted after the given watermark, oldest first. "
+            + "Omit since for a full sync; pass the returned watermark as since on the next call.")
+    @GetMapping("/changes")
+    public ResponseEntity<ResponseWrapper<ChangeSetDto<ReferenceResponseDto>>> getReferenceChanges(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        ResponseWrapper<ChangeSetDto<ReferenceResponseDto>> changes = referenceService.getReferenceChanges(since, limit);
+        return ResponseEntity.ok(changes);
+    }
+
+    // What the cached reference list deserializes to, for the API docs
+    static class ReferenceListResponse extends ResponseWrapper<List<ReferenceResponseDto>> {
+    }
 }
@@ -2,6 +2,7 @@ package com.tp.tradexcelsior.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tp.tradexcelsior.dto.request.SuccessStoriesRequestDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.PagedResponse;
 import com.tp.tradexcelsior.dto.response.SuccessStoriesResponseDto;
 import com.tp.tradexcelsior.service.impl.ImageService;
@@ -92,13 +93,14 @@ public class SuccessStoriesController {
     return ResponseEntity.ok(successStoriesResponseDto);
   }
 
-  @Operation(summary = "Get all Success Stories with pagination", description = "Retrieve all success stories with pagination support.")
+  @Operation(summary = "Get all Success Stories with pagination", description = "Retrieve all success stories with pagination support. Use expand=image to include image details.")
   @GetMapping
   public ResponseEntity<ResponseWrapper<PagedResponse<SuccessStoriesResponseDto>>> getAllSuccessStories(
       @RequestParam(value = "page", defaultValue = "0") int page,
-      @RequestParam(value = "size", defaultValue = "10") int size) {
+      @RequestParam(value = "size", defaultValue = "10") int size,
+      @RequestParam(value = "expand", required = false) String expand) {
 
-    ResponseWrapper<PagedResponse<SuccessStoriesResponseDto>> pagedResponse = successStoriesService.getAllSuccessStories(page, size);
+    ResponseWrapper<PagedResponse<SuccessStoriesResponseDto>> pagedResponse = successStoriesService.getAllSuccessStories(page, size, "image".equals(expand));
     return ResponseEntity.ok(pagedResponse);
   }
 
@@ -140,6 +142,16 @@ public class SuccessStoriesController {
     return ResponseEntity.status(HttpStatus.OK).body(updatedSuccessStoryDto);
   }
 
+  @Operation(summary = "Link an image to a Success Story", description = "Link the success story to an image that is already stored, by imageId or imageName.")
+  @PutMapping("/{userName}/image")
+  public ResponseEntity<ResponseWrapper<SuccessStoriesResponseDto>> linkImage(
+      @PathVariable String userName,
+      @RequestParam(value = "imageId", required = false) String imageId,
+      @RequestParam(value = "imageName", required = false) String imageName) {
+    ResponseWrapper<SuccessStoriesResponseDto> successStoriesResponseDto = successStoriesService.linkImage(userName, imageId, imageName);
+    return ResponseEntity.ok(successStoriesResponseDto);
+  }
+
   @Operation(summary = "Delete a Success Story", description = "Delete a success story by the given userName.")
   @DeleteMapping("/{userName}")
   public ResponseEntity<ResponseWrapper<String>> deleteSuccessStory(@PathVariable String userName) {
@@ -147,4 +159,13 @@ public class SuccessStoriesController {
     return ResponseEntity.ok(response);
   }
 
-}
\ No newline at end of file
+  @Operation(summary = "Get success stories changed since a watermark", description = "Returns success stories created, modified or deleted after the given watermark, oldest first. "
+      + "Omit since for a full sync; pass the returned watermark as since on the next call.")
+  @GetMapping("/changes")
+  public ResponseEntity<ResponseWrapper<ChangeSetDto<SuccessStoriesResponseDto>>> getSuccessStoryChanges(
+      @RequestParam(value = "since", required = false) String since,
+      @RequestParam(value = "limit", defaultValue = "100") int limit) {
+    ResponseWrapper<ChangeSetDto<SuccessStoriesResponseDto>> changes = successStoriesService.getSuccessStoryChanges(since, limit);
+    return ResponseEntity.ok(changes);
+  }
+}
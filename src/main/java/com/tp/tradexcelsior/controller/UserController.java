@@ -1,12 +1,15 @@
 package com.tp.tradexcelsior.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.tp.tradexcelsior.dto.request.AddUserDto;
 import com.tp.tradexcelsior.dto.request.ResetPasswordDto;
 import com.tp.tradexcelsior.dto.request.SetPasswordDto;
 import com.tp.tradexcelsior.dto.response.PagedResponse;
+import com.tp.tradexcelsior.dto.response.UserImportReportDto;
 import com.tp.tradexcelsior.dto.response.UserResponseDto;
 import com.tp.tradexcelsior.dto.response.UsersCountWithStatus;
 import com.tp.tradexcelsior.exception.custom.ValidationException;
+import com.tp.tradexcelsior.service.impl.UserImportService;
 import com.tp.tradexcelsior.service.impl.UserService;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,14 +18,18 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -39,6 +46,9 @@ public class UserController {
   @Autowired
   private UserService userService;
 
+  @Autowired
+  private UserImportService userImportService;
+
   // Create a new user
   @Operation(summary = "Create a new user", description = "Create a new user by providing necessary details")
   @PostMapping
@@ -59,6 +69,18 @@ public class UserController {
     return ResponseEntity.status(HttpStatus.CREATED).body(userResponseDto);
   }
 
+  // Create users in bulk from a CSV file (header row with the AddUserDto field names) or a JSON array
+  @Operation(summary = "Import users in bulk", description = "Create users from a CSV file with a header row or a JSON array of users. "
+      + "Valid rows are imported even when others fail; the report lists the failed rows.")
+  @PreAuthorize("hasRole('ADMIN')")
+  @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<ResponseWrapper<UserImportReportDto>> importUsers(HttpServletRequest request) throws IOException {
+    boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType("text/csv"));
+    UserImportReportDto report = userImportService.importUsers(request.getInputStream(), csv);
+    return ResponseEntity.ok(ResponseWrapper.success(HttpStatus.OK.value(), report,
+        report.getImported() + " of " + report.getRowsRead() + " users imported."));
+  }
+
   // Get a user by ID
   @Operation(summary = "Get a user by ID", description = "Fetch the details of a user by their ID")
   @PreAuthorize("hasRole('ADMIN') or (hasRole('USER') and authentication.principal.id == #id)")
@@ -99,6 +121,15 @@ public class UserController {
     return ResponseEntity.ok(updatedUser);
   }
 
+  // Update only the fields present in the body
+  @Operation(summary = "Partially update a user", description = "JSON merge patch: only the fields in the body are changed. "
+      + "Accepts firstName, lastName, occupation, mobileNumber, email, password, licence and address.")
+  @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<ResponseWrapper<UserResponseDto>> patchUser(@PathVariable String id, @RequestBody JsonNode patch) {
+    ResponseWrapper<UserResponseDto> userResponseDto = userService.patchUser(id, patch);
+    return ResponseEntity.ok(userResponseDto);
+  }
+
   // Delete a user by ID
   @Operation(summary = "Delete a user by ID", description = "Delete a user from the system by their ID")
   @DeleteMapping("/{id}")
@@ -116,19 +147,21 @@ public class UserController {
   }
 
   // Search users by parameters
-  @Operation(summary = "Search users by parameters", description = "Search users based on optional parameters like name, email, or mobile number")
+  @Operation(summary = "Search users by parameters", description = "Search users based on optional parameters like name, email, or mobile number. "
+      + "Matches are case-insensitive and by prefix; use contains=true to match anywhere in the field.")
   @GetMapping("/search")
   public ResponseEntity<ResponseWrapper<PagedResponse<UserResponseDto>>> searchUsers(
       @RequestParam(required = false) String name,
       @RequestParam(required = false) String email,
       @RequestParam(required = false) String mobileNumber,
+      @RequestParam(defaultValue = "false") boolean contains,
       @RequestParam(defaultValue = "0") int page,
       @RequestParam(defaultValue = "10") int size) {
 
 
     // Fetch paginated results from the service
     ResponseWrapper<PagedResponse<UserResponseDto>> searchResults = userService.searchUsers(name, email,
-        mobileNumber, page, size);
+        mobileNumber, contains, page, size);
 
     // Return a ResponseEntity with status 200 and the paginated results
     return ResponseEntity.ok(searchResults);
@@ -1,43 +1,65 @@
 package com.tp.tradexcelsior.criteria;
 
+import com.tp.tradexcelsior.util.SearchKeys;
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.util.StringUtils;
 
 public class UserSearchCriteriaBuilder {
 
-  public static Criteria buildSearchCriteria(String name, String email, String mobileNumber) {
-    Criteria criteria = new Criteria();
+  // Every filter works on the normalized keys (see UserSearchKeysService). By default a value matches
+  // fields starting with it, which is an index range scan. With contains=true it matches anywhere in the
+  // field: the trigram tokens narrow the candidates through their index and an escaped regex on the key
+  // confirms them (without tokens, or for values shorter than a trigram, the regex alone).
+  public static Criteria buildSearchCriteria(String name, String email, String mobileNumber, boolean contains,
+      boolean useTokens) {
+    List<Criteria> filters = new ArrayList<>();
 
-    // Add conditions dynamically based on provided parameters
-    boolean hasFilter = false;  // Flag to check if any filters are applied
-
-    if (StringUtils.hasText(name)) {
+    String nameKey = SearchKeys.normalize(name);
+    if (StringUtils.hasText(nameKey)) {
       // Search for both firstName and lastName fields using orOperator
-      criteria = criteria.orOperator(
-          Criteria.where("firstName").regex(name, "i"),
-          Criteria.where("lastName").regex(name, "i")
-      );
-      hasFilter = true;
+      filters.add(new Criteria().orOperator(
+          match("firstNameKey", nameKey, contains),
+          match("lastNameKey", nameKey, contains)
+      ));
+      addTokens(filters, nameKey, contains, useTokens);
     }
 
-    if (StringUtils.hasText(email)) {
-      // Add email filter using 'and' for more strict matching
-      criteria = hasFilter ? criteria.and("email").regex(email, "i") : Criteria.where("email").regex(email, "i");
-      hasFilter = true;
+    String emailKey = SearchKeys.normalize(email);
+    if (StringUtils.hasText(emailKey)) {
+      filters.add(match("emailKey", emailKey, contains));
+      addTokens(filters, emailKey, contains, useTokens);
     }
 
-
-    // Mobile number filter
+    // Mobile number filter (digits only, so the stored number is its own key)
     if (StringUtils.hasText(mobileNumber)) {
-      // Apply regex on mobile number if it's not null or empty
-      criteria = hasFilter ? criteria.and("mobileNumber").regex(mobileNumber, "i") : Criteria.where("mobileNumber").regex(mobileNumber, "i");
-      hasFilter = true;
+      String digits = mobileNumber.trim();
+      filters.add(match("mobileNumber", digits, contains));
+      addTokens(filters, digits, contains, useTokens);
     } else if (mobileNumber == null) {
       // Ensure we don't match documents where mobileNumber is null
-      criteria = hasFilter ? criteria.and("mobileNumber").exists(true) : Criteria.where("mobileNumber").exists(true);
-      hasFilter = true;
+      filters.add(Criteria.where("mobileNumber").exists(true));
     }
 
-    return criteria;
+    if (filters.isEmpty()) {
+      return new Criteria();
+    }
+    return filters.size() == 1 ? filters.get(0) : new Criteria().andOperator(filters);
+  }
+
+  private static Criteria match(String field, String value, boolean contains) {
+    if (contains) {
+      return Criteria.where(field).regex(SearchKeys.escapeRegex(value));
+    }
+    Criteria range = Criteria.where(field).gte(value);
+    String upperBound = SearchKeys.prefixUpperBound(value);
+    return upperBound != null ? range.lt(upperBound) : range;
+  }
+
+  private static void addTokens(List<Criteria> filters, String value, boolean contains, boolean useTokens) {
+    if (contains && useTokens && value.length() >= SearchKeys.NGRAM_LENGTH) {
+      filters.add(Criteria.where("searchTokens").all(SearchKeys.ngrams(List.of(value))));
+    }
   }
-}
\ No newline at end of file
+}
@@ -33,4 +33,8 @@ public class SuccessStoriesRequestDto {
   @Size(max = 200, message = "Tagline cannot be longer than 200 characters")
   private String tagline;
 
+  // Optional link to an image that is already stored, by id or by name
+  private String imageId;
+  private String imageName;
+
 }
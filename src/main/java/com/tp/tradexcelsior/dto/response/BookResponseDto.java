@@ -18,5 +18,6 @@ public class BookResponseDto {
     private String linkToBuyBook;
     private String buttonName;
     private String imageId;
+    private ImageDto image;     // Only filled with expand=image
 
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.tp.tradexcelsior.dto.response;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChangeSetDto<T> {
+  private List<T> updated;        // Created or modified since the watermark
+  private List<T> deleted;        // Deleted since the watermark (tombstones)
+  private String watermark;       // Pass as since on the next call
+  private boolean hasMore;        // More changes are waiting; call again right away
+}
@@ -0,0 +1,15 @@
+package com.tp.tradexcelsior.dto.response;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPagedResponse<T> {
+  private List<T> content;        // Items of this page
+  private String nextCursor;      // Pass as cursor to get the next page; null on the last page
+  private int pageSize;           // Requested number of items per page
+}
@@ -0,0 +1,17 @@
+package com.tp.tradexcelsior.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EmailOutboxStatsDto {
+  private long pending;
+  private long due;             // Pending emails whose next attempt time has passed
+  private long sending;
+  private long sent;            // Kept for the retention period only
+  private long failed;
+  private long oldestDueAgeSeconds; // How long the oldest due email has been waiting; 0 when none are due
+}
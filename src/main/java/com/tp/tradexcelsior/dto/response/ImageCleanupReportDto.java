@@ -0,0 +1,28 @@
+package com.tp.tradexcelsior.dto.response;
+
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageCleanupReportDto {
+  private boolean dryRun;
+  private Instant startedAt;
+  private long durationMillis;
+  private long referencedImages;
+  private long scannedFiles;
+  private long orphanedFiles;
+  private long orphanedBytes;
+  private long deletedFiles;   // Includes the resized variants removed with their originals
+  private boolean passCompleted; // False when the run stopped at its file limit; the next run resumes there
+  private List<String> orphanIds; // Only filled for dry runs, capped
+  // Files no entity points at that still hold references (never deleted): uploads whose linking entity
+  // went away, or files only fetched by name
+  private long countedUnreferencedFiles;
+  private long countedUnreferencedBytes;
+  private List<String> countedUnreferencedIds; // Only filled for dry runs, capped
+}
@@ -1,5 +1,8 @@
 package com.tp.tradexcelsior.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.Instant;
+import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,4 +14,15 @@ public class ImageDto {
   private String imageId;
   private String filename;
   private String contentType;
-}
\ No newline at end of file
+  private long length;
+  private Instant uploadDate;
+  private Integer width;
+  private Integer height;
+  // Resized variants by width (width -> imageId); null until the variants have been processed
+  private Map<Integer, String> variants;
+  @JsonIgnore
+  private String storage;     // Blob store holding the content (internal)
+  @JsonIgnore
+  private int chunkSize;      // GridFS chunk size the content was written with (internal)
+  private String url;         // Versioned content URL; needs the bearer token, so only the client caches it (private)
+}
@@ -0,0 +1,16 @@
+package com.tp.tradexcelsior.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageStorageMigrationReportDto {
+  private String target;
+  private long migratedFiles;
+  private long migratedBytes;
+  private long failedFiles;
+  private long remainingFiles;  // Files still stored elsewhere; run again to continue
+}
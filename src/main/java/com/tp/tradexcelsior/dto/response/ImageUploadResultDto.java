@@ -0,0 +1,16 @@
+package com.tp.tradexcelsior.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageUploadResultDto {
+  private String originalFilename;
+  private boolean success;
+  private String imageName;   // Set on success
+  private String imageId;     // Set on success
+  private String error;       // Set on failure
+}
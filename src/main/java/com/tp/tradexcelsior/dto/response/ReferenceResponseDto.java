@@ -15,4 +15,5 @@ public class ReferenceResponseDto {
     private String type;
     private String link;
     private String imageId;
+    private ImageDto image;     // Only filled with expand=image
 }
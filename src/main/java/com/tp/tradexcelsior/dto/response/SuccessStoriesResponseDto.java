@@ -15,4 +15,5 @@ public class SuccessStoriesResponseDto {
   private String videoUrl;
   private String tagline;
   private String imageId;
+  private ImageDto image;     // Descriptor of the linked image, when resolved (expand=image on lists)
 }
@@ -0,0 +1,14 @@
+package com.tp.tradexcelsior.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserImportErrorDto {
+  private int row;          // 1-based: line of the CSV file the row starts on, or position in the JSON array
+  private String email;
+  private String error;
+}
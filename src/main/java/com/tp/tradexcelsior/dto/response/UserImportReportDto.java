@@ -0,0 +1,16 @@
+package com.tp.tradexcelsior.dto.response;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserImportReportDto {
+  private int rowsRead;
+  private int imported;
+  private int failed;
+  private List<UserImportErrorDto> errors;     // Failed rows (the first ones when there are very many)
+}
@@ -21,5 +21,6 @@ public class UserResponseDto {
   private LocalDate subscriptionStartDate;
   private LocalDate subscriptionEndDate;
   private int subscriptionDuration;
+  private boolean subscriptionExpired;
 
 }
@@ -0,0 +1,34 @@
+package com.tp.tradexcelsior.entity;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// An email waiting in (or sent from) the outbox; see EmailOutboxService
+@Document(collection = "emailOutbox")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEmail {
+
+  @Id
+  private String id;
+
+  private String dedupeKey;      // Optional; an email enqueued again with the same key is dropped
+  private String recipient;
+  private String subject;
+  private String html;
+
+  private String status;         // PENDING, SENDING, SENT or FAILED (gave up)
+  private int attempts;
+  private Instant nextAttemptAt;
+  private String claimId;        // Dispatch run currently sending it
+  private Instant claimedUntil;  // After this a SENDING email is considered abandoned and sent again
+  private String lastError;
+
+  private Instant createdAt;
+  private Instant sentAt;
+}
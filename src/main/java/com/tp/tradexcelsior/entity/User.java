@@ -38,6 +38,13 @@ public class User extends CommonEntity implements UserDetails {
   private LocalDate subscriptionStartDate;
   private LocalDate subscriptionEndDate;
   private int subscriptionDuration;
+  private boolean subscriptionExpired;   // Set by the subscription expiry job, cleared on renewal
+
+  // Normalized copies of the searchable fields, maintained by UserSearchKeysService
+  private String firstNameKey;
+  private String lastNameKey;
+  private String emailKey;
+  private List<String> searchTokens;   // Trigrams of the keys and the mobile number, for substring search
 
   @Override
   public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -55,4 +62,10 @@ public class User extends CommonEntity implements UserDetails {
     return this.email;
   }
 
+  // Admin accounts never expire
+  @Override
+  public boolean isAccountNonExpired() {
+    return "ADMIN".equals(this.role) || !this.subscriptionExpired;
+  }
+
 }
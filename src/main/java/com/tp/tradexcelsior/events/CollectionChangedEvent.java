@@ -0,0 +1,15 @@
+package com.tp.tradexcelsior.events;
+
+// A document in a watched collection was written, on this node or another one. Published by
+// ChangeStreamWatcher for in-process caches; documentId is null when the whole collection must be
+// treated as changed (dropped collection, lost change history, polling without per-document changes).
+public record CollectionChangedEvent(String collection, String documentId, boolean deleted) {
+
+  public static CollectionChangedEvent wholeCollection(String collection) {
+    return new CollectionChangedEvent(collection, null, true);
+  }
+
+  public boolean isWholeCollection() {
+    return documentId == null;
+  }
+}
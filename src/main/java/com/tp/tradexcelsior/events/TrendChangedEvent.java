@@ -0,0 +1,7 @@
+package com.tp.tradexcelsior.events;
+
+// The current month's trend of a core watchlist entry was set on this node. Published by
+// CoreWatchlistService after the write, so this node's clients need not wait for the change to come
+// back through ChangeStreamWatcher; TrendBroadcaster sends each change to subscribed clients once.
+public record TrendChangedEvent(String id, String company, String monthYear, String trend) {
+}
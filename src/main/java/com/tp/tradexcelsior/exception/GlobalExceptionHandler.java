@@ -24,6 +24,7 @@ import java.util.Map;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.security.authentication.AccountExpiredException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authorization.AuthorizationDeniedException;
@@ -181,6 +182,16 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    // Login with an expired subscription
+    @ExceptionHandler(AccountExpiredException.class)
+    public ResponseEntity<ResponseWrapper<Object>> handleAccountExpiredException(AccountExpiredException ex) {
+        Map<String, String> errors = new HashMap<>();
+        errors.put("message", "Your subscription has expired. Please renew it to continue.");
+        ResponseWrapper<Object> errorResponse = ResponseWrapper.error(HttpStatus.FORBIDDEN.value(), errors, "Subscription expired");
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.FORBIDDEN);
+    }
+
 
 
 }
@@ -1,6 +1,7 @@
 package com.tp.tradexcelsior.filters;
 
 import com.tp.tradexcelsior.security.JwtTokenProvider;
+import com.tp.tradexcelsior.service.impl.CustomUserDetailsService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,7 +10,6 @@ import java.io.IOException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -20,9 +20,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
   private JwtTokenProvider jwtTokenProvider;
 
-  private UserDetailsService userDetailsService;
+  private CustomUserDetailsService userDetailsService;
 
-  public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService) {
+  public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, CustomUserDetailsService userDetailsService) {
     this.jwtTokenProvider = jwtTokenProvider;
     this.userDetailsService = userDetailsService;
   }
@@ -40,9 +40,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
       // get username from token
       String username = jwtTokenProvider.getUsername(token);
 
-      UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+      UserDetails userDetails = userDetailsService.loadPrincipal(username);
       System.out.println(userDetails.toString());
 
+      // An expired subscription ends access even with a token that is still valid
+      if (!userDetails.isAccountNonExpired()) {
+        filterChain.doFilter(request, response);
+        return;
+      }
+
       UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
           userDetails,
           null,
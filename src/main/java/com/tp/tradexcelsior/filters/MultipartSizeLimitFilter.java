@@ -0,0 +1,56 @@
+package com.tp.tradexcelsior.filters;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// The servlet container has a single multipart limit, sized for POST /images/batch (see WebConfig).
+// Every other multipart request is held to spring.servlet.multipart.max-request-size here, before its
+// body is read: by its declared length, or refused when it declares none.
+@Component
+public class MultipartSizeLimitFilter extends OncePerRequestFilter {
+
+  public static final String BATCH_UPLOAD_PATH = "/images/batch";
+
+  @Value("${spring.servlet.multipart.max-request-size:10MB}")
+  private DataSize maxRequestSize;
+
+  @Value("${image.batch.max-request-size:200MB}")
+  private DataSize maxBatchRequestSize;
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request,
+      HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+
+    String contentType = request.getContentType();
+    if (contentType == null || !contentType.toLowerCase().startsWith("multipart/")) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    boolean batchUpload = HttpMethod.POST.matches(request.getMethod())
+        && BATCH_UPLOAD_PATH.equals(request.getServletPath());
+    DataSize limit = batchUpload ? maxBatchRequestSize : maxRequestSize;
+
+    long contentLength = request.getContentLengthLong();
+    if (contentLength < 0) {
+      response.sendError(HttpStatus.LENGTH_REQUIRED.value(), "Multipart requests must declare their Content-Length.");
+      return;
+    }
+    if (contentLength > limit.toBytes()) {
+      response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Request is larger than the " + limit + " limit.");
+      return;
+    }
+
+    filterChain.doFilter(request, response);
+  }
+}
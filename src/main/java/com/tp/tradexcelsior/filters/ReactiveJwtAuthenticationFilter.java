@@ -0,0 +1,79 @@
+package com.tp.tradexcelsior.filters;
+
+import com.tp.tradexcelsior.security.JwtTokenProvider;
+import com.tp.tradexcelsior.service.impl.CustomUserDetailsService;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// JwtAuthenticationFilter for the reactive API, which sits outside the servlet filter chain. Accepts
+// the same bearer tokens; every route it guards is open to both ADMIN and USER, so a valid token for
+// a user with an active subscription is all it checks. Principals come from the shared cache, a miss
+// is loaded on a worker thread so the event loop never waits on MongoDB.
+@Component
+public class ReactiveJwtAuthenticationFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+  @Autowired
+  private JwtTokenProvider jwtTokenProvider;
+
+  @Autowired
+  private CustomUserDetailsService userDetailsService;
+
+  @Override
+  public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+    String token = getTokenFromRequest(request);
+    if (token == null) {
+      return unauthorized("Full authentication is required to access this resource");
+    }
+
+    String username;
+    try {
+      jwtTokenProvider.validateToken(token);
+      username = jwtTokenProvider.getUsername(token);
+    } catch (JwtException | IllegalArgumentException e) {
+      return unauthorized(e.getMessage());
+    }
+
+    return loadPrincipal(username)
+        .map(UserDetails::isAccountNonExpired)
+        .onErrorReturn(false) // Unknown or deleted user
+        .flatMap(active -> active ? next.handle(request) : unauthorized("User account is not active"));
+  }
+
+  private Mono<UserDetails> loadPrincipal(String username) {
+    UserDetails cached = userDetailsService.getCachedPrincipal(username);
+    if (cached != null) {
+      return Mono.just(cached);
+    }
+    return Mono.fromCallable(() -> userDetailsService.loadPrincipal(username))
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  // Same body as JwtAuthenticationEntryPoint
+  private Mono<ServerResponse> unauthorized(String message) {
+    return ServerResponse.status(HttpStatus.UNAUTHORIZED)
+        .contentType(MediaType.TEXT_PLAIN)
+        .bodyValue("Access Denied !! " + message + "\n");
+  }
+
+  private String getTokenFromRequest(ServerRequest request) {
+    String bearerToken = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+
+    if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+      return bearerToken.substring(7);
+    }
+
+    return null;
+  }
+}
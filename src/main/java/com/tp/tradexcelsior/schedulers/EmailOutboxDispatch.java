@@ -0,0 +1,26 @@
+package com.tp.tradexcelsior.schedulers;
+
+import com.tp.tradexcelsior.service.impl.EmailOutboxService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class EmailOutboxDispatch {
+
+  @Autowired
+  private EmailOutboxService emailOutboxService;
+
+  @Value("${email.outbox.enabled:true}")
+  private boolean enabled;
+
+  //  Send queued emails that are due. Fixed delay, so a long run (a big backlog) never overlaps the next.
+  @Scheduled(fixedDelayString = "${email.outbox.poll-interval:PT5S}", initialDelayString = "${email.outbox.poll-interval:PT5S}")
+  public void dispatchEmails() {
+    if (enabled) {
+      emailOutboxService.dispatch();
+    }
+  }
+
+}
@@ -0,0 +1,31 @@
+package com.tp.tradexcelsior.schedulers;
+
+import com.tp.tradexcelsior.service.impl.ImageCleanupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OrphanedImageCleanup {
+
+  @Autowired
+  private ImageCleanupService imageCleanupService;
+
+  @Value("${image.cleanup.enabled:false}")
+  private boolean enabled;
+
+  @Value("${image.cleanup.dry-run:true}")
+  private boolean dryRun;
+
+  //  Nightly sweep of GridFS files no longer referenced by any book, reference or success story.
+  //  Each run covers a bounded slice of fs.files and the next run continues where it stopped.
+  //  Off by default, and only reports (GET /images/cleanup/report) until dry-run is turned off.
+  @Scheduled(cron = "${image.cleanup.cron:0 30 3 * * ?}")
+  public void cleanupOrphanedImages() {
+    if (enabled) {
+      imageCleanupService.cleanupOrphanedImages(dryRun);
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package com.tp.tradexcelsior.schedulers;
+
+import com.tp.tradexcelsior.service.impl.SubscriptionExpiryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SubscriptionExpiry {
+
+  @Autowired
+  private SubscriptionExpiryService subscriptionExpiryService;
+
+  @Value("${subscription.expiry.enabled:true}")
+  private boolean enabled;
+
+  //  Expire subscriptions that ended and send reminders for those ending soon. Runs hourly: the first
+  //  run of a day does the work, later runs find nothing new (or resume a run that was interrupted).
+  @Scheduled(cron = "${subscription.expiry.cron:0 10 * * * ?}")
+  public void expireSubscriptions() {
+    if (enabled) {
+      subscriptionExpiryService.run();
+    }
+  }
+
+}
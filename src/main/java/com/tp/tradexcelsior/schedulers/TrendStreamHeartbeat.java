@@ -0,0 +1,21 @@
+package com.tp.tradexcelsior.schedulers;
+
+import com.tp.tradexcelsior.service.impl.TrendBroadcaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TrendStreamHeartbeat {
+
+  @Autowired
+  private TrendBroadcaster trendBroadcaster;
+
+  //  A comment line to every trend stream client, well inside the idle timeouts of proxies and load
+  //  balancers, which would otherwise cut connections that only carry an occasional change.
+  @Scheduled(fixedRateString = "${watchlist.trends.stream.heartbeat-interval:PT20S}")
+  public void sendHeartbeats() {
+    trendBroadcaster.sendHeartbeats();
+  }
+
+}
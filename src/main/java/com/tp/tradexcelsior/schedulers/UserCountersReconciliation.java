@@ -0,0 +1,21 @@
+package com.tp.tradexcelsior.schedulers;
+
+import com.tp.tradexcelsior.service.impl.UserCounterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserCountersReconciliation {
+
+  @Autowired
+  private UserCounterService userCounterService;
+
+  //  Just after midnight subscriptions ending yesterday stop counting as active; recount the
+  //  dashboard counters for the new day (a read before this runs recounts on its own).
+  @Scheduled(cron = "${users.counters.reconcile-cron:0 1 0 * * ?}")
+  public void reconcileUserCounters() {
+    userCounterService.reconcile();
+  }
+
+}
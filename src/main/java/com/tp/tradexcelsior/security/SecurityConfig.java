@@ -2,6 +2,7 @@ package com.tp.tradexcelsior.security;
 
 import com.tp.tradexcelsior.filters.JwtAuthenticationFilter;
 import com.tp.tradexcelsior.service.impl.CustomUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import lombok.AllArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -38,6 +39,11 @@ public class SecurityConfig {
 
     http.csrf(csrf -> csrf.disable())
         .authorizeHttpRequests((authorize) -> {
+          // Async dispatches finish a streamed response (GET /images/export, the trend stream) whose request
+          // was already authorized; the JWT filter does not run for them, so they would otherwise be rejected
+          // as anonymous. First, so that no path rule below applies to them.
+          authorize.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll();
+
           // Allowing USER role to access specific APIs
           authorize.requestMatchers(HttpMethod.GET, "/api/v1/reference").hasAnyRole("ADMIN", "USER");
           authorize.requestMatchers(HttpMethod.GET, "/api/v1/reference/{id}").hasAnyRole("ADMIN", "USER");
@@ -58,6 +64,13 @@ public class SecurityConfig {
           authorize.requestMatchers(HttpMethod.GET, "/api/v1/success-stories").hasAnyRole("ADMIN", "USER");
           authorize.requestMatchers(HttpMethod.POST, "/api/v1/support").hasAnyRole("ADMIN", "USER");
           authorize.requestMatchers(HttpMethod.GET, "/images/id/{imageId}").hasAnyRole("ADMIN", "USER");
+          authorize.requestMatchers(HttpMethod.GET, "/api/v1/core-watchlist/changes").hasAnyRole("ADMIN", "USER");
+          authorize.requestMatchers(HttpMethod.GET, "/api/v1/book/changes").hasAnyRole("ADMIN", "USER");
+          authorize.requestMatchers(HttpMethod.GET, "/api/v1/reference/changes").hasAnyRole("ADMIN", "USER");
+          authorize.requestMatchers(HttpMethod.GET, "/api/v1/checklist/changes").hasAnyRole("ADMIN", "USER");
+          authorize.requestMatchers(HttpMethod.GET, "/api/v1/core-watchlist/trends/stream").hasAnyRole("ADMIN", "USER");
+
+          authorize.requestMatchers(HttpMethod.GET, "/api/v1/success-stories/changes").hasAnyRole("ADMIN", "USER");
 
 
           // Allowing ADMIN role to access ALL APIs
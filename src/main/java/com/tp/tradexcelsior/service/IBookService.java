@@ -2,16 +2,20 @@ package com.tp.tradexcelsior.service;
 
 import com.tp.tradexcelsior.dto.request.BookRequestDto;
 import com.tp.tradexcelsior.dto.response.BookResponseDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
+import com.tp.tradexcelsior.util.CachedResponse;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import java.util.List;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface IBookService {
-    ResponseWrapper<List<BookResponseDto>> getAllBooks();
+    ResponseWrapper<List<BookResponseDto>> getAllBooks(boolean expandImages);
+    CachedResponse getAllBooksResponse();
     ResponseWrapper<BookResponseDto> getBookById(String id);
     ResponseWrapper<BookResponseDto> createBook(BookRequestDto bookRequestDto, MultipartFile image);
     ResponseWrapper<BookResponseDto> updateBook(String id, BookRequestDto updatedBookRequestDto, MultipartFile image);
     ResponseWrapper<String> deleteBook(String id);
-    ResponseWrapper<List<BookResponseDto>> searchBooks(String name);
+    ResponseWrapper<List<BookResponseDto>> searchBooks(String name, boolean expandImages);
+    ResponseWrapper<ChangeSetDto<BookResponseDto>> getBookChanges(String since, int limit);
 
 }
@@ -2,6 +2,7 @@ package com.tp.tradexcelsior.service;
 
 import com.tp.tradexcelsior.dto.request.CoreWatchlistRequestDto;
 import com.tp.tradexcelsior.dto.request.WatchlistTrendUpdateDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.CoreWatchlistResponseDto;
 import com.tp.tradexcelsior.dto.response.PagedResponse;
 import com.tp.tradexcelsior.util.ResponseWrapper;
@@ -15,4 +16,5 @@ public interface ICoreWatchlistService {
   ResponseWrapper<CoreWatchlistResponseDto> updateCurrentMonthTrend(WatchlistTrendUpdateDto watchlistTrendUpdateDto);
   ResponseWrapper<String> updateCoreWatchlistsForNewMonth();
   ResponseWrapper<String> deleteCoreWatchList(String coreWatchlistId);
+  ResponseWrapper<ChangeSetDto<CoreWatchlistResponseDto>> getCoreWatchlistChanges(String since, int limit);
 }
@@ -1,6 +1,7 @@
 package com.tp.tradexcelsior.service;
 
 import com.tp.tradexcelsior.dto.request.SuccessStoriesRequestDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.PagedResponse;
 import com.tp.tradexcelsior.dto.response.SuccessStoriesResponseDto;
 import com.tp.tradexcelsior.util.ResponseWrapper;
@@ -10,7 +11,9 @@ public interface ISuccessStoriesService {
   ResponseWrapper<SuccessStoriesResponseDto> addSuccessStories(SuccessStoriesRequestDto successStoriesRequestDto);
   ResponseWrapper<SuccessStoriesResponseDto> addSuccessStoriesWithImage(SuccessStoriesRequestDto successStoriesRequestDto, MultipartFile image);
   ResponseWrapper<SuccessStoriesResponseDto> getSuccessStoryByUserName(String userName);
-  ResponseWrapper<PagedResponse<SuccessStoriesResponseDto>> getAllSuccessStories(int page, int size);
+  ResponseWrapper<PagedResponse<SuccessStoriesResponseDto>> getAllSuccessStories(int page, int size, boolean expandImages);
   ResponseWrapper<SuccessStoriesResponseDto> updateSuccessStory(String userName, SuccessStoriesRequestDto successStoriesRequestDto, MultipartFile image);
+  ResponseWrapper<SuccessStoriesResponseDto> linkImage(String userName, String imageId, String imageName);
   ResponseWrapper<String> deleteSuccessStory(String userName);
+  ResponseWrapper<ChangeSetDto<SuccessStoriesResponseDto>> getSuccessStoryChanges(String since, int limit);
 }
@@ -1,6 +1,7 @@
 package com.tp.tradexcelsior.service;
 
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.tp.tradexcelsior.dto.request.AddUserDto;
 import com.tp.tradexcelsior.dto.request.ResetPasswordDto;
 import com.tp.tradexcelsior.dto.request.SetPasswordDto;
@@ -14,8 +15,9 @@ public interface IUserService {
   ResponseWrapper<UserResponseDto> getUser(String id);
   ResponseWrapper<PagedResponse<UserResponseDto>> getUsersList(int page, int size);
   ResponseWrapper<UserResponseDto> updateUser(AddUserDto addUserDto, String id);
+  ResponseWrapper<UserResponseDto> patchUser(String id, JsonNode patch);
   ResponseWrapper<String> deleteUser(String id);
-  ResponseWrapper<PagedResponse<UserResponseDto>> searchUsers(String name, String email, String mobileNumber, int page, int size);
+  ResponseWrapper<PagedResponse<UserResponseDto>> searchUsers(String name, String email, String mobileNumber, boolean contains, int page, int size);
   ResponseWrapper<UserResponseDto> updateSubscription(String userId, int extendSubscriptionByYear);
   ResponseWrapper<UsersCountWithStatus> getUsersStatusCount();
   ResponseWrapper<UserResponseDto> setPassword(SetPasswordDto setPasswordDto, String userId);
@@ -3,6 +3,7 @@ package com.tp.tradexcelsior.service.impl;
 import com.tp.tradexcelsior.dto.request.BookRequestDto;
 import com.tp.tradexcelsior.dto.request.SuccessStoriesRequestDto;
 import com.tp.tradexcelsior.dto.response.BookResponseDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.SuccessStoriesResponseDto;
 import com.tp.tradexcelsior.entity.Book;
 import com.tp.tradexcelsior.entity.SuccessStories;
@@ -11,6 +12,7 @@ import com.tp.tradexcelsior.exception.custom.BookNotFoundException;
 import com.tp.tradexcelsior.exception.custom.SuccessStoryNotFoundException;
 import com.tp.tradexcelsior.repo.BookRepository;
 import com.tp.tradexcelsior.service.IBookService;
+import com.tp.tradexcelsior.util.CachedResponse;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -34,19 +36,34 @@ public class BookService implements IBookService {
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
     @Autowired
     private ImageService imageService;
 
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
     @Override
-    public ResponseWrapper<List<BookResponseDto>> getAllBooks() {
+    public ResponseWrapper<List<BookResponseDto>> getAllBooks(boolean expandImages) {
         log.info("Fetching all books from the database");
         List<Book> books = bookRepository.findByIsDeletedFalse();
         log.info("Total books found: {}", books.size());
 
         List<BookResponseDto> bookResponseDtoList = books.stream().map(book -> modelMapper.map(book, BookResponseDto.class)).toList();
+        if (expandImages) {
+            imageService.expandImages(bookResponseDtoList, BookResponseDto::getImageId, BookResponseDto::setImage);
+        }
         return ResponseWrapper.success(HttpStatus.OK.value(), bookResponseDtoList, "List of all books");
     }
 
+    // The plain (non-expanded) book list, pre-serialized and cached until the next write
+    @Override
+    public CachedResponse getAllBooksResponse() {
+        return catalogResponseCache.get(CatalogResponseCache.BOOKS, () -> getAllBooks(false));
+    }
+
     @Override
     public ResponseWrapper<BookResponseDto> getBookById(String id) {
         log.info("Fetching book with ID: {}", id);
@@ -79,7 +96,7 @@ public class BookService implements IBookService {
             Map<String, String> imageByName = null;
 
             try {
-                imageByName = imageService.uploadImageWithCustomName(image, book.getName() + "_book");
+                imageByName = imageService.uploadImageForEntity(image, book.getName() + "_book");
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -88,6 +105,7 @@ public class BookService implements IBookService {
         }
 
         Book savedBook = bookRepository.save(book);
+        catalogResponseCache.invalidate(CatalogResponseCache.BOOKS);
         log.info("Book created successfully with ID: {}", savedBook.getId());
         BookResponseDto savedBookRequestDto = modelMapper.map(savedBook, BookResponseDto.class);
         return ResponseWrapper.success(HttpStatus.CREATED.value(), savedBookRequestDto, "New book saved.");
@@ -105,12 +123,16 @@ public class BookService implements IBookService {
 
         // Update book details
         updatedBookRequestDto.setId(existingBook.getId());
+        String previousImageId = existingBook.getImageId();
+
+        existingBook = modelMapper.map(updatedBookRequestDto, Book.class);
+        existingBook.setImageId(previousImageId); // The request carries no image id; keep the current one
 
         if(image!=null) {
             Map<String, String> imageByName = null;
 
             try {
-                imageByName = imageService.uploadImageWithCustomName(image, updatedBookRequestDto.getName() + "_book");
+                imageByName = imageService.uploadImageForEntity(image, updatedBookRequestDto.getName() + "_book");
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -118,11 +140,16 @@ public class BookService implements IBookService {
             existingBook.setImageId(imageByName.get("imageId"));
         }
 
-        existingBook = modelMapper.map(updatedBookRequestDto, Book.class);
         existingBook.setLastModified(LocalDateTime.now());
         // Save updated book
         Book savedBook = bookRepository.save(existingBook);
+        catalogResponseCache.invalidate(CatalogResponseCache.BOOKS);
         log.info("Book updated successfully with ID: {}", savedBook.getId());
+
+        // The replaced image loses this book's reference (identical re-uploads reuse the same file)
+        if(image!=null) {
+            imageService.releaseImage(previousImageId);
+        }
         BookResponseDto savedBookResponseDto = modelMapper.map(savedBook, BookResponseDto.class);
         return ResponseWrapper.success(HttpStatus.OK.value(), savedBookResponseDto, "Book updated.");
     }
@@ -136,18 +163,30 @@ public class BookService implements IBookService {
         existingBook.setDeleted(true);
         existingBook.setLastModified(LocalDateTime.now());
         bookRepository.save(existingBook); // Save the updated book (soft delete)
+        catalogResponseCache.invalidate(CatalogResponseCache.BOOKS);
+        imageService.releaseImage(existingBook.getImageId());
 
         return ResponseWrapper.success(HttpStatus.OK.value(), "Book id: "+ id, "Deleted successfully.");
     }
 
     @Override
-    public ResponseWrapper<List<BookResponseDto>> searchBooks(String name) {
+    public ResponseWrapper<List<BookResponseDto>> searchBooks(String name, boolean expandImages) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Book name cannot be empty");
         }
 
         List<Book> books = bookRepository.findByNameContainingIgnoreCaseAndIsDeletedFalse(name);
         List<BookResponseDto> bookResponseDtoList = books.stream().map(book -> modelMapper.map(book, BookResponseDto.class)).toList();
+        if (expandImages) {
+            imageService.expandImages(bookResponseDtoList, BookResponseDto::getImageId, BookResponseDto::setImage);
+        }
         return ResponseWrapper.success(HttpStatus.OK.value(), bookResponseDtoList, "List of searched books.");
     }
-}
\ No newline at end of file
+
+    // Books modified after the watermark, deleted ones included
+    @Override
+    public ResponseWrapper<ChangeSetDto<BookResponseDto>> getBookChanges(String since, int limit) {
+        ChangeSetDto<BookResponseDto> changes = changeFeedService.getChanges(Book.class, Book::getId, BookResponseDto.class, since, limit);
+        return ResponseWrapper.success(HttpStatus.OK.value(), changes, "Book changes.");
+    }
+}
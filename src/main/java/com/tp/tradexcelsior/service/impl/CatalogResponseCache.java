@@ -0,0 +1,92 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp.tradexcelsior.events.CollectionChangedEvent;
+import com.tp.tradexcelsior.util.CachedResponse;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+// Read-through cache of complete list responses for the small catalog collections (books,
+// references, checklists). Each entry holds the JSON bytes exactly as the endpoint would write them
+// plus an ETag derived from those bytes, so a hit costs neither a query, mapping nor serialization,
+// and clients holding the same bytes get a 304. The owning service invalidates its entry on every write.
+@Slf4j
+@Service
+public class CatalogResponseCache {
+
+  public static final String BOOKS = "books";
+  public static final String REFERENCES = "references";
+  public static final String CHECKLISTS = "checklists";
+
+  private static final Set<String> COLLECTIONS = Set.of(BOOKS, REFERENCES, CHECKLISTS);
+
+  // Generation of the data a response was built from; a response built before the latest
+  // invalidation is never served
+  private record Entry(long generation, CachedResponse response) {
+  }
+
+  // Same mapper (modules, date format) the MVC message converters use
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+  // Cached response for the collection, building it with the loader on a miss. The loader's
+  // response is serialized once; note its timestamp is the time it was built.
+  public CachedResponse get(String collection, Supplier<?> loader) {
+    AtomicLong generation = generation(collection);
+    long current = generation.get();
+
+    Entry entry = entries.get(collection);
+    if (entry != null && entry.generation() == current) {
+      return entry.response();
+    }
+
+    // Read the generation before loading: a write that lands while the loader runs bumps it, so
+    // this response is returned to the caller but not kept
+    CachedResponse response = serialize(loader.get());
+    entries.merge(collection, new Entry(current, response),
+        (existing, built) -> existing.generation() >= built.generation() ? existing : built);
+    log.debug("Cached {} response ({} bytes)", collection, response.body().length);
+    return response;
+  }
+
+  // Called by the owning service after every create, update or delete in the collection
+  public void invalidate(String collection) {
+    generation(collection).incrementAndGet();
+    entries.remove(collection);
+  }
+
+  // Writes made by other nodes
+  @EventListener
+  public void onCollectionChanged(CollectionChangedEvent event) {
+    if (COLLECTIONS.contains(event.collection())) {
+      invalidate(event.collection());
+    }
+  }
+
+  private AtomicLong generation(String collection) {
+    return generations.computeIfAbsent(collection, key -> new AtomicLong());
+  }
+
+  private CachedResponse serialize(Object value) {
+    try {
+      byte[] body = objectMapper.writeValueAsBytes(value);
+      // Same strong ETag format as ShallowEtagHeaderFilter
+      return new CachedResponse(body, "\"0" + DigestUtils.md5DigestAsHex(body) + "\"");
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize cached response", e);
+    }
+  }
+}
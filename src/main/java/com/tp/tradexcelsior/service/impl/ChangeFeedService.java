@@ -0,0 +1,133 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.client.model.Indexes;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
+import com.tp.tradexcelsior.entity.Book;
+import com.tp.tradexcelsior.entity.Checklist;
+import com.tp.tradexcelsior.entity.CommonEntity;
+import com.tp.tradexcelsior.entity.CoreWatchlist;
+import com.tp.tradexcelsior.entity.Reference;
+import com.tp.tradexcelsior.entity.SuccessStories;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+// Incremental sync for the catalog resources. Every write stamps lastModified and deletes are soft,
+// so "everything modified after X" (tombstones included) is one range scan over a lastModified index.
+// The watermark handed to clients is the (lastModified, id) of the last document returned, which keeps
+// paging exact when many documents share a timestamp.
+@Slf4j
+@Service
+public class ChangeFeedService {
+
+  public static final int MAX_LIMIT = 500;
+
+  private static final List<Class<? extends CommonEntity>> SYNCED_ENTITIES =
+      List.of(CoreWatchlist.class, Book.class, Reference.class, Checklist.class, SuccessStories.class);
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ModelMapper modelMapper;
+
+  // Changes younger than this are held back until the next call, so a write stamped by a node whose
+  // clock is slightly behind (or that commits a moment late) does not end up behind a watermark
+  // that was already handed out
+  @Value("${changes.feed.settle-time:PT5S}")
+  private Duration settleTime;
+
+  @PostConstruct
+  public void createIndexes() {
+    try {
+      for (Class<? extends CommonEntity> entityClass : SYNCED_ENTITIES) {
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(entityClass))
+            .createIndex(Indexes.ascending("lastModified", "_id"));
+      }
+    } catch (Exception e) {
+      log.error("Could not create change feed indexes: {}", e.getMessage());
+    }
+  }
+
+  // Documents of the entity modified after the watermark (all of them without one), oldest first
+  public <E extends CommonEntity, D> ChangeSetDto<D> getChanges(Class<E> entityClass, Function<E, String> idOf,
+      Class<D> dtoClass, String since, int limit) {
+    if (limit < 1 || limit > MAX_LIMIT) {
+      throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT + ".");
+    }
+
+    List<Criteria> criteria = new ArrayList<>();
+    criteria.add(Criteria.where("lastModified").lte(LocalDateTime.now().minus(settleTime)));
+    if (since != null && !since.isBlank()) {
+      Watermark from = Watermark.parse(since);
+      criteria.add(new Criteria().orOperator(
+          Criteria.where("lastModified").gt(from.lastModified()),
+          Criteria.where("lastModified").is(from.lastModified()).and("_id").gt(from.id())));
+    }
+
+    Query query = new Query(new Criteria().andOperator(criteria))
+        .with(Sort.by(Sort.Direction.ASC, "lastModified", "_id"))
+        .limit(limit + 1);
+    List<E> documents = mongoTemplate.find(query, entityClass);
+
+    boolean hasMore = documents.size() > limit;
+    if (hasMore) {
+      documents = documents.subList(0, limit);
+    }
+
+    List<D> updated = new ArrayList<>();
+    List<D> deleted = new ArrayList<>();
+    for (E document : documents) {
+      D dto = modelMapper.map(document, dtoClass);
+      if (document.isDeleted()) {
+        deleted.add(dto);
+      } else {
+        updated.add(dto);
+      }
+    }
+
+    // Nothing new: the client keeps its watermark
+    String watermark = since;
+    if (!documents.isEmpty()) {
+      E last = documents.get(documents.size() - 1);
+      watermark = new Watermark(last.getLastModified(), idOf.apply(last)).format();
+    }
+
+    log.debug("{} changes for {} since {}", documents.size(), entityClass.getSimpleName(), since);
+    return new ChangeSetDto<>(updated, deleted, watermark, hasMore);
+  }
+
+  // "<epoch millis>:<id>"; stored dates have millisecond precision and are converted in the
+  // system time zone, like every LocalDateTime the application writes
+  private record Watermark(LocalDateTime lastModified, String id) {
+
+    static Watermark parse(String value) {
+      int separator = value.indexOf(':');
+      try {
+        long millis = Long.parseLong(separator < 0 ? value : value.substring(0, separator));
+        String id = separator < 0 ? "" : value.substring(separator + 1);
+        return new Watermark(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()), id);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid watermark: " + value);
+      }
+    }
+
+    String format() {
+      return lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + ":" + id;
+    }
+  }
+}
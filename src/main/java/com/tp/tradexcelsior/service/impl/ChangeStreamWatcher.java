@@ -0,0 +1,307 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.tp.tradexcelsior.entity.Book;
+import com.tp.tradexcelsior.entity.Checklist;
+import com.tp.tradexcelsior.entity.CoreWatchlist;
+import com.tp.tradexcelsior.entity.Reference;
+import com.tp.tradexcelsior.entity.User;
+import com.tp.tradexcelsior.events.CollectionChangedEvent;
+import com.tp.tradexcelsior.storage.ImageStorage;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+// Publishes a CollectionChangedEvent for every write to the collections that nodes cache locally,
+// whichever node made it. On a replica set or sharded cluster it follows one database-wide change
+// stream and checkpoints the resume token per node, so a restart or a lost connection resumes where it
+// stopped instead of missing the changes in between. A standalone server has no change streams; there
+// the collections are polled on lastModified instead (fs.files on metadata.modifiedAt).
+@Slf4j
+@Service
+public class ChangeStreamWatcher {
+
+  private static final String CHECKPOINTS_COLLECTION = "changeStreamCheckpoints";
+
+  // Server error codes for a resume token that cannot be used any more (fallen off the oplog, or
+  // pointing past the end of an invalidated stream)
+  private static final Set<Integer> HISTORY_LOST_CODES = Set.of(260, 280, 286);
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
+  @Value("${changes.enabled:true}")
+  private boolean enabled;
+
+  // auto (change streams when the deployment supports them), stream or poll
+  @Value("${changes.mode:auto}")
+  private String mode;
+
+  @Value("${changes.node-id:${HOSTNAME:local}}")
+  private String nodeId;
+
+  @Value("${changes.checkpoint-interval:PT5S}")
+  private Duration checkpointInterval;
+
+  @Value("${changes.poll-interval:PT10S}")
+  private Duration pollInterval;
+
+  // Re-read window on every poll, covering clock differences between the nodes that stamp lastModified
+  @Value("${changes.poll-overlap:PT5S}")
+  private Duration pollOverlap;
+
+  // Collections with a lastModified field; fs.files is watched in addition
+  private List<String> entityCollections;
+
+  private volatile boolean running;
+
+  private Thread worker;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      log.info("Collection change watching is disabled");
+      return;
+    }
+
+    entityCollections = List.of(
+        mongoTemplate.getCollectionName(Book.class),
+        mongoTemplate.getCollectionName(Reference.class),
+        mongoTemplate.getCollectionName(Checklist.class),
+        mongoTemplate.getCollectionName(User.class),
+        mongoTemplate.getCollectionName(CoreWatchlist.class));
+
+    boolean useStream = switch (mode) {
+      case "stream" -> true;
+      case "poll" -> false;
+      default -> supportsChangeStreams();
+    };
+
+    running = true;
+    worker = new Thread(useStream ? this::watch : this::poll, "collection-change-watcher");
+    worker.setDaemon(true);
+    worker.start();
+    log.info("Watching {} and {} for changes by {}", entityCollections, ImageStorage.FILES_COLLECTION,
+        useStream ? "change stream" : "polling");
+  }
+
+  @PreDestroy
+  public void stop() {
+    running = false;
+    if (worker != null) {
+      worker.interrupt();
+    }
+  }
+
+  // Change streams need a replica set (any size) or a mongos
+  private boolean supportsChangeStreams() {
+    try {
+      Document hello = mongoTemplate.getDb().runCommand(new Document("hello", 1));
+      return hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+    } catch (Exception e) {
+      log.warn("Could not determine deployment type, falling back to polling: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  private List<String> watchedCollections() {
+    List<String> collections = new ArrayList<>(entityCollections);
+    collections.add(ImageStorage.FILES_COLLECTION);
+    return collections;
+  }
+
+  // --- Change stream ---
+
+  private void watch() {
+    List<String> collections = watchedCollections();
+    // Only what an invalidation needs; the resume token (_id) is always kept
+    List<Bson> pipeline = List.of(
+        Aggregates.match(Filters.in("ns.coll", collections)),
+        Aggregates.project(Projections.include("operationType", "ns", "documentKey")));
+
+    BsonDocument resumeToken = loadResumeToken();
+    long lastCheckpoint = 0;
+
+    while (running) {
+      try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openStream(pipeline, resumeToken)) {
+        while (running) {
+          ChangeStreamDocument<Document> change = cursor.tryNext();
+          if (change != null) {
+            if (change.getOperationType() == OperationType.INVALIDATE) {
+              // Database dropped: the stream ends and cannot be resumed
+              publishWholeCollections(collections);
+              resumeToken = null;
+              break;
+            }
+            publish(change);
+          }
+
+          // Advances with every batch, also when nothing in the watched collections changed
+          resumeToken = cursor.getResumeToken();
+          if (resumeToken != null && System.currentTimeMillis() - lastCheckpoint >= checkpointInterval.toMillis()) {
+            saveResumeToken(resumeToken);
+            lastCheckpoint = System.currentTimeMillis();
+          }
+        }
+      } catch (MongoServerException e) {
+        if (HISTORY_LOST_CODES.contains(e.getCode())) {
+          // Changes between the checkpoint and now are gone; everything cached may be stale
+          log.warn("Change stream history lost, restarting from now: {}", e.getMessage());
+          publishWholeCollections(collections);
+          resumeToken = null;
+        } else if (running) {
+          log.warn("Change stream failed, resuming in {}: {}", pollInterval, e.getMessage());
+          sleep(pollInterval);
+        }
+      } catch (Exception e) {
+        if (running) {
+          log.warn("Change stream failed, resuming in {}: {}", pollInterval, e.getMessage());
+          sleep(pollInterval);
+        }
+      }
+    }
+
+    if (resumeToken != null) {
+      saveResumeToken(resumeToken);
+    }
+  }
+
+  private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openStream(List<Bson> pipeline,
+      BsonDocument resumeToken) {
+    ChangeStreamIterable<Document> stream = mongoTemplate.getDb().watch(pipeline);
+    if (resumeToken != null) {
+      stream = stream.resumeAfter(resumeToken);
+    }
+    return stream.cursor();
+  }
+
+  private void publish(ChangeStreamDocument<Document> change) {
+    if (change.getNamespace() == null) {
+      return;
+    }
+    String collection = change.getNamespace().getCollectionName();
+    BsonDocument documentKey = change.getDocumentKey();
+
+    if (documentKey == null || !documentKey.containsKey("_id")) {
+      // drop / rename of the collection itself
+      eventPublisher.publishEvent(CollectionChangedEvent.wholeCollection(collection));
+      return;
+    }
+    eventPublisher.publishEvent(new CollectionChangedEvent(collection, idToString(documentKey.get("_id")),
+        change.getOperationType() == OperationType.DELETE));
+  }
+
+  private String idToString(BsonValue id) {
+    if (id.isObjectId()) {
+      return id.asObjectId().getValue().toHexString();
+    }
+    return id.isString() ? id.asString().getValue() : id.toString();
+  }
+
+  private BsonDocument loadResumeToken() {
+    BsonDocument checkpoint = mongoTemplate.getCollection(CHECKPOINTS_COLLECTION)
+        .withDocumentClass(BsonDocument.class)
+        .find(Filters.eq("_id", nodeId))
+        .first();
+    return checkpoint != null && checkpoint.isDocument("resumeToken") ? checkpoint.getDocument("resumeToken") : null;
+  }
+
+  private void saveResumeToken(BsonDocument resumeToken) {
+    try {
+      mongoTemplate.getCollection(CHECKPOINTS_COLLECTION).replaceOne(
+          Filters.eq("_id", nodeId),
+          new Document("_id", nodeId).append("resumeToken", resumeToken).append("updatedAt", new Date()),
+          new ReplaceOptions().upsert(true));
+    } catch (Exception e) {
+      log.warn("Could not save change stream checkpoint: {}", e.getMessage());
+    }
+  }
+
+  // --- Polling fallback ---
+
+  private void poll() {
+    try {
+      for (String collection : entityCollections) {
+        // Same index the change feed uses
+        mongoTemplate.getCollection(collection).createIndex(Indexes.ascending("lastModified", "_id"));
+      }
+      mongoTemplate.getCollection(ImageStorage.FILES_COLLECTION).createIndex(Indexes.ascending(ImageStorage.MODIFIED_AT));
+    } catch (Exception e) {
+      log.error("Could not create change polling indexes: {}", e.getMessage());
+    }
+
+    Date lastPoll = new Date();
+    while (running) {
+      sleep(pollInterval);
+      if (!running) {
+        break;
+      }
+
+      Date pollStart = new Date();
+      Date since = new Date(lastPoll.getTime() - pollOverlap.toMillis());
+      try {
+        for (String collection : entityCollections) {
+          // Soft deletes are updates of isDeleted; hard deletes are not visible to polling
+          publishChanged(collection, Filters.gte("lastModified", since));
+        }
+        // New files, names added or removed, variants processed, content moved. A file deleted once
+        // its last reference is gone is not seen; nothing refers to it any more.
+        publishChanged(ImageStorage.FILES_COLLECTION, Filters.gte(ImageStorage.MODIFIED_AT, since));
+        lastPoll = pollStart;
+      } catch (Exception e) {
+        log.warn("Polling for collection changes failed: {}", e.getMessage());
+      }
+    }
+  }
+
+  private void publishChanged(String collection, Bson changedSince) {
+    MongoCollection<Document> documents = mongoTemplate.getCollection(collection);
+    for (Document document : documents.find(changedSince).projection(Projections.include("_id"))) {
+      Object id = document.get("_id");
+      eventPublisher.publishEvent(new CollectionChangedEvent(collection,
+          id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id), false));
+    }
+  }
+
+  private void publishWholeCollections(List<String> collections) {
+    collections.forEach(collection -> eventPublisher.publishEvent(CollectionChangedEvent.wholeCollection(collection)));
+  }
+
+  private void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+}
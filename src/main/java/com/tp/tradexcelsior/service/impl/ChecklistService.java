@@ -1,11 +1,13 @@
 package com.tp.tradexcelsior.service.impl;
 
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.ChecklistDTO;
 import com.tp.tradexcelsior.entity.Checklist;
 import com.tp.tradexcelsior.exception.custom.ChecklistAlreadyExistException;
 import com.tp.tradexcelsior.exception.custom.ChecklistNotFoundException;
 import com.tp.tradexcelsior.repo.ChecklistRepository;
 import com.tp.tradexcelsior.service.IChecklistService;
+import com.tp.tradexcelsior.util.CachedResponse;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -25,6 +27,12 @@ public class ChecklistService implements IChecklistService {
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
     public ChecklistService(ChecklistRepository checklistRepository) {
         this.checklistRepository = checklistRepository;
     }
@@ -41,6 +49,7 @@ public class ChecklistService implements IChecklistService {
         }
 
         Checklist savedChecklist = checklistRepository.save(modelMapper.map(checklistDTO, Checklist.class));
+        catalogResponseCache.invalidate(CatalogResponseCache.CHECKLISTS);
         log.info("Checklist added successfully with ID: {}", savedChecklist.getId());
 
         ChecklistDTO savedChecklistDTO = modelMapper.map(savedChecklist, ChecklistDTO.class);
@@ -56,6 +65,12 @@ public class ChecklistService implements IChecklistService {
         return ResponseWrapper.success(HttpStatus.OK.value(), checklistDTOS, "List of checklist.");
     }
 
+    // The checklist list, pre-serialized and cached until the next write
+    @Override
+    public CachedResponse getAllChecklistsResponse() {
+        return catalogResponseCache.get(CatalogResponseCache.CHECKLISTS, this::getAllChecklists);
+    }
+
     @Override
     public ResponseWrapper<ChecklistDTO> getChecklistById(String id) {
         log.info("Fetching checklist with ID: {}", id);
@@ -83,6 +98,7 @@ public class ChecklistService implements IChecklistService {
 
         // Save the updated checklist
         Checklist updatedChecklist = checklistRepository.save(existingChecklist);
+        catalogResponseCache.invalidate(CatalogResponseCache.CHECKLISTS);
         log.info("Checklist updated successfully with ID: {}", id);
 
         ChecklistDTO updatedChecklistDto = modelMapper.map(updatedChecklist, ChecklistDTO.class);
@@ -99,9 +115,16 @@ public class ChecklistService implements IChecklistService {
         checklist.setDeleted(true);
         checklist.setLastModified(LocalDateTime.now());
         checklistRepository.save(checklist);
+        catalogResponseCache.invalidate(CatalogResponseCache.CHECKLISTS);
         log.info("Checklist deleted successfully with ID: {}", id);
 
         return ResponseWrapper.success(HttpStatus.OK.value(), "Checklist id: " + id, "Checklist deleted successfully.");
     }
 
+    // Checklists modified after the watermark, deleted ones included
+    @Override
+    public ResponseWrapper<ChangeSetDto<ChecklistDTO>> getChecklistChanges(String since, int limit) {
+        ChangeSetDto<ChecklistDTO> changes = changeFeedService.getChanges(Checklist.class, Checklist::getId, ChecklistDTO.class, since, limit);
+        return ResponseWrapper.success(HttpStatus.OK.value(), changes, "Checklist changes.");
+    }
 }
@@ -3,10 +3,12 @@ package com.tp.tradexcelsior.service.impl;
 import com.tp.tradexcelsior.criteria.CoreWatchlistSearchCriteriaBuilder;
 import com.tp.tradexcelsior.dto.request.CoreWatchlistRequestDto;
 import com.tp.tradexcelsior.dto.request.WatchlistTrendUpdateDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.CoreWatchlistResponseDto;
 import com.tp.tradexcelsior.dto.response.PagedResponse;
 import com.tp.tradexcelsior.entity.CoreWatchlist;
 import com.tp.tradexcelsior.entity.MarketTrendByMonth;
+import com.tp.tradexcelsior.events.TrendChangedEvent;
 import com.tp.tradexcelsior.exception.custom.CoreWatchlistAlreadyExistsException;
 import com.tp.tradexcelsior.exception.custom.CoreWatchlistNotFoundException;
 import com.tp.tradexcelsior.repo.CoreWatchlistRepo;
@@ -24,6 +26,7 @@ import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -49,6 +52,12 @@ public class CoreWatchlistService implements ICoreWatchlistService {
   @Autowired
   private ModelMapper modelMapper;
 
+  @Autowired
+  private ChangeFeedService changeFeedService;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
 
   @Override
   @Transactional
@@ -307,6 +316,10 @@ public class CoreWatchlistService implements ICoreWatchlistService {
     // Save the updated CoreWatchlist
     CoreWatchlist updatedCoreWatchlist = coreWatchlistRepo.save(coreWatchlist);
 
+    // Subscribers of the trend stream get the change instead of polling the list for it
+    eventPublisher.publishEvent(new TrendChangedEvent(updatedCoreWatchlist.getId(), updatedCoreWatchlist.getCompany(),
+        currentMonthYear, currentMonthEntry.get().getTrend()));
+
     CoreWatchlistResponseDto responseDto= modelMapper.map(updatedCoreWatchlist, CoreWatchlistResponseDto.class);
     return ResponseWrapper.success(HttpStatus.OK.value(), responseDto, "Current month trend updated successfully.");
   }
@@ -393,4 +406,10 @@ public class CoreWatchlistService implements ICoreWatchlistService {
     return ResponseWrapper.success(HttpStatus.OK.value(), "Core watchlist Id: "+ coreWatchlistId,"Deleted successfully.");
   }
 
+  // Core watchlists modified after the watermark, deleted ones included
+  @Override
+  public ResponseWrapper<ChangeSetDto<CoreWatchlistResponseDto>> getCoreWatchlistChanges(String since, int limit) {
+    ChangeSetDto<CoreWatchlistResponseDto> changes = changeFeedService.getChanges(CoreWatchlist.class, CoreWatchlist::getId, CoreWatchlistResponseDto.class, since, limit);
+    return ResponseWrapper.success(HttpStatus.OK.value(), changes, "Core watchlist changes.");
+  }
 }
@@ -1,9 +1,20 @@
 package com.tp.tradexcelsior.service.impl;
 
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.tp.tradexcelsior.entity.User;
+import com.tp.tradexcelsior.events.CollectionChangedEvent;
 import com.tp.tradexcelsior.repo.UserRepo;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -15,6 +26,29 @@ public class CustomUserDetailsService implements UserDetailsService {
   @Autowired
   private UserRepo userRepo;
 
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Value("${security.principal-cache.ttl:PT10M}")
+  private Duration principalCacheTtl;
+
+  // Users resolved from JWTs, so an authenticated request does not cost a user lookup. Every write to
+  // the user collection (on any node) drops the affected entry; the TTL only bounds how long an entry
+  // survives a missed change.
+  private Cache<String, User> principals;
+
+  private String userCollection;
+
+  @PostConstruct
+  public void init() {
+    principals = Caffeine.newBuilder()
+        .maximumSize(10_000)
+        .expireAfterWrite(principalCacheTtl)
+        .build();
+    userCollection = mongoTemplate.getCollectionName(User.class);
+  }
+
+  // Used for password logins; always reads the current user
   @Override
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
     User user = userRepo.findByEmailAndIsDeletedFalse(username)
@@ -22,4 +56,35 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     return user;
   }
+
+  // Used for requests carrying a token
+  public UserDetails loadPrincipal(String username) {
+    return principals.get(username, key -> (User) loadUserByUsername(key));
+  }
+
+  // The cached principal only, or null; callers that must not block look up misses elsewhere
+  public UserDetails getCachedPrincipal(String username) {
+    return principals.getIfPresent(username);
+  }
+
+  public void evictUser(String userId) {
+    principals.asMap().values().removeIf(user -> userId.equals(user.getId()));
+  }
+
+  public void evictUsers(Collection<String> userIds) {
+    Set<String> ids = new HashSet<>(userIds);
+    principals.asMap().values().removeIf(user -> ids.contains(user.getId()));
+  }
+
+  @EventListener
+  public void onUsersChanged(CollectionChangedEvent event) {
+    if (!userCollection.equals(event.collection())) {
+      return;
+    }
+    if (event.isWholeCollection()) {
+      principals.invalidateAll();
+    } else {
+      evictUser(event.documentId());
+    }
+  }
 }
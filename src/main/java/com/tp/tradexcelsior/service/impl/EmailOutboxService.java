@@ -0,0 +1,343 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.tp.tradexcelsior.dto.response.EmailOutboxStatsDto;
+import com.tp.tradexcelsior.entity.OutboxEmail;
+import com.tp.tradexcelsior.util.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+// Durable outgoing email. Callers enqueue rendered emails into the emailOutbox collection, so nothing
+// is lost when the mail provider is down or the node restarts. A scheduled dispatch claims due emails
+// in batches, splits each batch over a few workers that each send their share in bursts of at most
+// what the provider's rate limit allows (one SMTP connection per burst), and reschedules failures with exponential backoff until they
+// succeed or run out of attempts. Claims expire, so emails held by a node that died are sent again.
+@Slf4j
+@Service
+public class EmailOutboxService {
+
+  public static final String PENDING = "PENDING";
+  public static final String SENDING = "SENDING";
+  public static final String SENT = "SENT";
+  public static final String FAILED = "FAILED";
+
+  private static final int DUPLICATE_KEY = 11000;
+
+  private static final int MAX_ERROR_LENGTH = 500;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private JavaMailSender javaMailSender;
+
+  @Autowired
+  @Qualifier("emailOutboxExecutor")
+  private Executor emailOutboxExecutor;
+
+  @Value("${email.from:postmaster@sandbox98456a0115fc4e71877ae8a43fdbc877.mailgun.org}")
+  private String from;
+
+  // Emails claimed per round; a dispatch keeps claiming rounds until the due emails run out
+  @Value("${email.outbox.batch-size:100}")
+  private int batchSize;
+
+  // Must match the size of emailOutboxExecutor
+  @Value("${email.outbox.workers:2}")
+  private int workers;
+
+  @Value("${email.outbox.max-attempts:8}")
+  private int maxAttempts;
+
+  @Value("${email.outbox.initial-backoff:PT30S}")
+  private Duration initialBackoff;
+
+  @Value("${email.outbox.max-backoff:PT1H}")
+  private Duration maxBackoff;
+
+  @Value("${email.outbox.claim-timeout:PT5M}")
+  private Duration claimTimeout;
+
+  @Value("${email.outbox.sent-retention:P7D}")
+  private Duration sentRetention;
+
+  // Messages per second allowed by the provider behind spring.mail.host
+  @Value("${email.outbox.rate-per-second:10}")
+  private double ratePerSecond;
+
+  private RateLimiter rateLimiter;
+
+  @PostConstruct
+  public void init() {
+    rateLimiter = new RateLimiter(ratePerSecond);
+
+    try {
+      MongoCollection<Document> outbox = mongoTemplate.getCollection(mongoTemplate.getCollectionName(OutboxEmail.class));
+      outbox.createIndex(Indexes.ascending("status", "nextAttemptAt"));
+      outbox.createIndex(Indexes.ascending("claimId"));
+      outbox.createIndex(Indexes.ascending("dedupeKey"), new IndexOptions().unique(true)
+          .partialFilterExpression(new Document("dedupeKey", new Document("$type", "string"))));
+      // Only sent emails carry sentAt, so only they expire
+      outbox.createIndex(Indexes.ascending("sentAt"),
+          new IndexOptions().expireAfter(sentRetention.getSeconds(), TimeUnit.SECONDS));
+    } catch (Exception e) {
+      log.error("Could not create email outbox indexes: {}", e.getMessage());
+    }
+  }
+
+  // --- Enqueue ---
+
+  // One unordered bulk insert; emails whose dedupe key is already queued are skipped
+  public int enqueue(List<OutboxEmail> emails) {
+    if (emails.isEmpty()) {
+      return 0;
+    }
+    Instant now = Instant.now();
+    for (OutboxEmail email : emails) {
+      email.setStatus(PENDING);
+      email.setAttempts(0);
+      email.setNextAttemptAt(now);
+      email.setCreatedAt(now);
+    }
+
+    try {
+      return mongoTemplate.bulkOps(BulkMode.UNORDERED, OutboxEmail.class).insert(emails).execute().getInsertedCount();
+    } catch (BulkOperationException e) {
+      List<BulkWriteError> otherErrors = e.getErrors().stream().filter(error -> error.getCode() != DUPLICATE_KEY).toList();
+      if (!otherErrors.isEmpty()) {
+        throw new IllegalStateException("Could not queue " + otherErrors.size() + " emails: " + otherErrors.get(0).getMessage(), e);
+      }
+      return e.getResult().getInsertedCount();
+    }
+  }
+
+  // --- Dispatch ---
+
+  public void dispatch() {
+    int sent = 0;
+    int failed = 0;
+    while (true) {
+      List<OutboxEmail> batch = claim();
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      List<CompletableFuture<int[]>> results = new ArrayList<>();
+      int share = (batch.size() + workers - 1) / workers;
+      for (int start = 0; start < batch.size(); start += share) {
+        List<OutboxEmail> part = batch.subList(start, Math.min(start + share, batch.size()));
+        results.add(CompletableFuture.supplyAsync(() -> send(part), emailOutboxExecutor));
+      }
+      for (CompletableFuture<int[]> result : results) {
+        int[] counts = result.join();
+        sent += counts[0];
+        failed += counts[1];
+      }
+
+      if (batch.size() < batchSize) {
+        break;
+      }
+    }
+
+    if (sent > 0 || failed > 0) {
+      log.info("Email outbox: {} sent, {} failed", sent, failed);
+    }
+  }
+
+  // Marks a batch of due emails as ours: pending ones whose time has come, and ones whose sender's
+  // claim ran out. The conditional update keeps two nodes from claiming the same email.
+  private List<OutboxEmail> claim() {
+    Instant now = Instant.now();
+    Criteria due = new Criteria().orOperator(
+        Criteria.where("status").is(PENDING).and("nextAttemptAt").lte(now),
+        Criteria.where("status").is(SENDING).and("claimedUntil").lt(now));
+
+    Query candidates = Query.query(due).with(Sort.by("nextAttemptAt")).limit(batchSize);
+    candidates.fields().include("_id");
+    List<String> ids = mongoTemplate.find(candidates, OutboxEmail.class).stream().map(OutboxEmail::getId).toList();
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+
+    String claimId = UUID.randomUUID().toString();
+    mongoTemplate.updateMulti(
+        Query.query(new Criteria().andOperator(Criteria.where("_id").in(ids), due)),
+        new Update().set("status", SENDING).set("claimId", claimId).set("claimedUntil", now.plus(claimTimeout)),
+        OutboxEmail.class);
+    return mongoTemplate.find(Query.query(Criteria.where("claimId").is(claimId)), OutboxEmail.class);
+  }
+
+  // Sends part of a batch, one SMTP connection for each burst the rate limit allows; returns {sent, failed}
+  private int[] send(List<OutboxEmail> emails) {
+    Map<MimeMessage, OutboxEmail> messages = new IdentityHashMap<>();
+    int failed = 0;
+    for (OutboxEmail email : emails) {
+      try {
+        messages.put(toMessage(email), email);
+      } catch (MessagingException e) {
+        // Bad address or content: retrying will not help
+        giveUp(email, e.getMessage());
+        failed++;
+      }
+    }
+    if (messages.isEmpty()) {
+      return new int[] {0, failed};
+    }
+
+    List<MimeMessage> pending = new ArrayList<>(messages.keySet());
+    List<MimeMessage> attempted = new ArrayList<>();
+    Map<Object, Exception> failures = new IdentityHashMap<>();
+    for (int start = 0; start < pending.size(); start += rateLimiter.getMaxPermits()) {
+      List<MimeMessage> burst = pending.subList(start, Math.min(start + rateLimiter.getMaxPermits(), pending.size()));
+      try {
+        rateLimiter.acquire(burst.size());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        // The rest is not sent; the claim runs out and they are picked up again
+        break;
+      }
+      attempted.addAll(burst);
+      try {
+        javaMailSender.send(burst.toArray(new MimeMessage[0]));
+      } catch (MailSendException e) {
+        // Messages the server accepted are not in the failed map (all are, when it could not connect)
+        failures.putAll(e.getFailedMessages());
+        if (e.getFailedMessages().isEmpty()) {
+          burst.forEach(message -> failures.put(message, e));
+        }
+      } catch (MailException e) {
+        burst.forEach(message -> failures.put(message, e));
+      }
+    }
+
+    List<String> sentIds = new ArrayList<>();
+    for (MimeMessage message : attempted) {
+      OutboxEmail email = messages.get(message);
+      Exception failure = failures.get(message);
+      if (failure == null) {
+        sentIds.add(email.getId());
+      } else {
+        retryLater(email, failure.getMessage());
+        failed++;
+      }
+    }
+    markSent(sentIds);
+    return new int[] {sentIds.size(), failed};
+  }
+
+  private MimeMessage toMessage(OutboxEmail email) throws MessagingException {
+    MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+    // HTML only, no attachments: a plain single-part message
+    MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, false, "UTF-8");
+    helper.setFrom(from);
+    helper.setTo(email.getRecipient());
+    helper.setSubject(email.getSubject());
+    helper.setText(email.getHtml(), true);
+    return mimeMessage;
+  }
+
+  private void markSent(List<String> ids) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)),
+        new Update().set("status", SENT).set("sentAt", Instant.now()).unset("claimId").unset("claimedUntil")
+            .unset("lastError").inc("attempts", 1),
+        OutboxEmail.class);
+  }
+
+  // Backoff doubles with every attempt: initial, 2x, 4x, ... up to the maximum
+  private void retryLater(OutboxEmail email, String error) {
+    int attempts = email.getAttempts() + 1;
+    if (attempts >= maxAttempts) {
+      giveUp(email, error);
+      return;
+    }
+    long backoffMillis = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempts - 1, 30));
+    mongoTemplate.updateFirst(claimedBy(email),
+        new Update().set("status", PENDING).set("attempts", attempts)
+            .set("nextAttemptAt", Instant.now().plusMillis(backoffMillis)).set("lastError", truncate(error))
+            .unset("claimId").unset("claimedUntil"),
+        OutboxEmail.class);
+  }
+
+  private void giveUp(OutboxEmail email, String error) {
+    log.error("Giving up on email to {} after {} attempts: {}", email.getRecipient(), email.getAttempts() + 1, error);
+    mongoTemplate.updateFirst(claimedBy(email),
+        new Update().set("status", FAILED).inc("attempts", 1).set("lastError", truncate(error))
+            .unset("claimId").unset("claimedUntil"),
+        OutboxEmail.class);
+  }
+
+  // Only while the claim is still ours; after it ran out another node may be sending the email
+  private Query claimedBy(OutboxEmail email) {
+    return Query.query(Criteria.where("_id").is(email.getId()).and("claimId").is(email.getClaimId()));
+  }
+
+  private String truncate(String error) {
+    if (error == null) {
+      return null;
+    }
+    return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+  }
+
+  // --- Monitoring ---
+
+  public EmailOutboxStatsDto getStats() {
+    Instant now = Instant.now();
+    long pending = count(Criteria.where("status").is(PENDING));
+    long due = count(Criteria.where("status").is(PENDING).and("nextAttemptAt").lte(now));
+    long sending = count(Criteria.where("status").is(SENDING));
+    long sent = count(Criteria.where("status").is(SENT));
+    long failed = count(Criteria.where("status").is(FAILED));
+
+    Query oldestDue = Query.query(Criteria.where("status").is(PENDING).and("nextAttemptAt").lte(now))
+        .with(Sort.by("nextAttemptAt")).limit(1);
+    OutboxEmail oldest = mongoTemplate.findOne(oldestDue, OutboxEmail.class);
+    long oldestDueAgeSeconds = oldest != null ? Duration.between(oldest.getNextAttemptAt(), now).getSeconds() : 0;
+
+    return new EmailOutboxStatsDto(pending, due, sending, sent, failed, oldestDueAgeSeconds);
+  }
+
+  // Puts emails that ran out of attempts back in the queue, e.g. after fixing the mail settings
+  public long retryFailed() {
+    return mongoTemplate.updateMulti(Query.query(Criteria.where("status").is(FAILED)),
+        new Update().set("status", PENDING).set("attempts", 0).set("nextAttemptAt", Instant.now()),
+        OutboxEmail.class).getModifiedCount();
+  }
+
+  private long count(Criteria criteria) {
+    return mongoTemplate.count(Query.query(criteria), OutboxEmail.class);
+  }
+}
@@ -1,55 +1,73 @@
 package com.tp.tradexcelsior.service.impl;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import java.util.concurrent.CompletableFuture;
+import com.tp.tradexcelsior.entity.OutboxEmail;
+import com.tp.tradexcelsior.service.impl.EmailTemplateService.RenderedEmail;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+// Renders the application's emails from their templates and queues them in the outbox;
+// EmailOutboxService sends them
+@Slf4j
 @Service
 public class EmailService{
 
   @Autowired
-  private JavaMailSender javaMailSender;
-
-  @Async
-  public CompletableFuture<Boolean> sendEmail(String email) {
-    try {
-      // Create a MimeMessage object for sending HTML email
-      MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-      MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true);
-
-      // Set the necessary details for the email
-      helper.setFrom("postmaster@sandbox98456a0115fc4e71877ae8a43fdbc877.mailgun.org"); // Your Mailgun sender
-      helper.setTo(email);
-      helper.setSubject("Activate Trade Excelsior Account");
-
-      // HTML content for the email body
-      String emailContent = "<html><body>"
-          + "<h2>Welcome to Trade Excelsior</h2>"
-          + "<p>Dear User,</p>"
-          + "<p>Thank you for signing up with Trade Excelsior. To activate your account, please click the link below:</p>"
-          + "<p><a href=\"https://your-activation-url.com/activate?email=" + email + "\">Activate Your Account</a></p>"
-          + "<p>If you did not request this, please ignore this email.</p>"
-          + "<p>Best regards,</p>"
-          + "<p>The Trade Excelsior Team</p>"
-          + "</body></html>";
-
-      // Set the email content as HTML
-      helper.setText(emailContent, true);
-
-      // Send the email
-      javaMailSender.send(mimeMessage);
-
-      // Return a completed future indicating email was sent
-      return CompletableFuture.completedFuture(true);
-    } catch (MessagingException e) {
-      // Handle error if email fails to send
-      e.printStackTrace();
-      return CompletableFuture.completedFuture(false); // Failed to send email
+  private EmailTemplateService emailTemplateService;
+
+  @Autowired
+  private EmailOutboxService emailOutboxService;
+
+  public void sendEmail(String email) {
+    emailOutboxService.enqueue(List.of(toOutbox(email, welcome(email), null)));
+  }
+
+  // Welcome emails for a batch of imported users, queued with one insert
+  public void sendWelcomeEmails(List<String> emails) {
+    List<OutboxEmail> outboxEmails = new ArrayList<>(emails.size());
+    Map<String, Object> values = new HashMap<>();
+    for (String email : emails) {
+      values.put("email", email);
+      RenderedEmail rendered = emailTemplateService.render(EmailTemplateService.WELCOME, values);
+      outboxEmails.add(toOutbox(email, rendered, null));
     }
+    int queued = emailOutboxService.enqueue(outboxEmails);
+    log.info("Queued {} welcome emails", queued);
+  }
+
+  // At most one reminder per subscription end date, also when the expiry job repeats a batch
+  public void sendSubscriptionReminder(String email, String firstName, LocalDate subscriptionEndDate) {
+    RenderedEmail rendered = emailTemplateService.render(EmailTemplateService.SUBSCRIPTION_REMINDER, Map.of(
+        "firstName", firstName != null ? firstName : "User",
+        "subscriptionEndDate", subscriptionEndDate));
+    emailOutboxService.enqueue(List.of(toOutbox(email, rendered,
+        "subscription-reminder:" + email + ":" + subscriptionEndDate)));
+  }
+
+  // Security notice after a password change
+  public void sendPasswordReset(String email, String firstName) {
+    RenderedEmail rendered = emailTemplateService.render(EmailTemplateService.PASSWORD_RESET, Map.of(
+        "firstName", firstName != null ? firstName : "User",
+        "email", email,
+        "changedOn", LocalDate.now()));
+    emailOutboxService.enqueue(List.of(toOutbox(email, rendered, null)));
+  }
+
+  private RenderedEmail welcome(String email) {
+    return emailTemplateService.render(EmailTemplateService.WELCOME, Map.of("email", email));
+  }
+
+  private OutboxEmail toOutbox(String recipient, RenderedEmail rendered, String dedupeKey) {
+    OutboxEmail outboxEmail = new OutboxEmail();
+    outboxEmail.setRecipient(recipient);
+    outboxEmail.setSubject(rendered.subject());
+    outboxEmail.setHtml(rendered.html());
+    outboxEmail.setDedupeKey(dedupeKey);
+    return outboxEmail;
   }
 }
@@ -0,0 +1,93 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.tp.tradexcelsior.util.TextTemplate;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+// The email templates under templates/email, compiled once at startup (a broken template stops the
+// application from starting rather than failing a send). A template file starts with a
+// "Subject: ..." line and a blank line, followed by the HTML body; see TextTemplate for placeholders.
+// Rendering appends to a per-thread buffer that is reused from one email to the next.
+@Slf4j
+@Service
+public class EmailTemplateService {
+
+  public static final String WELCOME = "welcome";
+  public static final String SUBSCRIPTION_REMINDER = "subscription-reminder";
+  public static final String PASSWORD_RESET = "password-reset";
+
+  private static final List<String> TEMPLATES = List.of(WELCOME, SUBSCRIPTION_REMINDER, PASSWORD_RESET);
+
+  private static final String SUBJECT_PREFIX = "Subject:";
+
+  // Buffers that grew past this (an unusually large email) are not kept
+  private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+  public record RenderedEmail(String subject, String html) {
+  }
+
+  private record CompiledTemplate(TextTemplate subject, TextTemplate body) {
+  }
+
+  private final Map<String, CompiledTemplate> templates = new HashMap<>();
+
+  private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+  @PostConstruct
+  public void compileTemplates() throws IOException {
+    for (String name : TEMPLATES) {
+      templates.put(name, compile(name));
+    }
+    log.info("Compiled email templates {}", TEMPLATES);
+  }
+
+  private CompiledTemplate compile(String name) throws IOException {
+    String source;
+    try (InputStream in = new ClassPathResource("templates/email/" + name + ".html").getInputStream()) {
+      source = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+    }
+
+    int headerEnd = source.indexOf("\n\n");
+    if (!source.startsWith(SUBJECT_PREFIX) || headerEnd < 0) {
+      throw new IllegalStateException("Email template " + name + " must start with a Subject line and a blank line");
+    }
+    try {
+      return new CompiledTemplate(
+          TextTemplate.compile(source.substring(SUBJECT_PREFIX.length(), headerEnd).trim(), false),
+          TextTemplate.compile(source.substring(headerEnd + 2), true));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException("Invalid email template " + name + ": " + e.getMessage(), e);
+    }
+  }
+
+  public RenderedEmail render(String name, Map<String, ?> values) {
+    CompiledTemplate template = templates.get(name);
+    if (template == null) {
+      throw new IllegalArgumentException("No email template named " + name);
+    }
+
+    StringBuilder buffer = buffers.get();
+    try {
+      buffer.setLength(0);
+      template.subject().render(values, buffer);
+      String subject = buffer.toString();
+
+      buffer.setLength(0);
+      buffer.ensureCapacity(template.body().getLiteralLength() + 256);
+      template.body().render(values, buffer);
+      return new RenderedEmail(subject, buffer.toString());
+    } finally {
+      if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+        buffers.remove();
+      }
+    }
+  }
+}
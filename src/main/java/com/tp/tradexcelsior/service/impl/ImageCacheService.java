@@ -0,0 +1,233 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.storage.ImageStorage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+// Two-tier cache for image content, keyed by image id (the bytes behind an id never change).
+// Tier 1: small images held on heap, bounded by total bytes (Caffeine's W-TinyLFU keeps the hot set).
+// Tier 2: larger images copied to local disk, bounded by total bytes; served as files so the
+// servlet container can send them with FileChannel.transferTo.
+@Slf4j
+@Service
+public class ImageCacheService {
+
+  // Present in every directory used as the disk tier; locked while an instance uses it
+  private static final String MARKER_FILE = ".tradexcelsior-image-cache";
+
+  private static final String ENTRY_SUFFIX = ".img";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final Pattern SHARD_NAME = Pattern.compile("[0-9a-f]{2}");
+  private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]{24}(\\.img|\\d*\\.tmp)");
+
+  @Autowired
+  private ImageStorage imageStorage;
+
+  @Value("${image.cache.memory.max-bytes:67108864}")
+  private long memoryMaxBytes;
+
+  @Value("${image.cache.memory.max-entry-bytes:262144}")
+  private long memoryMaxEntryBytes;
+
+  @Value("${image.cache.disk.dir:${java.io.tmpdir}/tradexcelsior-image-cache}")
+  private String diskCacheLocation;
+
+  @Value("${image.cache.disk.max-bytes:1073741824}")
+  private long diskMaxBytes;
+
+  // Null when the disk tier is off (see openDiskCacheDir)
+  private Path diskCacheDir;
+
+  private FileLock markerLock;
+
+  private Cache<String, byte[]> memoryCache;
+
+  // Index of the files in the disk tier (image id -> size); evicting an entry deletes its file
+  private Cache<String, Long> diskIndex;
+
+  // Images currently being copied to disk, so concurrent misses trigger a single copy
+  private final Set<String> pendingDiskWrites = ConcurrentHashMap.newKeySet();
+
+  @PostConstruct
+  public void init() throws IOException {
+    memoryCache = Caffeine.newBuilder()
+        .maximumWeight(memoryMaxBytes)
+        .weigher((String imageId, byte[] content) -> content.length)
+        .build();
+
+    diskIndex = Caffeine.newBuilder()
+        .maximumWeight(diskMaxBytes)
+        .weigher((String imageId, Long size) -> (int) Math.min(size, Integer.MAX_VALUE))
+        .removalListener((String imageId, Long size, RemovalCause cause) -> {
+          if (imageId != null && cause != RemovalCause.REPLACED) {
+            deleteQuietly(diskPath(imageId));
+          }
+        })
+        .build();
+
+    diskCacheDir = openDiskCacheDir(Path.of(diskCacheLocation));
+  }
+
+  // Claims the directory for this instance, or returns null (disk tier off) when it is not ours to
+  // use: a non-empty directory without the marker file, or one locked by another running instance.
+  // Only files laid out like cache entries are ever deleted from it.
+  private Path openDiskCacheDir(Path dir) throws IOException {
+    Files.createDirectories(dir);
+    Path marker = dir.resolve(MARKER_FILE);
+    if (!Files.exists(marker)) {
+      try (Stream<Path> entries = Files.list(dir)) {
+        if (entries.findAny().isPresent()) {
+          log.error("Image disk cache disabled: {} holds other files; set image.cache.disk.dir to a directory of its own", dir);
+          return null;
+        }
+      }
+    }
+
+    FileChannel channel = FileChannel.open(marker, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      markerLock = channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      markerLock = null;
+    }
+    if (markerLock == null) {
+      channel.close();
+      log.error("Image disk cache disabled: {} is in use by another instance", dir);
+      return null;
+    }
+
+    // The disk index lives in memory, so entries left by a previous run are unknown; remove them
+    try (Stream<Path> files = Files.walk(dir, 2)) {
+      files.filter(path -> isCacheEntry(dir, path)).forEach(this::deleteQuietly);
+    }
+    return dir;
+  }
+
+  private boolean isCacheEntry(Path dir, Path path) {
+    Path relative = dir.relativize(path);
+    return relative.getNameCount() == 2
+        && SHARD_NAME.matcher(relative.getName(0).toString()).matches()
+        && ENTRY_NAME.matcher(relative.getName(1).toString()).matches()
+        && Files.isRegularFile(path);
+  }
+
+  @PreDestroy
+  public void releaseDiskCacheDir() throws IOException {
+    if (markerLock != null) {
+      markerLock.channel().close();
+      markerLock = null;
+    }
+  }
+
+  // Whether an image is small enough to be served from (and loaded into) the heap tier
+  public boolean fitsInMemory(ImageDto image) {
+    return image.getLength() <= memoryMaxEntryBytes;
+  }
+
+  // Cached content of the image, or null when neither tier holds it
+  public Resource getCachedImage(ImageDto image) {
+    byte[] content = memoryCache.getIfPresent(image.getImageId());
+    if (content != null) {
+      return new ByteArrayResource(content);
+    }
+
+    if (diskCacheDir != null && diskIndex.getIfPresent(image.getImageId()) != null) {
+      Path path = diskPath(image.getImageId());
+      if (Files.isReadable(path)) {
+        return new FileSystemResource(path);
+      }
+      diskIndex.invalidate(image.getImageId());
+    }
+
+    return null;
+  }
+
+  // Read a small image from its store into the heap tier and return its content
+  public Resource loadIntoMemory(ImageDto image) {
+    try (InputStream inputStream = imageStorage.openStream(image)) {
+      byte[] content = inputStream.readAllBytes();
+      memoryCache.put(image.getImageId(), content);
+      return new ByteArrayResource(content);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading image from InputStream", e);
+    }
+  }
+
+  // Content of a small image read elsewhere (the reactive API streams it itself)
+  public void putInMemory(ImageDto image, byte[] content) {
+    memoryCache.put(image.getImageId(), content);
+  }
+
+  // Copy a large image from its (remote) store to the disk tier in the background; the current request
+  // keeps streaming from the store
+  @Async("imageCacheExecutor")
+  public void copyToDisk(ImageDto image) {
+    String imageId = image.getImageId();
+    if (diskCacheDir == null || !pendingDiskWrites.add(imageId)) {
+      return;
+    }
+
+    Path target = diskPath(imageId);
+    Path tempFile = null;
+    try (InputStream inputStream = imageStorage.openStream(image)) {
+      Files.createDirectories(target.getParent());
+      tempFile = Files.createTempFile(target.getParent(), imageId, TEMP_SUFFIX);
+      Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      diskIndex.put(imageId, image.getLength());
+      log.debug("Cached image {} on disk ({} bytes)", imageId, image.getLength());
+    } catch (Exception e) {
+      log.warn("Could not cache image {} on disk: {}", imageId, e.getMessage());
+      if (tempFile != null) {
+        deleteQuietly(tempFile);
+      }
+    } finally {
+      pendingDiskWrites.remove(imageId);
+    }
+  }
+
+  // Drop the image from both tiers (called on delete)
+  public void evict(String imageId) {
+    memoryCache.invalidate(imageId);
+    diskIndex.invalidate(imageId);
+  }
+
+  // Files are spread over 256 sub-directories by the last two hex digits of the id (the ObjectId
+  // counter), which keeps directories small
+  private Path diskPath(String imageId) {
+    return diskCacheDir.resolve(imageId.substring(imageId.length() - 2)).resolve(imageId + ENTRY_SUFFIX);
+  }
+
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      log.warn("Could not delete cached image file {}: {}", path, e.getMessage());
+    }
+  }
+}
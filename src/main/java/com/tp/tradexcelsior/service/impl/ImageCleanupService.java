@@ -0,0 +1,254 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.tp.tradexcelsior.dto.response.ImageCleanupReportDto;
+import com.tp.tradexcelsior.entity.Book;
+import com.tp.tradexcelsior.entity.Reference;
+import com.tp.tradexcelsior.entity.SuccessStories;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+// Mark-and-sweep cleanup of GridFS files that no live entity points at.
+// Mark: the imageIds of non-deleted books, references and success stories are streamed (projection
+// only) into a set, with the user names success story images used to be looked up by. Sweep: fs.files
+// is walked in _id order with a cursor; files outside the set and older than the grace period are
+// deleted in batches. Each run covers at most a fixed number of files and the next one resumes after
+// the last _id seen, so a large bucket is swept over several runs.
+// A file with a positive reference count is live, whatever points at it: uploads are counted from
+// the start, so images only ever fetched by name are never orphans. Those no entity points at are
+// reported as counted but unreferenced, so leaks such as a standalone upload whose linking entity was
+// deleted show up; releasing them is left to an operator. Files stored before reference counting
+// cannot tell whether someone fetches them by name and are only swept when asked for.
+@Slf4j
+@Service
+public class ImageCleanupService {
+
+  private static final String FILES_COLLECTION = "fs.files";
+
+  // Ids listed in a dry-run report
+  private static final int MAX_REPORTED_IDS = 1000;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ImageService imageService;
+
+  @Value("${image.cleanup.grace-period:PT24H}")
+  private Duration gracePeriod;
+
+  @Value("${image.cleanup.batch-size:100}")
+  private int batchSize;
+
+  @Value("${image.cleanup.max-files-per-run:10000}")
+  private int maxFilesPerRun;
+
+  // Also sweep files without a reference count
+  @Value("${image.cleanup.include-uncounted:false}")
+  private boolean includeUncounted;
+
+  // Where the current pass over fs.files continues; null starts a new pass
+  private ObjectId resumeAfter;
+
+  private volatile ImageCleanupReportDto lastReport;
+
+  // Totals since startup
+  private long totalDeletedFiles;
+  private long totalReclaimedBytes;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  public ImageCleanupReportDto cleanupOrphanedImages(boolean dryRun) {
+    // One run at a time. A run scans fs.files for a while; holding a monitor through that would pin a
+    // virtual thread to its carrier, so this is a lock.
+    lock.lock();
+    try {
+      return runCleanup(dryRun);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private ImageCleanupReportDto runCleanup(boolean dryRun) {
+    Instant startedAt = Instant.now();
+    Date cutoff = Date.from(startedAt.minus(gracePeriod));
+    MongoCollection<Document> files = mongoTemplate.getCollection(FILES_COLLECTION);
+
+    Set<ObjectId> referenced = referencedImageIds();
+    Set<String> referencedNames = referencedImageNames();
+
+    // Counted files are walked as well, to be reported
+    Bson filter = Filters.exists("metadata.variantOf", false); // Variants go with their original
+    if (resumeAfter != null) {
+      filter = Filters.and(filter, Filters.gt("_id", resumeAfter));
+    }
+
+    long scanned = 0;
+    long orphaned = 0;
+    long orphanedBytes = 0;
+    long deleted = 0;
+    long countedUnreferenced = 0;
+    long countedUnreferencedBytes = 0;
+    ObjectId lastSeen = null;
+    List<ObjectId> batch = new ArrayList<>();
+    List<String> orphanIds = new ArrayList<>();
+    List<String> countedUnreferencedIds = new ArrayList<>();
+
+    for (Document file : files.find(filter)
+        .projection(Projections.include("_id", "filename", "length", "uploadDate", "metadata.refCount", "metadata.referencedAt"))
+        .sort(Sorts.ascending("_id"))
+        .limit(maxFilesPerRun)
+        .batchSize(500)) {
+      scanned++;
+      lastSeen = file.getObjectId("_id");
+
+      if (referenced.contains(lastSeen) || referencedNames.contains(baseName(file.getString("filename")))
+          || isWithinGracePeriod(file, cutoff)) {
+        continue;
+      }
+
+      long length = file.get("length", Number.class).longValue();
+      Number refCount = file.getEmbedded(List.of("metadata", "refCount"), Number.class);
+      if (refCount != null && refCount.intValue() > 0) {
+        countedUnreferenced++;
+        countedUnreferencedBytes += length;
+        if (dryRun && countedUnreferencedIds.size() < MAX_REPORTED_IDS) {
+          countedUnreferencedIds.add(lastSeen.toHexString());
+        }
+        continue;
+      }
+      if (refCount == null && !includeUncounted) {
+        continue;
+      }
+
+      orphaned++;
+      orphanedBytes += length;
+      if (dryRun) {
+        if (orphanIds.size() < MAX_REPORTED_IDS) {
+          orphanIds.add(lastSeen.toHexString());
+        }
+        continue;
+      }
+
+      batch.add(lastSeen);
+      if (batch.size() >= batchSize) {
+        deleted += deleteBatch(files, batch, cutoff);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      deleted += deleteBatch(files, batch, cutoff);
+    }
+
+    boolean passCompleted = scanned < maxFilesPerRun;
+    resumeAfter = passCompleted ? null : lastSeen;
+
+    ImageCleanupReportDto report = new ImageCleanupReportDto(dryRun, startedAt,
+        Duration.between(startedAt, Instant.now()).toMillis(), referenced.size(), scanned, orphaned,
+        orphanedBytes, deleted, passCompleted, dryRun ? orphanIds : null, countedUnreferenced,
+        countedUnreferencedBytes, dryRun ? countedUnreferencedIds : null);
+    lastReport = report;
+    if (!dryRun) {
+      totalDeletedFiles += deleted;
+      totalReclaimedBytes += orphanedBytes;
+    }
+
+    log.info("Image cleanup{}: scanned {} files, {} orphaned ({} bytes), {} deleted, {} counted but unreferenced ({} bytes), "
+            + "pass {}; totals: {} files, {} bytes",
+        dryRun ? " (dry run)" : "", scanned, orphaned, orphanedBytes, deleted, countedUnreferenced, countedUnreferencedBytes,
+        passCompleted ? "completed" : "continues after " + lastSeen, totalDeletedFiles, totalReclaimedBytes);
+    return report;
+  }
+
+  public ImageCleanupReportDto getLastReport() {
+    return lastReport;
+  }
+
+  // Image ids referenced by live entities. Only the imageId field is fetched.
+  private Set<ObjectId> referencedImageIds() {
+    Set<ObjectId> referenced = new HashSet<>();
+    for (Class<?> entity : List.of(Book.class, Reference.class, SuccessStories.class)) {
+      mongoTemplate.getCollection(mongoTemplate.getCollectionName(entity))
+          .find(Filters.and(Filters.eq("isDeleted", false), Filters.exists("imageId")))
+          .projection(Projections.include("imageId"))
+          .batchSize(1000)
+          .forEach(document -> {
+            Object imageId = document.get("imageId");
+            if (imageId instanceof ObjectId objectId) {
+              referenced.add(objectId);
+            } else if (imageId instanceof String id && ObjectId.isValid(id)) {
+              referenced.add(new ObjectId(id));
+            }
+          });
+    }
+    return referenced;
+  }
+
+  // Success story images were once fetched by the user name, and are stored as <userName>_success_story
+  private Set<String> referencedImageNames() {
+    Set<String> names = new HashSet<>();
+    mongoTemplate.getCollection(mongoTemplate.getCollectionName(SuccessStories.class))
+        .find(Filters.eq("isDeleted", false))
+        .projection(Projections.include("userName"))
+        .batchSize(1000)
+        .forEach(document -> {
+          String userName = document.getString("userName");
+          if (userName != null) {
+            names.add(userName);
+            names.add(userName + "_success_story");
+          }
+        });
+    return names;
+  }
+
+  private String baseName(String filename) {
+    if (filename == null) {
+      return null;
+    }
+    int dotIndex = filename.lastIndexOf('.');
+    return dotIndex > 0 ? filename.substring(0, dotIndex) : filename;
+  }
+
+  // Recently uploaded files may not be linked to their entity yet, and files reused by a deduplicated
+  // upload since the mark phase are about to be
+  private boolean isWithinGracePeriod(Document file, Date cutoff) {
+    Date uploadDate = file.getDate("uploadDate");
+    Document metadata = file.get("metadata", Document.class);
+    Date referencedAt = metadata != null ? metadata.getDate("referencedAt") : null;
+    return (uploadDate != null && uploadDate.after(cutoff)) || (referencedAt != null && referencedAt.after(cutoff));
+  }
+
+  // Claim the batch before deleting it: a zero count keeps deduplication from handing the files out
+  // again, and files re-referenced in the meantime are not claimed
+  private long deleteBatch(MongoCollection<Document> files, List<ObjectId> batch, Date cutoff) {
+    Bson notRecentlyReferenced = Filters.or(
+        Filters.exists("metadata.referencedAt", false), Filters.lt("metadata.referencedAt", cutoff));
+    files.updateMany(Filters.and(Filters.in("_id", batch), Filters.not(Filters.gt("metadata.refCount", 0)),
+            notRecentlyReferenced),
+        Updates.set("metadata.refCount", 0));
+
+    List<ObjectId> claimed = files.find(Filters.and(Filters.in("_id", batch), Filters.eq("metadata.refCount", 0)))
+        .projection(Projections.include("_id"))
+        .map(document -> document.getObjectId("_id"))
+        .into(new ArrayList<>());
+    return imageService.deleteImages(claimed);
+  }
+}
@@ -1,22 +1,62 @@
 package com.tp.tradexcelsior.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.gridfs.GridFSBucket;
 import com.mongodb.client.gridfs.model.GridFSFile;
-import com.mongodb.client.gridfs.model.GridFSUploadOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.tp.tradexcelsior.dto.response.CursorPagedResponse;
 import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.dto.response.ImageUploadResultDto;
+import com.tp.tradexcelsior.events.CollectionChangedEvent;
 import com.tp.tradexcelsior.exception.custom.ImageNotFoundException;
+import com.tp.tradexcelsior.storage.GridFsBlobStore;
+import com.tp.tradexcelsior.storage.ImageStorage;
+import com.tp.tradexcelsior.util.ImageTypeDetector;
+import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -27,6 +67,29 @@ public class ImageService {
   @Autowired
   private GridFSBucket gridFSBucket;
 
+  @Autowired
+  private ImageCacheService imageCacheService;
+
+  @Autowired
+  private ImageVariantService imageVariantService;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ImageStorage imageStorage;
+
+  @Autowired
+  @Qualifier("imageUploadExecutor")
+  private Executor imageUploadExecutor;
+
+  private static final String FILES_COLLECTION = ImageStorage.FILES_COLLECTION;
+
+  private static final String SHA256_INDEX = "metadata.sha256_live";
+
+  // Names given to deduplicated uploads made for an entity, whose references the entities hold
+  private static final String ENTITY_ALIASES = "entityAliases";
+
   private static final Map<String, String> EXTENSION_TO_MIME_TYPE = new HashMap<>();
 
   static {
@@ -39,6 +102,56 @@ public class ImageService {
     EXTENSION_TO_MIME_TYPE.put("webp", "image/webp");
   }
 
+  // Resolved image metadata, so serving an image costs one fs.files lookup at most.
+  // Entries by id never go stale (the bytes behind an id are immutable) and are only dropped on delete;
+  // names can be re-bound by a later upload, so those entries are evicted on upload as well.
+  // Changes made by other nodes arrive as CollectionChangedEvents.
+  private final Cache<String, ImageDto> imageMetadataById = Caffeine.newBuilder()
+      .maximumSize(10_000)
+      .expireAfterWrite(Duration.ofMinutes(30))
+      .build();
+
+  private final Cache<String, ImageDto> imageMetadataByName = Caffeine.newBuilder()
+      .maximumSize(10_000)
+      .expireAfterWrite(Duration.ofMinutes(5))
+      .build();
+
+  // Resized variants are internal files; name lookups and listings only see originals
+  private static final Bson NOT_A_VARIANT = Filters.exists("metadata.variantOf", false);
+
+  // The fs.files fields an image descriptor is built from (no hashes or aliases)
+  private static final Bson IMAGE_DTO_FIELDS = Projections.include("_id", "filename", "length", "uploadDate",
+      "chunkSize", "metadata.contentType", "metadata.width", "metadata.height", "metadata.variants", "metadata.storage");
+
+  // One live file per content hash: two uploads of the same content racing past the lookup cannot
+  // both be stored. Files whose count dropped to zero are being deleted and leave the index.
+  @PostConstruct
+  public void createIndexes() {
+    MongoCollection<Document> files = mongoTemplate.getCollection(FILES_COLLECTION);
+    try {
+      // Extra names given to deduplicated uploads
+      files.createIndex(Indexes.ascending("metadata.aliases"), new IndexOptions().sparse(true));
+    } catch (Exception e) {
+      log.error("Could not create image alias index: {}", e.getMessage());
+      return;
+    }
+
+    try {
+      // Replaced by the unique index
+      files.dropIndex(Indexes.ascending("metadata.sha256"));
+    } catch (MongoCommandException e) {
+      // Not there
+    }
+    try {
+      files.createIndex(Indexes.ascending("metadata.sha256"), new IndexOptions().name(SHA256_INDEX).unique(true)
+          .partialFilterExpression(Filters.gt("metadata.refCount", 0)));
+    } catch (Exception e) {
+      // Live duplicates stored before the index existed; hash lookups stay indexed
+      log.error("Could not create unique content hash index: {}", e.getMessage());
+      files.createIndex(Indexes.ascending("metadata.sha256"), new IndexOptions().sparse(true));
+    }
+  }
+
 
   // Helper method to get file extension
   private String getFileExtension(String fileName) {
@@ -49,147 +162,531 @@ public class ImageService {
     return ""; // No extension found
   }
 
-  public byte[] getImageByName(String imageName) throws RuntimeException {
-    // Check if imageName has an extension
-    String fileExtension = getFileExtension(imageName);
-    Optional<GridFSFile> imageFileOpt;
+  // Map a GridFS file document to the image descriptor used throughout the image APIs
+  private ImageDto toImageDto(GridFSFile gridFSFile) {
+    return toImageDto(gridFSFile.getObjectId(), gridFSFile.getFilename(), gridFSFile.getLength(),
+        gridFSFile.getChunkSize(), gridFSFile.getUploadDate(), gridFSFile.getMetadata());
+  }
 
-    if (fileExtension.isEmpty()) {
-      imageFileOpt = Optional.ofNullable(gridFSBucket.find(Filters.regex("filename", "^" + imageName + ".*$", "i")).first());
-    } else {
-      imageFileOpt = Optional.ofNullable(gridFSBucket.find(Filters.eq("filename", imageName)).first());
+  // Same mapping for a raw (projected) fs.files document
+  private ImageDto toImageDto(Document file) {
+    return toImageDto(file.getObjectId("_id"), file.getString("filename"),
+        file.get("length", Number.class).longValue(), file.getInteger("chunkSize", ImageStorage.CHUNK_SIZE),
+        file.getDate("uploadDate"), file.get("metadata", Document.class));
+  }
+
+  private ImageDto toImageDto(ObjectId id, String filename, long length, int chunkSize, Date uploadDate, Document metadata) {
+    String contentType = (metadata != null && metadata.containsKey("contentType"))
+        ? metadata.getString("contentType")
+        : "application/octet-stream";  // Default content type if not found
+
+    Integer width = metadata != null ? metadata.getInteger("width") : null;
+    Integer height = metadata != null ? metadata.getInteger("height") : null;
+
+    Map<Integer, String> variants = null;
+    if (metadata != null && metadata.containsKey("variants")) {
+      variants = new TreeMap<>();
+      for (Document variant : metadata.getList("variants", Document.class)) {
+        variants.put(variant.getInteger("width"), variant.getObjectId("imageId").toHexString());
+      }
     }
 
-    // If the image file is found, read and return it
-    return imageFileOpt
-        .map(gridFSFile -> {
-          try (InputStream inputStream = gridFSBucket.openDownloadStream(gridFSFile.getObjectId())) {
-            return inputStream.readAllBytes();
-          } catch (IOException e) {
-            throw new RuntimeException("Error reading image from InputStream", e);
-          }
-        })
-        .orElseThrow(() -> new ImageNotFoundException("Image not found with name: " + imageName));
+    String storage = metadata != null ? metadata.getString("storage") : null;
+    // The bytes behind an id never change; the version only keeps caches keyed on the bare path honest
+    String url = "/images/id/" + id.toHexString() + "?v=" + uploadDate.getTime();
+    return new ImageDto(id.toHexString(), filename, contentType, length, uploadDate.toInstant(), width, height, variants,
+        storage != null ? storage : GridFsBlobStore.NAME, chunkSize, url);
   }
 
-  // Fetch image by its MongoDB ObjectId
-  public byte[] getImageById(String imageId) throws RuntimeException {
-    // Parse the imageId string to an ObjectId
-    ObjectId objectId = new ObjectId(imageId);
+  // A descriptor already in memory, or null; never queries
+  public ImageDto getCachedImageById(String imageId) {
+    return imageMetadataById.getIfPresent(imageId);
+  }
+
+  // Resolve an image descriptor by its MongoDB ObjectId
+  public ImageDto resolveImageById(String imageId) {
+    ImageDto cached = imageMetadataById.getIfPresent(imageId);
+    if (cached != null) {
+      return cached;
+    }
+
+    GridFSFile gridFSFile = gridFSBucket.find(Filters.eq("_id", new ObjectId(imageId))).first();
+    if (gridFSFile == null) {
+      throw new ImageNotFoundException("Image not found with ID: " + imageId);
+    }
+
+    ImageDto image = toImageDto(gridFSFile);
+    imageMetadataById.put(imageId, image);
+    return image;
+  }
+
+  // A file matches a name through its own filename or a name a deduplicated upload was stored under
+  private Bson hasName(List<String> names) {
+    return Filters.and(Filters.or(Filters.in("filename", names), Filters.in("metadata.aliases", names)), NOT_A_VARIANT);
+  }
+
+  // Resolve many image descriptors at once: cached ones from memory, all others with a single $in
+  // query on fs.files. Unknown or malformed ids are left out of the result.
+  public Map<String, ImageDto> resolveImagesByIds(Collection<String> imageIds) {
+    Map<String, ImageDto> images = new HashMap<>();
+    List<ObjectId> missing = new ArrayList<>();
+    for (String imageId : new HashSet<>(imageIds)) {
+      if (imageId == null || !ObjectId.isValid(imageId)) {
+        continue;
+      }
+      ImageDto cached = imageMetadataById.getIfPresent(imageId);
+      if (cached != null) {
+        images.put(imageId, cached);
+      } else {
+        missing.add(new ObjectId(imageId));
+      }
+    }
 
-    // Find the image file by its ObjectId
-    Optional<GridFSFile> imageFileOpt = Optional.ofNullable(gridFSBucket.find(Filters.eq("_id", objectId)).first());
+    if (!missing.isEmpty()) {
+      mongoTemplate.getCollection(FILES_COLLECTION)
+          .find(Filters.in("_id", missing))
+          .projection(IMAGE_DTO_FIELDS)
+          .forEach(file -> {
+            ImageDto image = toImageDto(file);
+            imageMetadataById.put(image.getImageId(), image);
+            images.put(image.getImageId(), image);
+          });
+    }
+    return images;
+  }
 
-    return imageFileOpt
-        .map(gridFSFile -> {
-          try (InputStream inputStream = gridFSBucket.openDownloadStream(gridFSFile.getObjectId())) {
-            return inputStream.readAllBytes();
-          } catch (IOException e) {
-            throw new RuntimeException("Error reading image from InputStream", e);
-          }
-        })
-        .orElseThrow(() -> new ImageNotFoundException("Image not found with ID: " + imageId));
+  // Attach the descriptor of each item's image (expand=image on list endpoints), resolved in one batch
+  public <T> void expandImages(List<T> items, Function<T, String> imageIdOf, BiConsumer<T, ImageDto> setImage) {
+    Map<String, ImageDto> images = resolveImagesByIds(items.stream()
+        .map(imageIdOf)
+        .filter(Objects::nonNull)
+        .toList());
+    items.forEach(item -> {
+      String imageId = imageIdOf.apply(item);
+      if (imageId != null) {
+        setImage.accept(item, images.get(imageId));
+      }
+    });
   }
 
+  // Resolve an image descriptor by filename. Without an extension the name is matched against the
+  // supported image extensions with an exact $in lookup, which uses the filename and alias indexes.
+  public ImageDto resolveImageByName(String imageName) {
+    ImageDto cached = imageMetadataByName.getIfPresent(imageName);
+    if (cached != null) {
+      return cached;
+    }
 
-  // Method to retrieve content type dynamically from the image metadata
-  public String getImageContentType(String imageName) {
-    // Fetch the image metadata to get the content type
-    Optional<GridFSFile> imageFile = Optional.ofNullable(gridFSBucket.find(
-        Filters.eq("filename", imageName)).first());
+    GridFSFile gridFSFile;
+    if (getFileExtension(imageName).isEmpty()) {
+      List<String> candidateNames = EXTENSION_TO_MIME_TYPE.keySet().stream()
+          .map(extension -> imageName + "." + extension)
+          .toList();
+      gridFSFile = gridFSBucket.find(hasName(candidateNames)).first();
+    } else {
+      gridFSFile = gridFSBucket.find(hasName(List.of(imageName))).first();
+    }
 
-    if (imageFile.isEmpty()) {
+    if (gridFSFile == null) {
       throw new ImageNotFoundException("Image not found with name: " + imageName);
     }
 
-    // Retrieve the content type from the metadata (if available)
-    GridFSFile gridFSFile = imageFile.get();
-    Document metadata = gridFSFile.getMetadata();
-    String contentType = (metadata != null && metadata.containsKey("contentType"))
-        ? metadata.getString("contentType")
-        : "application/octet-stream";  // Default content type if not found
+    ImageDto image = toImageDto(gridFSFile);
+    imageMetadataByName.put(imageName, image);
+    imageMetadataById.put(image.getImageId(), image);
+    return image;
+  }
 
-    return contentType;
+  // Strong validator for conditional requests. A GridFS file is never rewritten in place, so the
+  // ObjectId plus length and upload time identify the exact bytes.
+  public String getETag(ImageDto image) {
+    return "\"" + image.getImageId() + "-" + image.getLength() + "-" + image.getUploadDate().toEpochMilli() + "\"";
   }
 
-  // Method to retrieve content type dynamically from the image metadata by its ObjectId
-  public String getImageContentTypeById(String imageId) {
-    // Convert the imageId (String) to ObjectId
-    ObjectId objectId = new ObjectId(imageId);
+  // Content of a resolved image. Served from the memory or disk cache when possible; small images are
+  // pulled into memory on first use, larger ones are streamed lazily from their store (so byte ranges
+  // only read what they cover). Large images in a remote store are also copied to the local disk cache
+  // in the background.
+  public Resource getImageResource(ImageDto image) {
+    Resource cached = imageCacheService.getCachedImage(image);
+    if (cached != null) {
+      return cached;
+    }
 
-    // Fetch the image metadata using its ObjectId to get the content type
-    Optional<GridFSFile> imageFile = Optional.ofNullable(gridFSBucket.find(
-        Filters.eq("_id", objectId)).first());
+    if (imageCacheService.fitsInMemory(image)) {
+      return imageCacheService.loadIntoMemory(image);
+    }
 
-    if (imageFile.isEmpty()) {
-      throw new ImageNotFoundException("Image not found with ID: " + imageId);
+    if (!imageStorage.isLocal(image)) {
+      imageCacheService.copyToDisk(image);
     }
+    return imageStorage.getResource(image);
+  }
 
-    // Retrieve the content type from the metadata (if available)
-    GridFSFile gridFSFile = imageFile.get();
-    Document metadata = gridFSFile.getMetadata();
-    String contentType = (metadata != null && metadata.containsKey("contentType"))
-        ? metadata.getString("contentType")
-        : "application/octet-stream";  // Default content type if not found
+  // The smallest variant at least as wide as requested; the original when no width is requested,
+  // none is wide enough or the variants have not been generated yet
+  public ImageDto selectVariant(ImageDto image, Integer width) {
+    String variantId = selectVariantId(image, width);
+    if (variantId == null) {
+      return image;
+    }
+
+    try {
+      return resolveImageById(variantId);
+    } catch (ImageNotFoundException e) {
+      return image; // Variant removed on its own; the original still answers the request
+    }
+  }
+
+  // Id of the variant selectVariant would serve, or null for the original
+  public String selectVariantId(ImageDto image, Integer width) {
+    if (width == null || image.getVariants() == null) {
+      return null;
+    }
+
+    return image.getVariants().keySet().stream()
+        .filter(candidate -> candidate >= width)
+        .min(Integer::compare)
+        .map(variantWidth -> image.getVariants().get(variantWidth))
+        .orElse(null);
+  }
+
+  // Drop every cached descriptor and cached copy of the given image
+  public void evictImage(String imageId) {
+    imageCacheService.evict(imageId);
+    imageMetadataById.invalidate(imageId);
+    imageMetadataByName.asMap().values().removeIf(image -> image.getImageId().equals(imageId));
+  }
 
-    return contentType;
+  // fs.files changed, here or on another node. Drops the descriptor of the changed file, every name
+  // resolved to it, and the names it now answers to (an upload or alias may have taken them over).
+  @EventListener
+  public void onFilesChanged(CollectionChangedEvent event) {
+    if (!FILES_COLLECTION.equals(event.collection())) {
+      return;
+    }
+
+    if (event.isWholeCollection()) {
+      imageMetadataById.invalidateAll();
+      imageMetadataByName.invalidateAll();
+      return;
+    }
+
+    String imageId = event.documentId();
+    if (event.deleted()) {
+      imageCacheService.evict(imageId);
+    }
+    imageMetadataById.invalidate(imageId);
+    imageMetadataByName.asMap().values().removeIf(image -> image.getImageId().equals(imageId));
+    if (!event.deleted() && ObjectId.isValid(imageId)) {
+      invalidateNamesOf(new ObjectId(imageId));
+    }
   }
 
-  // Delete an image by its filename
+  // A name is cached with and without its extension
+  private void invalidateNamesOf(ObjectId imageId) {
+    Document file;
+    try {
+      file = mongoTemplate.getCollection(FILES_COLLECTION)
+          .find(Filters.eq("_id", imageId))
+          .projection(Projections.include("filename", "metadata.aliases"))
+          .first();
+    } catch (Exception e) {
+      log.warn("Could not look up the names of image {}, dropping all cached names: {}", imageId, e.getMessage());
+      imageMetadataByName.invalidateAll();
+      return;
+    }
+    if (file == null) {
+      return;
+    }
+
+    List<String> names = new ArrayList<>();
+    names.add(file.getString("filename"));
+    Document metadata = file.get("metadata", Document.class);
+    if (metadata != null && metadata.getList("aliases", String.class) != null) {
+      names.addAll(metadata.getList("aliases", String.class));
+    }
+    for (String name : names) {
+      if (name == null) {
+        continue;
+      }
+      imageMetadataByName.invalidate(name);
+      int extension = name.lastIndexOf('.');
+      if (extension > 0) {
+        imageMetadataByName.invalidate(name.substring(0, extension));
+      }
+    }
+  }
+
+  // Resized variants go together with their original
+  private void deleteVariants(ObjectId imageId) {
+    List<ObjectId> variantIds = gridFSBucket.find(Filters.eq("metadata.variantOf", imageId))
+        .map(GridFSFile::getObjectId)
+        .into(new ArrayList<>());
+    imageStorage.delete(variantIds);
+    variantIds.forEach(variantId -> evictImage(variantId.toHexString()));
+  }
+
+  // Delete an image by its filename. The file itself only goes once nothing references it: a name
+  // given to a deduplicated upload is removed and gives up that upload's reference, the file's own
+  // name gives up the reference of the upload that stored it. References of uploads made for an
+  // entity are the entity's; deleting their names leaves them alone.
   public void deleteImageByName(String imageName) {
     // Check if the image exists
-    Optional<GridFSFile> imageFileOpt = Optional.ofNullable(gridFSBucket.find(Filters.eq("filename", imageName)).first());
+    GridFSFile gridFSFile = gridFSBucket.find(hasName(List.of(imageName))).first();
 
-    if (imageFileOpt.isEmpty()) {
+    if (gridFSFile == null) {
       throw new ImageNotFoundException("Image with the name '" + imageName + "' does not exist.");
     }
 
-    // Image exists, delete it
-    GridFSFile gridFSFile = imageFileOpt.get();
-    gridFSBucket.delete(gridFSFile.getObjectId());
+    ObjectId objectId = gridFSFile.getObjectId();
+    if (hasAlias(gridFSFile, imageName, ENTITY_ALIASES)) {
+      mongoTemplate.getCollection(FILES_COLLECTION).updateOne(Filters.eq("_id", objectId), Updates.combine(
+          Updates.pull("metadata.aliases", imageName), Updates.pull("metadata." + ENTITY_ALIASES, imageName),
+          Updates.set(ImageStorage.MODIFIED_AT, new Date())));
+    } else if (hasAlias(gridFSFile, imageName, "aliases")) {
+      release(objectId, Filters.eq("metadata.aliases", imageName),
+          Updates.combine(Updates.pull("metadata.aliases", imageName), Updates.set(ImageStorage.MODIFIED_AT, new Date())));
+    } else {
+      releaseUpload(objectId);
+    }
+    imageMetadataByName.invalidateAll();
   }
 
-  // Delete an image by its ObjectId (imageId)
+  // Delete an image by its ObjectId (imageId); only its own upload's reference is given up
   public void deleteImageById(String imageId) {
     // Convert the imageId (String) to ObjectId
     ObjectId objectId = new ObjectId(imageId);
 
     // Check if the image exists by its ObjectId
-    Optional<GridFSFile> imageFileOpt = Optional.ofNullable(gridFSBucket.find(Filters.eq("_id", objectId)).first());
+    GridFSFile gridFSFile = gridFSBucket.find(Filters.eq("_id", objectId)).first();
 
-    if (imageFileOpt.isEmpty()) {
+    if (gridFSFile == null) {
       throw new ImageNotFoundException("Image with the ID '" + imageId + "' does not exist.");
     }
 
-    // Image exists, delete it
-    GridFSFile gridFSFile = imageFileOpt.get();
-    gridFSBucket.delete(gridFSFile.getObjectId());
+    releaseUpload(objectId);
   }
 
+  private boolean hasAlias(GridFSFile gridFSFile, String name, String field) {
+    Document metadata = gridFSFile.getMetadata();
+    return metadata != null && metadata.getList(field, String.class, List.of()).contains(name);
+  }
 
-  public List<ImageDto> getAllImages() {
-    return gridFSBucket.find(Filters.empty())
-        .map(gridFSFile -> {
-          // Get metadata safely, ensuring it's not null
-          Document metadata = gridFSFile.getMetadata();
+  // The reference taken when the file was stored, given up once (deleting twice does not drop the
+  // references of entities; a file stored for an entity is released from the start). Files stored
+  // before reference counting are deleted right away.
+  private void releaseUpload(ObjectId objectId) {
+    boolean counted = release(objectId, Filters.ne("metadata.uploadReleased", true),
+        Updates.set("metadata.uploadReleased", true));
+    if (!counted && mongoTemplate.getCollection(FILES_COLLECTION)
+        .countDocuments(Filters.and(Filters.eq("_id", objectId), Filters.exists("metadata.refCount", false))) > 0) {
+      imageStorage.delete(List.of(objectId));
+      evictImage(objectId.toHexString());
+      deleteVariants(objectId);
+    }
+  }
+
+  // Delete a batch of images and their variants with one delete per collection.
+  // Returns the number of files removed, variants included.
+  public long deleteImages(List<ObjectId> imageIds) {
+    if (imageIds.isEmpty()) {
+      return 0;
+    }
+
+    List<ObjectId> fileIds = new ArrayList<>(imageIds);
+    gridFSBucket.find(Filters.in("metadata.variantOf", imageIds)).forEach(variant -> fileIds.add(variant.getObjectId()));
+
+    long deleted = imageStorage.delete(fileIds);
+    fileIds.forEach(fileId -> evictImage(fileId.toHexString()));
+    return deleted;
+  }
 
-          // Check if metadata is null or doesn't contain "contentType" key
-          String contentType = (metadata != null && metadata.containsKey("contentType"))
-              ? metadata.getString("contentType")
-              : "application/octet-stream";  // Default content type
+  // Existing image to link an entity to, by id or else by name. Only metadata is looked up; the caller
+  // takes the entity's reference (retainImage) once the entity is saved. Null when neither is given.
+  public ImageDto resolveImageToLink(String imageId, String imageName) {
+    ImageDto image;
+    if (imageId != null && !imageId.isEmpty()) {
+      if (!ObjectId.isValid(imageId)) {
+        throw new ImageNotFoundException("Image not found with ID: " + imageId);
+      }
+      image = resolveImageById(imageId);
+    } else if (imageName != null && !imageName.isEmpty()) {
+      image = resolveImageByName(imageName);
+    } else {
+      return null;
+    }
+
+    return image;
+  }
 
-          // Get the image's ObjectId (imageId)
-          String imageId = gridFSFile.getObjectId().toString();  // Convert ObjectId to String
+  // Take one more reference to an image. Files stored before reference counting only get the
+  // timestamp that keeps the orphan cleanup away from them.
+  public void retainImage(String imageId) {
+    // One update: a positive count goes up by one, a missing or zero one stays as it is
+    Document refCount = new Document("$cond", List.of(
+        new Document("$gt", List.of("$metadata.refCount", 0)),
+        new Document("$add", List.of("$metadata.refCount", 1)),
+        "$metadata.refCount"));
+    mongoTemplate.getCollection(FILES_COLLECTION).updateOne(Filters.eq("_id", new ObjectId(imageId)), List.of(
+        Updates.combine(Updates.set("metadata.refCount", refCount), Updates.set("metadata.referencedAt", new Date()))));
+  }
+
+  // Drop one reference to an image; the file and its variants are deleted with the last one.
+  // Files stored before reference counting carry no count and are left to the orphan cleanup.
+  public void releaseImage(String imageId) {
+    if (imageId == null || !ObjectId.isValid(imageId)) {
+      return;
+    }
+
+    release(new ObjectId(imageId), null, null);
+  }
+
+  // Decrement the count of a counted file, only when it also matches the filter and together with
+  // the extra update when they are given. Returns whether a reference was released.
+  private boolean release(ObjectId objectId, Bson filter, Bson update) {
+    List<Bson> filters = new ArrayList<>(List.of(Filters.eq("_id", objectId), Filters.gt("metadata.refCount", 0)));
+    List<Bson> updates = new ArrayList<>(List.of(Updates.inc("metadata.refCount", -1)));
+    if (filter != null) {
+      filters.add(filter);
+      updates.add(update);
+    }
+
+    Document released = mongoTemplate.getCollection(FILES_COLLECTION).findOneAndUpdate(
+        Filters.and(filters), Updates.combine(updates),
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+
+    if (released == null) {
+      return false;
+    }
+
+    String imageId = objectId.toHexString();
+    if (released.get("metadata", Document.class).getInteger("refCount") <= 0) {
+      imageStorage.delete(List.of(objectId));
+      evictImage(imageId);
+      deleteVariants(objectId);
+      log.info("Deleted image {} after its last reference was released", imageId);
+    }
+    return true;
+  }
+
+  // What one streaming pass over an upload tells us: its SHA-256 and the image type its leading
+  // bytes identify (null when they are not a supported image)
+  private record ContentProbe(String sha256, String detectedContentType) {
+  }
+
+  // Streamed from the multipart file without buffering it
+  private ContentProbe probeContent(MultipartFile file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+
+    String detectedContentType;
+    try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+      byte[] header = inputStream.readNBytes(ImageTypeDetector.HEADER_LENGTH);
+      detectedContentType = ImageTypeDetector.detect(header, header.length);
+      inputStream.transferTo(OutputStream.nullOutputStream());
+    }
+    return new ContentProbe(HexFormat.of().formatHex(digest.digest()), detectedContentType);
+  }
 
-          // Return new ImageDto with imageId, filename, and content type
-          return new ImageDto(imageId, gridFSFile.getFilename(), contentType);
-        })
+  // Listing query: originals only, optionally narrowed to a filename prefix and a content type.
+  // Only the fields of the image descriptor are fetched (no hashes or aliases).
+  private FindIterable<Document> findImages(ObjectId after, String prefix, String contentType) {
+    List<Bson> filters = new ArrayList<>();
+    filters.add(NOT_A_VARIANT);
+    if (after != null) {
+      filters.add(Filters.gt("_id", after));
+    }
+    if (prefix != null && !prefix.isEmpty()) {
+      // Anchored, case-sensitive prefix so the filename index can be used
+      filters.add(Filters.regex("filename", "^" + escapeRegex(prefix)));
+    }
+    if (contentType != null && !contentType.isEmpty()) {
+      filters.add(Filters.eq("metadata.contentType", contentType));
+    }
+
+    return mongoTemplate.getCollection(FILES_COLLECTION)
+        .find(Filters.and(filters))
+        .projection(IMAGE_DTO_FIELDS)
+        .sort(Sorts.ascending("_id"));
+  }
+
+  private String escapeRegex(String value) {
+    return value.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+  }
+
+  // One page of images in upload (_id) order. The cursor is the id of the last image of the previous
+  // page, so each page is a range scan on _id however deep the client pages.
+  public CursorPagedResponse<ImageDto> getImages(String cursor, int limit, String prefix, String contentType) {
+    if (cursor != null && !cursor.isEmpty() && !ObjectId.isValid(cursor)) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+    ObjectId after = (cursor == null || cursor.isEmpty()) ? null : new ObjectId(cursor);
+
+    // One extra item tells whether another page follows
+    List<ImageDto> images = findImages(after, prefix, contentType)
+        .limit(limit + 1)
+        .map(this::toImageDto)
         .into(new ArrayList<>());
+
+    String nextCursor = null;
+    if (images.size() > limit) {
+      images.remove(limit);
+      nextCursor = images.get(limit - 1).getImageId();
+    }
+    return new CursorPagedResponse<>(images, nextCursor, limit);
+  }
+
+  // Hand every matching image to the consumer while the cursor is read, without collecting them
+  public void forEachImage(String prefix, String contentType, Consumer<ImageDto> consumer) {
+    findImages(null, prefix, contentType)
+        .batchSize(1000)
+        .forEach(file -> consumer.accept(toImageDto(file)));
+  }
+
+
+  // Upload many images at once. Each file is hashed, validated by its content and stored on the upload
+  // executor; a failing file does not affect the others and is reported in its own result.
+  public List<ImageUploadResultDto> uploadImages(List<MultipartFile> files) {
+    List<CompletableFuture<ImageUploadResultDto>> uploads = files.stream()
+        .map(file -> CompletableFuture.supplyAsync(() -> uploadForBatch(file), imageUploadExecutor))
+        .toList();
+
+    return uploads.stream()
+        .map(CompletableFuture::join)
+        .toList();
   }
 
+  private ImageUploadResultDto uploadForBatch(MultipartFile file) {
+    try {
+      Map<String, String> stored = storeImage(file, null, true, false);
+      return new ImageUploadResultDto(file.getOriginalFilename(), true, stored.get("imageName"), stored.get("imageId"), null);
+    } catch (Exception e) {
+      log.warn("Batch upload of {} failed: {}", file.getOriginalFilename(), e.getMessage());
+      return new ImageUploadResultDto(file.getOriginalFilename(), false, null, null, e.getMessage());
+    }
+  }
 
   //  Image with same name allowed and returns name and id of image
   public Map<String, String> uploadImageWithCustomName(MultipartFile file, String customFileName) throws IOException {
+    return storeImage(file, customFileName, false, false);
+  }
+
+  // Upload for the entity that is about to refer to it: the reference the upload takes is the entity's
+  // own, so deleting the image by id or name does not give it up; only releaseImage does.
+  public Map<String, String> uploadImageForEntity(MultipartFile file, String customFileName) throws IOException {
+    return storeImage(file, customFileName, false, true);
+  }
+
+  // Store an upload under the custom name (default: the original name). The stored content type comes
+  // from the file's leading bytes when they identify an image. With requireImage the upload is rejected
+  // unless they do and agree with the file extension. With forEntity the reference belongs to an entity.
+  private Map<String, String> storeImage(MultipartFile file, String customFileName, boolean requireImage,
+      boolean forEntity) throws IOException {
     if (file == null || file.isEmpty()) {
       throw new IllegalArgumentException("File cannot be null or empty.");
     }
@@ -208,20 +705,70 @@ public class ImageService {
     // Combine custom name with the original file extension
     String finalFileName = customFileName + "." + fileExtension;
 
-    // Get content type based on file extension
+    // Get content type based on file extension, unless the content itself says otherwise
     String contentType = EXTENSION_TO_MIME_TYPE.getOrDefault(fileExtension, "application/octet-stream");
+    ContentProbe probe = probeContent(file);
+    if (requireImage) {
+      if (probe.detectedContentType() == null) {
+        throw new IllegalArgumentException("File content is not a supported image.");
+      }
+      if (!probe.detectedContentType().equals(contentType)) {
+        throw new IllegalArgumentException("File content (" + probe.detectedContentType()
+            + ") does not match its extension ." + fileExtension);
+      }
+    }
+    if (probe.detectedContentType() != null) {
+      contentType = probe.detectedContentType();
+    }
+
+    // Identical content is stored once: an existing live file with the same hash takes another
+    // reference and answers to the new name as well. Files whose count already dropped to zero are
+    // being deleted and are never picked up again.
+    String sha256 = probe.sha256();
+    Document existing = reuseStoredContent(sha256, finalFileName, forEntity);
+
+    // The name (with or without extension) may now resolve differently
+    imageMetadataByName.invalidate(finalFileName);
+    imageMetadataByName.invalidate(customFileName);
+
+    if (existing != null) {
+      return reusedResponse(existing, finalFileName);
+    }
 
-    // Prepare upload options with content type
-    GridFSUploadOptions options = new GridFSUploadOptions()
-        .metadata(new Document("contentType", contentType));
+    // Metadata with content type, content hash and the first reference
+    Document metadata = new Document("contentType", contentType)
+        .append("sha256", sha256)
+        .append("refCount", 1)
+        .append("modifiedAt", new Date());
+    if (forEntity) {
+      metadata.append("uploadReleased", true);
+    }
 
     // Save the image and get the ObjectId (which is inherently unique)
     ObjectId imageId;
     try (InputStream inputStream = file.getInputStream()) {
-      imageId = gridFSBucket.uploadFromStream(finalFileName, inputStream, options);
+      imageId = imageStorage.store(finalFileName, inputStream, metadata);
       log.info("Image uploaded successfully: " + finalFileName);
+    } catch (MongoWriteException e) {
+      // The same content was stored by a concurrent upload in the meantime (the stored copy is gone)
+      existing = e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY
+          ? reuseStoredContent(sha256, finalFileName, forEntity)
+          : null;
+      if (existing == null) {
+        throw e;
+      }
+      return reusedResponse(existing, finalFileName);
     }
 
+    // Resized variants are generated in the background; descriptors cached in the meantime
+    // do not know about them yet
+    String baseName = customFileName;
+    imageVariantService.generateVariants(imageId, finalFileName, imageStorage.getBackend()).whenComplete((result, error) -> {
+      imageMetadataById.invalidate(imageId.toHexString());
+      imageMetadataByName.invalidate(finalFileName);
+      imageMetadataByName.invalidate(baseName);
+    });
+
     // Prepare and return the response with image name and id
     Map<String, String> response = new HashMap<>();
     response.put("imageName", finalFileName);  // Custom name with extension
@@ -230,4 +777,29 @@ public class ImageService {
     return response;
   }
 
-}
\ No newline at end of file
+  // Another reference and the new name for the live file with the same content; null when there is none
+  private Document reuseStoredContent(String sha256, String fileName, boolean forEntity) {
+    List<Bson> updates = new ArrayList<>(List.of(
+        Updates.inc("metadata.refCount", 1),
+        Updates.addToSet("metadata.aliases", fileName),
+        Updates.set("metadata.referencedAt", new Date()),
+        Updates.set(ImageStorage.MODIFIED_AT, new Date())));
+    if (forEntity) {
+      updates.add(Updates.addToSet("metadata." + ENTITY_ALIASES, fileName));
+    }
+    return mongoTemplate.getCollection(FILES_COLLECTION).findOneAndUpdate(
+        Filters.and(Filters.eq("metadata.sha256", sha256), Filters.gt("metadata.refCount", 0)),
+        Updates.combine(updates));
+  }
+
+  private Map<String, String> reusedResponse(Document existing, String fileName) {
+    ObjectId existingId = existing.getObjectId("_id");
+    log.info("Image content already stored, reusing {} for {}", existingId, fileName);
+
+    Map<String, String> response = new HashMap<>();
+    response.put("imageName", fileName);
+    response.put("imageId", existingId.toString());
+    return response;
+  }
+
+}
@@ -0,0 +1,113 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.tp.tradexcelsior.dto.response.ImageStorageMigrationReportDto;
+import com.tp.tradexcelsior.storage.BlobStore;
+import com.tp.tradexcelsior.storage.GridFsBlobStore;
+import com.tp.tradexcelsior.storage.ImageStorage;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+// Moves the content of stored images between blob stores. Ids, names and metadata stay as they are,
+// so entities keep pointing at the same images; only metadata.storage changes.
+@Slf4j
+@Service
+public class ImageStorageMigrationService {
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ImageStorage imageStorage;
+
+  @Autowired
+  private ImageService imageService;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // Move up to limit files into the target store, oldest first. Each file is copied, its entry switched
+  // to the target, cached descriptors dropped, and only then removed from the source store.
+  public ImageStorageMigrationReportDto migrate(String target, int limit) {
+    // One migration at a time (a lock, so the copying does not pin a virtual thread's carrier)
+    lock.lock();
+    try {
+      return runMigration(target, limit);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private ImageStorageMigrationReportDto runMigration(String target, int limit) {
+    BlobStore targetStore = imageStorage.getBlobStore(target);
+    if (!imageStorage.isReadableByAllNodes(targetStore.getName())) {
+      throw new IllegalArgumentException("Image storage backend " + target + " is single-node.");
+    }
+    Bson notOnTarget = notStoredIn(targetStore.getName());
+    MongoCollection<Document> files = mongoTemplate.getCollection(ImageStorage.FILES_COLLECTION);
+
+    long migrated = 0;
+    long migratedBytes = 0;
+    long failed = 0;
+
+    for (Document file : files.find(notOnTarget)
+        .projection(Projections.include("_id", "length", "metadata.storage"))
+        .sort(Sorts.ascending("_id"))
+        .limit(limit)) {
+      ObjectId id = file.getObjectId("_id");
+      Document metadata = file.get("metadata", Document.class);
+      BlobStore sourceStore = imageStorage.getBlobStore(metadata != null ? metadata.getString("storage") : null);
+      boolean switched = false;
+
+      try {
+        try (InputStream inputStream = sourceStore.openStream(id)) {
+          targetStore.write(id, inputStream);
+        }
+
+        switched = files.updateOne(Filters.and(Filters.eq("_id", id), notOnTarget),
+            Updates.combine(Updates.set("metadata.storage", targetStore.getName()),
+                Updates.set(ImageStorage.MODIFIED_AT, new Date()))).getMatchedCount() > 0;
+        if (!switched) {
+          targetStore.delete(List.of(id)); // Deleted while being copied
+          continue;
+        }
+
+        imageService.evictImage(id.toHexString());
+        sourceStore.delete(List.of(id));
+        migrated++;
+        migratedBytes += file.get("length", Number.class).longValue();
+      } catch (Exception e) {
+        failed++;
+        log.warn("Could not move image {} from {} to {}: {}", id, sourceStore.getName(), targetStore.getName(), e.getMessage());
+        if (!switched) {
+          targetStore.delete(List.of(id));
+        }
+      }
+    }
+
+    long remaining = files.countDocuments(notOnTarget);
+    log.info("Moved {} images ({} bytes) to {}; {} failed, {} remaining", migrated, migratedBytes,
+        targetStore.getName(), failed, remaining);
+    return new ImageStorageMigrationReportDto(targetStore.getName(), migrated, migratedBytes, failed, remaining);
+  }
+
+  // Entries without a storage name are in GridFS
+  private Bson notStoredIn(String storage) {
+    if (GridFsBlobStore.NAME.equals(storage)) {
+      return Filters.and(Filters.exists("metadata.storage"), Filters.ne("metadata.storage", storage));
+    }
+    return Filters.ne("metadata.storage", storage);
+  }
+}
@@ -0,0 +1,197 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import com.tp.tradexcelsior.storage.ImageStorage;
+import jakarta.annotation.PostConstruct;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+// Generates fixed-width resized copies of uploaded images. Variants are ordinary stored files whose
+// metadata points back at the original (variantOf); the original records its own size and the list
+// of variants, so picking one for a request needs no extra query.
+@Slf4j
+@Service
+public class ImageVariantService {
+
+  // Widths generated for every image that is wider than them
+  private static final int[] VARIANT_WIDTHS = {160, 320, 640};
+
+  private static final String FILES_COLLECTION = ImageStorage.FILES_COLLECTION;
+
+  // Decoding takes about 4 bytes per pixel, whatever the size of the file
+  @Value("${image.variants.max-pixels:40000000}")
+  private long maxPixels;
+
+  @Autowired
+  private ImageStorage imageStorage;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  // Startup goes on without it (MongoDB unreachable, ...); lookups still work, only slower
+  @PostConstruct
+  public void createIndexes() {
+    try {
+      // Variant lookups on delete; only variant documents carry the field
+      mongoTemplate.getCollection(FILES_COLLECTION)
+          .createIndex(Indexes.ascending("metadata.variantOf"), new IndexOptions().sparse(true));
+    } catch (Exception e) {
+      log.error("Could not create image variant index: {}", e.getMessage());
+    }
+  }
+
+  // Decode the uploaded image and store its resized variants. The original's metadata is updated once
+  // the outcome is final, which marks the image as processed: the variants on success, an empty list
+  // when there is nothing to generate, the format is not supported by ImageIO, the content cannot be
+  // decoded or the image is over the pixel budget. A failure that may pass (storage unavailable, ...)
+  // leaves the image unmarked; it keeps being served as the original and is not cached for good.
+  @Async("imageProcessingExecutor")
+  public CompletableFuture<Void> generateVariants(ObjectId imageId, String filename, String storage) {
+    List<Document> variants = new ArrayList<>();
+    List<ObjectId> variantIds = new ArrayList<>();
+    Integer originalWidth = null;
+    Integer originalHeight = null;
+
+    try (InputStream inputStream = imageStorage.openStream(imageId, storage);
+        ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+      ImageReader reader = imageInputStream == null ? null : firstReader(imageInputStream);
+
+      if (reader == null) {
+        log.info("No variants generated for {}: format not supported", filename);
+      } else {
+        try {
+          reader.setInput(imageInputStream, true, true);
+          // Read from the header; nothing is decoded until the size is known to be affordable
+          originalWidth = reader.getWidth(0);
+          originalHeight = reader.getHeight(0);
+
+          if ((long) originalWidth * originalHeight > maxPixels) {
+            log.warn("No variants generated for {}: {}x{} is over the {} pixel limit",
+                filename, originalWidth, originalHeight, maxPixels);
+          } else {
+            generate(reader.read(0), imageId, filename, variants, variantIds);
+            log.info("Generated {} variants for {}", variants.size(), filename);
+          }
+        } finally {
+          reader.dispose();
+        }
+      }
+    } catch (IIOException e) {
+      // Corrupt or truncated content fails the same way every time
+      log.warn("No variants generated for {}: {}", filename, e.getMessage());
+      variants.clear();
+    } catch (Exception e) {
+      log.warn("Could not generate variants for {}, left for the original to be served: {}",
+          filename, e.getMessage());
+      imageStorage.delete(variantIds);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    List<Bson> updates = new ArrayList<>();
+    updates.add(Updates.set("metadata.variants", variants));
+    updates.add(Updates.set(ImageStorage.MODIFIED_AT, new Date()));
+    if (originalWidth != null) {
+      updates.add(Updates.set("metadata.width", originalWidth));
+      updates.add(Updates.set("metadata.height", originalHeight));
+    }
+    UpdateResult result = mongoTemplate.getCollection(FILES_COLLECTION)
+        .updateOne(Filters.eq("_id", imageId), Updates.combine(updates));
+
+    // The original was deleted while its variants were being generated, or they were left unused
+    if (result.getMatchedCount() == 0 || variants.isEmpty()) {
+      imageStorage.delete(variantIds);
+    }
+
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private ImageReader firstReader(ImageInputStream imageInputStream) {
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+    return readers.hasNext() ? readers.next() : null;
+  }
+
+  private void generate(BufferedImage original, ObjectId imageId, String filename, List<Document> variants,
+      List<ObjectId> variantIds) throws IOException {
+    // Keep transparency where the source has it, everything else becomes JPEG
+    boolean hasAlpha = original.getColorModel().hasAlpha();
+    String format = hasAlpha ? "png" : "jpg";
+    String contentType = hasAlpha ? "image/png" : "image/jpeg";
+
+    for (int width : VARIANT_WIDTHS) {
+      if (width >= original.getWidth()) {
+        break;
+      }
+
+      BufferedImage resized = resize(original, width, hasAlpha);
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      ImageIO.write(resized, format, outputStream);
+
+      Document metadata = new Document("contentType", contentType)
+          .append("variantOf", imageId)
+          .append("width", width)
+          .append("height", resized.getHeight());
+      ObjectId variantId = imageStorage.store(variantFileName(filename, width, format),
+          new ByteArrayInputStream(outputStream.toByteArray()), metadata);
+
+      variantIds.add(variantId);
+      variants.add(new Document("width", width).append("imageId", variantId));
+    }
+  }
+
+  // Scale down in halving steps; a single bilinear step from a large original drops most of the pixels
+  private BufferedImage resize(BufferedImage source, int targetWidth, boolean keepAlpha) {
+    int targetHeight = Math.max(1, Math.round(source.getHeight() * (float) targetWidth / source.getWidth()));
+    int imageType = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+    BufferedImage current = source;
+    int width = source.getWidth();
+    int height = source.getHeight();
+    do {
+      width = Math.max(targetWidth, width / 2);
+      height = Math.max(targetHeight, height / 2);
+
+      BufferedImage step = new BufferedImage(width, height, imageType);
+      Graphics2D graphics = step.createGraphics();
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.drawImage(current, 0, 0, width, height, null);
+      graphics.dispose();
+      current = step;
+    } while (width != targetWidth || height != targetHeight);
+
+    return current;
+  }
+
+  // e.g. "book.png" -> "book-w320.png"
+  private String variantFileName(String filename, int width, String format) {
+    int dotIndex = filename.lastIndexOf('.');
+    String baseName = dotIndex > 0 ? filename.substring(0, dotIndex) : filename;
+    return baseName + "-w" + width + "." + format;
+  }
+}
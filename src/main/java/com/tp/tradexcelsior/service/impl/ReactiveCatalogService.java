@@ -0,0 +1,191 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.tp.tradexcelsior.dto.response.BookResponseDto;
+import com.tp.tradexcelsior.dto.response.CoreWatchlistResponseDto;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.dto.response.ReferenceResponseDto;
+import com.tp.tradexcelsior.entity.Book;
+import com.tp.tradexcelsior.entity.CoreWatchlist;
+import com.tp.tradexcelsior.entity.Reference;
+import com.tp.tradexcelsior.exception.custom.ImageNotFoundException;
+import com.tp.tradexcelsior.storage.GridFsBlobStore;
+import com.tp.tradexcelsior.storage.ImageStorage;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Reads behind the reactive API (ReactiveReadRoutes). Documents come from the reactive driver and are
+// mapped one at a time as the client takes them, so a slow client slows the cursor down instead of
+// a full list piling up in memory. Nothing here may block: image descriptors come from ImageService's
+// cache, and only a cache miss is looked up on a worker thread.
+@Slf4j
+@Service
+public class ReactiveCatalogService {
+
+  // Indexed fields only: the whole collection is streamed, so any other sort would be done in memory
+  // by MongoDB over every document
+  public static final Set<String> CORE_WATCHLIST_SORT_FIELDS = Set.of("company", "lastModified");
+
+  // Chunks fetched per round trip, as GridFsImageResource does
+  private static final int CHUNK_BATCH_SIZE = 4;
+
+  // Chunks are wrapped (not copied) in Netty buffers, which the reactive API's Netty server writes to
+  // the socket as they are; other buffer types get copied there
+  private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+  @Autowired
+  private ReactiveMongoTemplate reactiveMongoTemplate;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ModelMapper modelMapper;
+
+  @Autowired
+  private ImageService imageService;
+
+  @Autowired
+  private ImageCacheService imageCacheService;
+
+  @Autowired
+  private ImageStorage imageStorage;
+
+  // lastModified is indexed by ChangeFeedService
+  @PostConstruct
+  public void createIndexes() {
+    try {
+      mongoTemplate.getCollection(mongoTemplate.getCollectionName(CoreWatchlist.class))
+          .createIndex(Indexes.ascending("company"));
+    } catch (Exception e) {
+      log.error("Could not create core watchlist sort index: {}", e.getMessage());
+    }
+  }
+
+  // Sorted in the database; the servlet endpoint's in-memory trend and market cap ordering needs the
+  // whole page at once and is not offered here
+  public Flux<CoreWatchlistResponseDto> getCoreWatchlists(String sortBy, String sortDirection) {
+    if (!CORE_WATCHLIST_SORT_FIELDS.contains(sortBy)) {
+      throw new IllegalArgumentException("Unsupported sort field: " + sortBy);
+    }
+    Sort.Direction direction = "desc".equalsIgnoreCase(sortDirection) ? Sort.Direction.DESC : Sort.Direction.ASC;
+    Query query = notDeleted().with(Sort.by(direction, sortBy));
+    return reactiveMongoTemplate.find(query, CoreWatchlist.class)
+        .map(watchlist -> modelMapper.map(watchlist, CoreWatchlistResponseDto.class));
+  }
+
+  public Flux<BookResponseDto> getBooks() {
+    return reactiveMongoTemplate.find(notDeleted(), Book.class)
+        .map(book -> modelMapper.map(book, BookResponseDto.class));
+  }
+
+  public Flux<ReferenceResponseDto> getReferences() {
+    return reactiveMongoTemplate.find(notDeleted(), Reference.class)
+        .map(reference -> modelMapper.map(reference, ReferenceResponseDto.class));
+  }
+
+  private Query notDeleted() {
+    return new Query(Criteria.where("isDeleted").is(false));
+  }
+
+  public Mono<ImageDto> resolveImageById(String imageId) {
+    ImageDto cached = imageService.getCachedImageById(imageId);
+    if (cached != null) {
+      return Mono.just(cached);
+    }
+    return Mono.fromCallable(() -> imageService.resolveImageById(imageId))
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  // Same choice as ImageService.selectVariant
+  public Mono<ImageDto> selectVariant(ImageDto image, Integer width) {
+    String variantId = imageService.selectVariantId(image, width);
+    if (variantId == null) {
+      return Mono.just(image);
+    }
+    return resolveImageById(variantId)
+        .onErrorResume(ImageNotFoundException.class, e -> Mono.just(image));
+  }
+
+  // Content already on this node: a cached copy, or the file itself with filesystem storage.
+  // Null when the content has to be streamed from GridFS.
+  public Resource getLocalContent(ImageDto image) {
+    Resource cached = imageCacheService.getCachedImage(image);
+    if (cached != null) {
+      return cached;
+    }
+    return imageStorage.isLocal(image) ? imageStorage.getResource(image) : null;
+  }
+
+  // GridFS content read straight from fs.chunks with the descriptor's id, so fs.files is not queried
+  // again. As on the servlet endpoint, small images are loaded into the memory tier (and sent as one
+  // buffer) and large ones stream one buffer per chunk while they are copied to the disk cache.
+  public Flux<DataBuffer> streamContent(ImageDto image) {
+    if (imageCacheService.fitsInMemory(image)) {
+      return readChunks(image)
+          .reduceWith(() -> new ByteArrayOutputStream((int) image.getLength()), (content, chunk) -> {
+            content.writeBytes(chunk);
+            return content;
+          })
+          .map(content -> {
+            byte[] bytes = content.toByteArray();
+            imageCacheService.putInMemory(image, bytes);
+            return (DataBuffer) BUFFER_FACTORY.wrap(bytes);
+          })
+          .flux();
+    }
+
+    imageCacheService.copyToDisk(image);
+    return readChunks(image).map(BUFFER_FACTORY::wrap);
+  }
+
+  // The file's chunks in order; an error when one is missing or the content is not the expected length
+  private Flux<byte[]> readChunks(ImageDto image) {
+    ObjectId fileId = new ObjectId(image.getImageId());
+    return Flux.defer(() -> {
+      AtomicLong read = new AtomicLong();
+      return reactiveMongoTemplate.getCollection(GridFsBlobStore.CHUNKS_COLLECTION)
+          .flatMapMany(chunks -> chunks.find(Filters.eq("files_id", fileId))
+              .projection(Projections.include("n", "data"))
+              .sort(Sorts.ascending("n"))
+              .batchSize(CHUNK_BATCH_SIZE))
+          .index()
+          .<byte[]>handle((indexed, sink) -> {
+            Document chunk = indexed.getT2();
+            byte[] data = chunk.get("data", Binary.class).getData();
+            if (chunk.getInteger("n") != indexed.getT1().intValue()) {
+              sink.error(new IllegalStateException("Chunk " + indexed.getT1() + " of GridFS file " + fileId + " is missing"));
+              return;
+            }
+            read.addAndGet(data.length);
+            sink.next(data);
+          })
+          .concatWith(Mono.defer(() -> read.get() == image.getLength() ? Mono.empty()
+              : Mono.error(new IllegalStateException("GridFS file " + fileId + " is incomplete"))));
+    });
+  }
+}
@@ -1,6 +1,7 @@
 package com.tp.tradexcelsior.service.impl;
 
 import com.tp.tradexcelsior.dto.request.ReferenceRequestDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
 import com.tp.tradexcelsior.dto.response.ReferenceResponseDto;
 import com.tp.tradexcelsior.entity.Reference;
 import com.tp.tradexcelsior.exception.custom.BookAlreadyExistException;
@@ -8,6 +9,7 @@ import com.tp.tradexcelsior.exception.custom.ReferenceAlreadyExistException;
 import com.tp.tradexcelsior.exception.custom.ReferenceNotFoundException;
 import com.tp.tradexcelsior.repo.ReferenceRepository;
 import com.tp.tradexcelsior.service.IReferenceService;
+import com.tp.tradexcelsior.util.CachedResponse;
 import com.tp.tradexcelsior.util.ResponseWrapper;
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -29,16 +31,22 @@ public class ReferenceService implements IReferenceService {
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
     @Autowired
     private ImageService imageService;
 
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
     public ReferenceService(ReferenceRepository referenceRepository) {
         this.referenceRepository = referenceRepository;
     }
 
     // Get all references
     @Override
-    public ResponseWrapper<List<ReferenceResponseDto>> getAllReferences() {
+    public ResponseWrapper<List<ReferenceResponseDto>> getAllReferences(boolean expandImages) {
         log.info("Fetching all references.");
         List<Reference> references = referenceRepository.findByIsDeletedFalse();
 
@@ -46,10 +54,19 @@ public class ReferenceService implements IReferenceService {
         List<ReferenceResponseDto> referenceResponseDtoList = references.stream()
                 .map(reference -> modelMapper.map(reference, ReferenceResponseDto.class))
                 .toList();
+        if (expandImages) {
+            imageService.expandImages(referenceResponseDtoList, ReferenceResponseDto::getImageId, ReferenceResponseDto::setImage);
+        }
 
         return ResponseWrapper.success(HttpStatus.OK.value(), referenceResponseDtoList, "List of reference.");
     }
 
+    // The plain (non-expanded) reference list, pre-serialized and cached until the next write
+    @Override
+    public CachedResponse getAllReferencesResponse() {
+        return catalogResponseCache.get(CatalogResponseCache.REFERENCES, () -> getAllReferences(false));
+    }
+
     // Get a reference by ID
     @Override
     public ResponseWrapper<ReferenceResponseDto> getReferenceById(String id) {
@@ -84,7 +101,7 @@ public class ReferenceService implements IReferenceService {
             Map<String, String> imageByName = null;
 
             try {
-                imageByName = imageService.uploadImageWithCustomName(image, reference.getName() + "_reference");
+                imageByName = imageService.uploadImageForEntity(image, reference.getName() + "_reference");
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -94,6 +111,7 @@ public class ReferenceService implements IReferenceService {
 
         // Save reference
         Reference savedReference = referenceRepository.save(reference);
+        catalogResponseCache.invalidate(CatalogResponseCache.REFERENCES);
         log.info("Reference added successfully with ID: {}", savedReference.getId());
 
         // Convert Entity to DTO and return
@@ -111,14 +129,16 @@ public class ReferenceService implements IReferenceService {
             .orElseThrow(() -> new ReferenceNotFoundException("Cannot update. Reference with ID " + id + " not found."));
 
         referenceRequestDto.setId(existingReference.getId());
+        String previousImageId = existingReference.getImageId();
 
         existingReference = modelMapper.map(referenceRequestDto, Reference.class);
+        existingReference.setImageId(previousImageId); // The request carries no image id; keep the current one
 
         if(image!=null) {
             Map<String, String> imageByName = null;
 
             try {
-                imageByName = imageService.uploadImageWithCustomName(image, existingReference.getName() + "_reference");
+                imageByName = imageService.uploadImageForEntity(image, existingReference.getName() + "_reference");
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -128,8 +148,14 @@ public class ReferenceService implements IReferenceService {
 
         existingReference.setLastModified(LocalDateTime.now());
         Reference updatedReference = referenceRepository.save(existingReference);
+        catalogResponseCache.invalidate(CatalogResponseCache.REFERENCES);
         log.info("Reference updated successfully with ID: {}", updatedReference.getId());
 
+        // The replaced image loses this reference's hold on it (identical re-uploads reuse the same file)
+        if(image!=null) {
+            imageService.releaseImage(previousImageId);
+        }
+
         ReferenceResponseDto updatedReferenceResponseDto = modelMapper.map(updatedReference, ReferenceResponseDto.class);
         return ResponseWrapper.success(HttpStatus.OK.value(), updatedReferenceResponseDto, "Reference updated.");
     }
@@ -146,8 +172,17 @@ public class ReferenceService implements IReferenceService {
         reference.setDeleted(true);
         reference.setLastModified(LocalDateTime.now());
         referenceRepository.save(reference);
+        catalogResponseCache.invalidate(CatalogResponseCache.REFERENCES);
+        imageService.releaseImage(reference.getImageId());
         log.info("Reference deleted successfully with ID: {}", id);
 
         return ResponseWrapper.success(HttpStatus.OK.value(), "Reference id: " + id, "Reference delete.");
     }
+
+    // References modified after the watermark, deleted ones included
+    @Override
+    public ResponseWrapper<ChangeSetDto<ReferenceResponseDto>> getReferenceChanges(String since, int limit) {
+        ChangeSetDto<ReferenceResponseDto> changes = changeFeedService.getChanges(Reference.class, Reference::getId, ReferenceResponseDto.class, since, limit);
+        return ResponseWrapper.success(HttpStatus.OK.value(), changes, "Reference changes.");
+    }
 }
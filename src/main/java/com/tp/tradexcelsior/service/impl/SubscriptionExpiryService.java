@@ -0,0 +1,225 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import com.tp.tradexcelsior.entity.User;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+// Marks users whose subscription has run out as expired and sends reminders ahead of the end date.
+// Users are visited by subscriptionEndDate, one range of days at a time: the checkpoint records up to
+// which end date each step is done, so a run only reads the days that came due since the last one
+// (a first run catches up on everything in bounded batches). Within a range the (end date, id) of the
+// last batch is checkpointed too, so a crashed run resumes mid-range. A lease in the checkpoint
+// document keeps the nodes from running the job at the same time.
+@Slf4j
+@Service
+public class SubscriptionExpiryService {
+
+  private static final String CHECKPOINTS_COLLECTION = "jobCheckpoints";
+  private static final String JOB_ID = "subscription-expiry";
+
+  private static final String EXPIRE = "expire";
+  private static final String REMIND = "remind";
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private EmailService emailService;
+
+  @Autowired
+  private CustomUserDetailsService userDetailsService;
+
+  @Value("${subscription.expiry.batch-size:500}")
+  private int batchSize;
+
+  @Value("${subscription.expiry.reminder-days:7}")
+  private int reminderDays;
+
+  @Value("${subscription.expiry.lease:PT15M}")
+  private Duration lease;
+
+  @Value("${changes.node-id:${HOSTNAME:local}}")
+  private String nodeId;
+
+  @PostConstruct
+  public void createIndexes() {
+    try {
+      mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class))
+          .createIndex(Indexes.ascending("subscriptionEndDate", "_id"));
+    } catch (Exception e) {
+      log.error("Could not create subscription expiry index: {}", e.getMessage());
+    }
+  }
+
+  public void run() {
+    if (!acquireLease()) {
+      log.info("Subscription expiry is running on another node");
+      return;
+    }
+
+    try {
+      LocalDate today = LocalDate.now();
+      // The end date is the last day of the subscription
+      processRange(EXPIRE, "expiredThrough", null, today.minusDays(1), this::expireBatch);
+      // Past end dates are handled by expiry, not reminded
+      processRange(REMIND, "remindedThrough", today.minusDays(1), today.plusDays(reminderDays), this::remindBatch);
+    } finally {
+      releaseLease();
+    }
+  }
+
+  // Visit the users whose end date lies after the step's checkpoint (or floor) and on or before
+  // 'through', in (end date, id) order
+  private void processRange(String step, String doneField, LocalDate floor, LocalDate through,
+      Consumer<List<User>> handler) {
+    Document checkpoint = checkpoints().find(Filters.eq("_id", JOB_ID)).first();
+    LocalDate doneThrough = parseDate(checkpoint == null ? null : checkpoint.getString(doneField));
+    if (doneThrough != null && !doneThrough.isBefore(through)) {
+      return;
+    }
+
+    LocalDate after = doneThrough;
+    if (floor != null && (after == null || after.isBefore(floor))) {
+      after = floor;
+    }
+
+    // An interrupted run of this step left its position
+    LocalDate cursorDate = null;
+    String cursorId = null;
+    if (checkpoint != null && step.equals(checkpoint.getString("step"))) {
+      cursorDate = parseDate(checkpoint.getString("cursorDate"));
+      cursorId = checkpoint.getString("cursorId");
+    }
+
+    long processed = 0;
+    while (true) {
+      List<Criteria> criteria = new ArrayList<>();
+      Criteria range = Criteria.where("subscriptionEndDate").lte(through);
+      if (after != null) {
+        range.gt(after);
+      }
+      criteria.add(range);
+      if (cursorDate != null) {
+        criteria.add(new Criteria().orOperator(
+            Criteria.where("subscriptionEndDate").gt(cursorDate),
+            Criteria.where("subscriptionEndDate").is(cursorDate).and("_id").gt(cursorId)));
+      }
+      criteria.add(Criteria.where("isDeleted").is(false));
+      criteria.add(Criteria.where("role").ne("ADMIN"));
+      if (EXPIRE.equals(step)) {
+        criteria.add(Criteria.where("subscriptionExpired").ne(true));
+      }
+
+      Query query = new Query(new Criteria().andOperator(criteria))
+          .with(Sort.by(Sort.Direction.ASC, "subscriptionEndDate", "_id"))
+          .limit(batchSize);
+      query.fields().include("email", "firstName", "subscriptionEndDate");
+      List<User> batch = mongoTemplate.find(query, User.class);
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      User last = batch.get(batch.size() - 1);
+      cursorDate = last.getSubscriptionEndDate();
+      cursorId = last.getId();
+
+      // The position only moves once the batch is handled. Both steps are repeatable: expiry sets a
+      // flag, and a reminder queued again for the same end date is dropped by the outbox.
+      handler.accept(batch);
+      saveCursor(step, cursorDate, cursorId);
+      processed += batch.size();
+      renewLease();
+    }
+
+    checkpoints().updateOne(Filters.eq("_id", JOB_ID), Updates.combine(
+        Updates.set(doneField, through.toString()),
+        Updates.unset("step"), Updates.unset("cursorDate"), Updates.unset("cursorId")));
+    log.info("Subscription {} done through {}: {} users", step, through, processed);
+  }
+
+  private void expireBatch(List<User> users) {
+    List<String> userIds = users.stream().map(User::getId).toList();
+    // A renewal since the batch was read moves the end date out of the filter
+    UpdateResult result = mongoTemplate.updateMulti(
+        Query.query(Criteria.where("_id").in(userIds).and("subscriptionEndDate").lt(LocalDate.now())),
+        new Update().set("subscriptionExpired", true).set("lastModified", LocalDateTime.now()),
+        User.class);
+    userDetailsService.evictUsers(userIds);
+    log.info("Marked {} subscriptions expired", result.getModifiedCount());
+  }
+
+  private void remindBatch(List<User> users) {
+    for (User user : users) {
+      emailService.sendSubscriptionReminder(user.getEmail(), user.getFirstName(), user.getSubscriptionEndDate());
+    }
+  }
+
+  private void saveCursor(String step, LocalDate cursorDate, String cursorId) {
+    checkpoints().updateOne(Filters.eq("_id", JOB_ID), Updates.combine(
+        Updates.set("step", step),
+        Updates.set("cursorDate", cursorDate.toString()),
+        Updates.set("cursorId", cursorId)));
+  }
+
+  // Take the lease when it is free or has run out (a crashed node's lease lapses on its own)
+  private boolean acquireLease() {
+    Date now = new Date();
+    try {
+      checkpoints().findOneAndUpdate(
+          Filters.and(Filters.eq("_id", JOB_ID),
+              Filters.or(Filters.exists("lockedUntil", false), Filters.lt("lockedUntil", now))),
+          Updates.combine(
+              Updates.set("lockedUntil", new Date(now.getTime() + lease.toMillis())),
+              Updates.set("lockedBy", nodeId)),
+          new FindOneAndUpdateOptions().upsert(true));
+      return true;
+    } catch (MongoServerException e) {
+      // Held by another node: the upsert collides with the existing document
+      if (e.getCode() == 11000) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private void renewLease() {
+    checkpoints().updateOne(Filters.and(Filters.eq("_id", JOB_ID), Filters.eq("lockedBy", nodeId)),
+        Updates.set("lockedUntil", new Date(System.currentTimeMillis() + lease.toMillis())));
+  }
+
+  private void releaseLease() {
+    checkpoints().updateOne(Filters.and(Filters.eq("_id", JOB_ID), Filters.eq("lockedBy", nodeId)),
+        Updates.unset("lockedUntil"));
+  }
+
+  private LocalDate parseDate(String value) {
+    return value == null ? null : LocalDate.parse(value);
+  }
+
+  private MongoCollection<Document> checkpoints() {
+    return mongoTemplate.getCollection(CHECKPOINTS_COLLECTION);
+  }
+}
@@ -1,6 +1,8 @@
 package com.tp.tradexcelsior.service.impl;
 
 import com.tp.tradexcelsior.dto.request.SuccessStoriesRequestDto;
+import com.tp.tradexcelsior.dto.response.ChangeSetDto;
+import com.tp.tradexcelsior.dto.response.ImageDto;
 import com.tp.tradexcelsior.dto.response.PagedResponse;
 import com.tp.tradexcelsior.dto.response.SuccessStoriesResponseDto;
 import com.tp.tradexcelsior.entity.SuccessStories;
@@ -34,6 +36,9 @@ public class SuccessStoriesService implements ISuccessStoriesService {
   @Autowired
   private ModelMapper modelMapper;
 
+  @Autowired
+  private ChangeFeedService changeFeedService;
+
   @Autowired
   private ImageService imageService;
 
@@ -49,13 +54,17 @@ public class SuccessStoriesService implements ISuccessStoriesService {
     // Map the DTO to the SuccessStories entity
     SuccessStories successStories = modelMapper.map(successStoriesRequestDto, SuccessStories.class);
 
-    // Save the SuccessStories entity
+    // Link the requested image, if any (metadata lookup only)
+    ImageDto image = linkRequestedImage(successStories, successStoriesRequestDto);
+
+    // Save the SuccessStories entity; the linked image takes its reference once the story exists
     SuccessStories savedSuccessStories = successStoriesRepo.save(successStories);
+    retainLinkedImage(image);
 
     // Log the successful save and return the response DTO
     log.info("New success story added successfully for user: {}", savedSuccessStories.getUserName());
-    byte[] imageByName = imageService.getImageByName(savedSuccessStories.getUserName());
     SuccessStoriesResponseDto successStoriesResponseDto = modelMapper.map(successStories, SuccessStoriesResponseDto.class);
+    successStoriesResponseDto.setImage(image);
 
     return ResponseWrapper.success(HttpStatus.CREATED.value(), successStoriesResponseDto, "New success story added.");
   }
@@ -76,7 +85,7 @@ public class SuccessStoriesService implements ISuccessStoriesService {
       Map<String, String> imageByName = null;
 
       try {
-        imageByName = imageService.uploadImageWithCustomName(image,
+        imageByName = imageService.uploadImageForEntity(image,
             successStories.getUserName() + "_success_story");
       } catch (IOException e) {
         throw new RuntimeException(e);
@@ -85,13 +94,18 @@ public class SuccessStoriesService implements ISuccessStoriesService {
       successStories.setImageId(imageByName.get("imageId"));
     }
 
-    // Save the SuccessStories entity
-    SuccessStories savedSuccessStories = successStoriesRepo.save(successStories);
+    // Without an upload the story can still be linked to an existing image
+    ImageDto linkedImage = image == null ? linkRequestedImage(successStories, successStoriesRequestDto) : null;
+
+    // Save the SuccessStories entity; an upload gives its reference back when the story is not saved
+    SuccessStories savedSuccessStories = saveOrReleaseUpload(successStories, image != null);
+    retainLinkedImage(linkedImage);
 
     // Log the successful save and return the response DTO
     log.info("New success story added successfully for user: {}", savedSuccessStories.getUserName());
 
     SuccessStoriesResponseDto successStoriesResponseDto = modelMapper.map(successStories, SuccessStoriesResponseDto.class);
+    successStoriesResponseDto.setImage(linkedImage);
 
     return ResponseWrapper.success(HttpStatus.CREATED.value(), successStoriesResponseDto, "New success story added.");
   }
@@ -106,7 +120,7 @@ public class SuccessStoriesService implements ISuccessStoriesService {
   }
 
   @Override
-  public ResponseWrapper<PagedResponse<SuccessStoriesResponseDto>> getAllSuccessStories(int page, int size) {
+  public ResponseWrapper<PagedResponse<SuccessStoriesResponseDto>> getAllSuccessStories(int page, int size, boolean expandImages) {
     // If the page number is negative, throw an exception
     if (page < 0) {
       throw new IllegalArgumentException("Page number cannot be negative");
@@ -138,6 +152,9 @@ public class SuccessStoriesService implements ISuccessStoriesService {
     List<SuccessStoriesResponseDto> successStoriesResponseDtoList = successStoriesPage.getContent().stream()
         .map(successStory -> modelMapper.map(successStory, SuccessStoriesResponseDto.class))
         .toList();
+    if (expandImages) {
+      imageService.expandImages(successStoriesResponseDtoList, SuccessStoriesResponseDto::getImageId, SuccessStoriesResponseDto::setImage);
+    }
 
     // Log the info
     log.info("Fetched {} success stories, page {} of {}.", successStoriesResponseDtoList.size(), page, totalPages);
@@ -168,11 +185,12 @@ public class SuccessStoriesService implements ISuccessStoriesService {
     existingSuccessStory.setVideoUrl(successStoriesRequestDto.getVideoUrl());
     existingSuccessStory.setTagline(successStoriesRequestDto.getTagline());
 
+    String previousImageId = existingSuccessStory.getImageId();
     if(image!=null) {
       Map<String, String> imageByName = null;
 
       try {
-        imageByName = imageService.uploadImageWithCustomName(image,
+        imageByName = imageService.uploadImageForEntity(image,
             existingSuccessStory.getUserName() + "_success_story");
       } catch (IOException e) {
         throw new RuntimeException(e);
@@ -183,7 +201,12 @@ public class SuccessStoriesService implements ISuccessStoriesService {
 
     // Save the updated success story
     existingSuccessStory.setLastModified(LocalDateTime.now());
-    SuccessStories updatedSuccessStory = successStoriesRepo.save(existingSuccessStory);
+    SuccessStories updatedSuccessStory = saveOrReleaseUpload(existingSuccessStory, image != null);
+
+    // The replaced image loses this story's reference (identical re-uploads reuse the same file)
+    if(image!=null) {
+      imageService.releaseImage(previousImageId);
+    }
 
     // Log the success and return the updated SuccessStoriesDto
     log.info("Success story updated successfully for user: {}", updatedSuccessStory.getUserName());
@@ -193,6 +216,56 @@ public class SuccessStoriesService implements ISuccessStoriesService {
   }
 
 
+  @Override
+  @Transactional
+  public ResponseWrapper<SuccessStoriesResponseDto> linkImage(String userName, String imageId, String imageName) {
+    SuccessStories existingSuccessStory = successStoriesRepo.findByUserNameAndIsDeletedFalse(userName)
+        .orElseThrow(() -> new SuccessStoryNotFoundException("Success story with user name " + userName + " not found."));
+
+    ImageDto image = imageService.resolveImageToLink(imageId, imageName);
+    if (image == null) {
+      throw new IllegalArgumentException("imageId or imageName is required.");
+    }
+
+    String previousImageId = existingSuccessStory.getImageId();
+    existingSuccessStory.setImageId(image.getImageId());
+    existingSuccessStory.setLastModified(LocalDateTime.now());
+    SuccessStories updatedSuccessStory = successStoriesRepo.save(existingSuccessStory);
+    imageService.retainImage(image.getImageId());
+    imageService.releaseImage(previousImageId);
+    log.info("Success story of user {} linked to image {}", userName, image.getImageId());
+
+    SuccessStoriesResponseDto successStoriesResponseDto = modelMapper.map(updatedSuccessStory, SuccessStoriesResponseDto.class);
+    successStoriesResponseDto.setImage(image);
+    return ResponseWrapper.success(HttpStatus.OK.value(), successStoriesResponseDto, "Image linked to success story.");
+  }
+
+  // Point the story at the existing image named in the request (by id or name), or at none. The image
+  // is only looked up; its reference is taken after the story is saved (retainLinkedImage).
+  private ImageDto linkRequestedImage(SuccessStories successStories, SuccessStoriesRequestDto successStoriesRequestDto) {
+    ImageDto image = imageService.resolveImageToLink(successStoriesRequestDto.getImageId(), successStoriesRequestDto.getImageName());
+    successStories.setImageId(image != null ? image.getImageId() : null);
+    return image;
+  }
+
+  private void retainLinkedImage(ImageDto image) {
+    if (image != null) {
+      imageService.retainImage(image.getImageId());
+    }
+  }
+
+  // The reference of a just uploaded image belongs to the story; a story that is not saved gives it back
+  private SuccessStories saveOrReleaseUpload(SuccessStories successStories, boolean uploaded) {
+    try {
+      return successStoriesRepo.save(successStories);
+    } catch (RuntimeException e) {
+      if (uploaded) {
+        imageService.releaseImage(successStories.getImageId());
+      }
+      throw e;
+    }
+  }
+
   @Override
   @Transactional
   public ResponseWrapper<String> deleteSuccessStory(String userName) {
@@ -203,8 +276,16 @@ public class SuccessStoriesService implements ISuccessStoriesService {
     successStories.setDeleted(true);
     successStories.setLastModified(LocalDateTime.now());
     successStoriesRepo.save(successStories);
+    imageService.releaseImage(successStories.getImageId());
     log.info("Success story deleted successfully for user: {}", userName);
 
     return ResponseWrapper.success(HttpStatus.OK.value(),"Success story of: "+ userName, "Success story deleted successfully.");
   }
-}
\ No newline at end of file
+
+  // Success stories modified after the watermark, deleted ones included
+  @Override
+  public ResponseWrapper<ChangeSetDto<SuccessStoriesResponseDto>> getSuccessStoryChanges(String since, int limit) {
+    ChangeSetDto<SuccessStoriesResponseDto> changes = changeFeedService.getChanges(SuccessStories.class, SuccessStories::getId, SuccessStoriesResponseDto.class, since, limit);
+    return ResponseWrapper.success(HttpStatus.OK.value(), changes, "Success story changes.");
+  }
+}
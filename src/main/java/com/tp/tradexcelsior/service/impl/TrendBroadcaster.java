@@ -0,0 +1,318 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp.tradexcelsior.entity.CoreWatchlist;
+import com.tp.tradexcelsior.entity.MarketTrendByMonth;
+import com.tp.tradexcelsior.events.CollectionChangedEvent;
+import com.tp.tradexcelsior.events.TrendChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Pushes current month trend changes to the clients of GET /api/v1/core-watchlist/trends/stream
+// (server-sent events). Publishing never waits on a client: every subscriber has a small queue of its
+// own that a sender thread drains into its connection. A subscriber that falls behind loses its oldest
+// queued changes, nobody else's, and is then sent a "dropped" event with the number lost so it can
+// re-read the list once. Heartbeat comments keep idle connections open through proxies.
+// Trends written on other nodes arrive as CollectionChangedEvents for the core watchlist collection;
+// every entry's last known current month trend is kept, so a change reported both by this node's
+// TrendChangedEvent and by the watcher is sent once, and writes that leave the trend as it was
+// (month rollover, other fields) are not sent at all.
+@Slf4j
+@Service
+public class TrendBroadcaster {
+
+  public static final String TREND_EVENT = "trend";
+  public static final String DROPPED_EVENT = "dropped";
+
+  @Value("${watchlist.trends.stream.buffer-size:64}")
+  private int bufferSize;
+
+  @Value("${watchlist.trends.stream.max-clients:5000}")
+  private int maxClients;
+
+  // Connections are closed after this; EventSource clients reconnect on their own
+  @Value("${watchlist.trends.stream.timeout:PT30M}")
+  private Duration timeout;
+
+  @Value("${watchlist.trends.stream.reconnect-delay:PT3S}")
+  private Duration reconnectDelay;
+
+  @Autowired
+  @Qualifier("trendStreamExecutor")
+  private Executor senders;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  // Core watchlist id -> its current month trend as last sent (or loaded); guarded by itself
+  private final Map<String, TrendChangedEvent> currentTrends = new HashMap<>();
+
+  private String watchlistCollection;
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  // A change serialized once for every subscriber
+  private record Frame(long id, String json) {
+  }
+
+  @PostConstruct
+  public void init() {
+    watchlistCollection = mongoTemplate.getCollectionName(CoreWatchlist.class);
+  }
+
+  // The trends the first changes are compared with
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadCurrentTrends() {
+    try {
+      List<CoreWatchlist> watchlists = mongoTemplate.find(activeWatchlists(), CoreWatchlist.class);
+      synchronized (currentTrends) {
+        watchlists.forEach(watchlist -> {
+          TrendChangedEvent current = currentTrend(watchlist);
+          if (current != null) {
+            currentTrends.put(current.id(), current);
+          }
+        });
+      }
+    } catch (Exception e) {
+      log.error("Could not load current watchlist trends: {}", e.getMessage());
+    }
+  }
+
+  // A new subscription, or null when the client limit is reached
+  public SseEmitter subscribe() {
+    if (subscribers.size() >= maxClients) {
+      return null;
+    }
+
+    SseEmitter emitter = new SseEmitter(timeout.toMillis());
+    Subscriber subscriber = new Subscriber(emitter);
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onError(e -> subscribers.remove(subscriber));
+    emitter.onTimeout(emitter::complete);
+    subscribers.add(subscriber);
+
+    subscriber.requestHeartbeat(); // Sends the response headers right away
+    return emitter;
+  }
+
+  public int getSubscriberCount() {
+    return subscribers.size();
+  }
+
+  // A trend set on this node
+  @EventListener
+  public void onTrendChanged(TrendChangedEvent event) {
+    if (isChange(event)) {
+      broadcast(event);
+    }
+  }
+
+  // A core watchlist written on any node, this one included
+  @EventListener
+  public void onCollectionChanged(CollectionChangedEvent event) {
+    if (!watchlistCollection.equals(event.collection())) {
+      return;
+    }
+
+    try {
+      if (event.isWholeCollection()) {
+        List<CoreWatchlist> watchlists = mongoTemplate.find(activeWatchlists(), CoreWatchlist.class);
+        Set<String> ids = watchlists.stream().map(CoreWatchlist::getId).collect(Collectors.toSet());
+        synchronized (currentTrends) {
+          currentTrends.keySet().retainAll(ids);
+        }
+        watchlists.forEach(this::onWatchlistChanged);
+        return;
+      }
+
+      CoreWatchlist watchlist = event.deleted() ? null
+          : mongoTemplate.findOne(activeWatchlists().addCriteria(Criteria.where("_id").is(event.documentId())),
+              CoreWatchlist.class);
+      if (watchlist == null) {
+        synchronized (currentTrends) {
+          currentTrends.remove(event.documentId());
+        }
+      } else {
+        onWatchlistChanged(watchlist);
+      }
+    } catch (Exception e) {
+      log.warn("Could not read changed watchlist trends: {}", e.getMessage());
+    }
+  }
+
+  private void onWatchlistChanged(CoreWatchlist watchlist) {
+    TrendChangedEvent current = currentTrend(watchlist);
+    if (current != null && isChange(current)) {
+      broadcast(current);
+    }
+  }
+
+  // Records the trend as current; true when subscribers have to be told. A trend that is still empty
+  // in a month not seen before for the entry (month rollover, new entry) is not a change.
+  private boolean isChange(TrendChangedEvent current) {
+    synchronized (currentTrends) {
+      TrendChangedEvent known = currentTrends.put(current.id(), current);
+      if (known == null || !known.monthYear().equals(current.monthYear())) {
+        return !current.trend().isEmpty();
+      }
+      return !Objects.equals(known.trend(), current.trend());
+    }
+  }
+
+  // The list is kept newest month first; its first entry is the current month
+  private TrendChangedEvent currentTrend(CoreWatchlist watchlist) {
+    List<MarketTrendByMonth> trends = watchlist.getMarketTrendByMonthList();
+    if (trends == null || trends.isEmpty()) {
+      return null;
+    }
+    MarketTrendByMonth current = trends.get(0);
+    return new TrendChangedEvent(watchlist.getId(), watchlist.getCompany(), current.getMonthYear(),
+        current.getTrend() != null ? current.getTrend() : "");
+  }
+
+  private Query activeWatchlists() {
+    Query query = new Query(Criteria.where("isDeleted").is(false));
+    query.fields().include("company").slice("marketTrendByMonthList", 1);
+    return query;
+  }
+
+  private void broadcast(TrendChangedEvent event) {
+    if (subscribers.isEmpty()) {
+      return;
+    }
+
+    Frame frame;
+    try {
+      frame = new Frame(sequence.incrementAndGet(), objectMapper.writeValueAsString(event));
+    } catch (JsonProcessingException e) {
+      log.error("Could not serialize trend change for {}: {}", event.company(), e.getMessage());
+      return;
+    }
+    subscribers.forEach(subscriber -> subscriber.offer(frame));
+  }
+
+  public void sendHeartbeats() {
+    subscribers.forEach(Subscriber::requestHeartbeat);
+  }
+
+  @PreDestroy
+  public void closeAll() {
+    subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    subscribers.clear();
+  }
+
+  private final class Subscriber {
+
+    private final SseEmitter emitter;
+
+    // Guarded by this; the lock is never held while writing to the client
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private int dropped;
+    private boolean heartbeatDue;
+    private boolean draining;
+
+    private Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    private void offer(Frame frame) {
+      synchronized (this) {
+        if (queue.size() >= bufferSize) {
+          queue.pollFirst();
+          dropped++;
+        }
+        queue.addLast(frame);
+        if (!startDraining()) {
+          return;
+        }
+      }
+      senders.execute(this::drain);
+    }
+
+    private void requestHeartbeat() {
+      synchronized (this) {
+        heartbeatDue = true;
+        if (!startDraining()) {
+          return;
+        }
+      }
+      senders.execute(this::drain);
+    }
+
+    // Whether the caller has to schedule a drain; at most one runs per subscriber
+    private boolean startDraining() {
+      if (draining) {
+        return false;
+      }
+      draining = true;
+      return true;
+    }
+
+    private void drain() {
+      while (true) {
+        Frame frame;
+        int droppedCount;
+        boolean heartbeat;
+        synchronized (this) {
+          frame = queue.pollFirst();
+          droppedCount = dropped;
+          heartbeat = heartbeatDue && frame == null;
+          dropped = 0;
+          heartbeatDue = false;
+          if (frame == null && droppedCount == 0 && !heartbeat) {
+            draining = false;
+            return;
+          }
+        }
+
+        try {
+          if (droppedCount > 0) {
+            emitter.send(SseEmitter.event().name(DROPPED_EVENT).data(Map.of("count", droppedCount)));
+          }
+          if (frame != null) {
+            emitter.send(SseEmitter.event()
+                .id(Long.toString(frame.id()))
+                .name(TREND_EVENT)
+                .data(frame.json(), MediaType.APPLICATION_JSON));
+          } else if (heartbeat) {
+            emitter.send(SseEmitter.event().reconnectTime(reconnectDelay.toMillis()).comment("heartbeat"));
+          }
+        } catch (IOException | IllegalStateException e) {
+          // Client gone (the container completes the emitter); draining stays set so nothing is queued again
+          subscribers.remove(this);
+          return;
+        }
+      }
+    }
+  }
+}
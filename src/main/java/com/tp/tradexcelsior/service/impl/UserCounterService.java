@@ -0,0 +1,137 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndReplaceOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+import com.tp.tradexcelsior.dto.response.UsersCountWithStatus;
+import com.tp.tradexcelsior.entity.User;
+import com.tp.tradexcelsior.repo.UserRepo;
+import jakarta.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+// Materialized user counts for the admin dashboard: one document, kept current with $inc on every
+// user add, delete and subscription change, so reading the counts is a single _id lookup.
+// "Active" (subscription ending after today) also changes with the date alone, so the document
+// records the day it was computed for and is recounted once per day, by the nightly job or by the
+// first read of a new day, whichever comes first. The recount also corrects any drift.
+@Slf4j
+@Service
+public class UserCounterService {
+
+  private static final String COUNTERS_COLLECTION = "userCounters";
+  private static final String STATUS_ID = "status";
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private UserRepo userRepo;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @PostConstruct
+  public void createIndexes() {
+    // Backs the recount (both count queries filter on isDeleted, the active one on the end date)
+    try {
+      mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class))
+          .createIndex(Indexes.ascending("isDeleted", "subscriptionEndDate"));
+    } catch (Exception e) {
+      log.error("Could not create user count index: {}", e.getMessage());
+    }
+  }
+
+  public void userAdded(LocalDate subscriptionEndDate) {
+    increment(1, isActive(subscriptionEndDate) ? 1 : 0);
+  }
+
+  // One update for a batch of new users
+  public void usersAdded(Collection<LocalDate> subscriptionEndDates) {
+    if (subscriptionEndDates.isEmpty()) {
+      return;
+    }
+    long active = subscriptionEndDates.stream().filter(this::isActive).count();
+    increment(subscriptionEndDates.size(), active);
+  }
+
+  public void userDeleted(LocalDate subscriptionEndDate) {
+    increment(-1, isActive(subscriptionEndDate) ? -1 : 0);
+  }
+
+  public void subscriptionChanged(LocalDate previousEndDate, LocalDate newEndDate) {
+    int activeDelta = (isActive(newEndDate) ? 1 : 0) - (isActive(previousEndDate) ? 1 : 0);
+    if (activeDelta != 0) {
+      increment(0, activeDelta);
+    }
+  }
+
+  public UsersCountWithStatus getCounts() {
+    Document counters = counters().find(Filters.eq("_id", STATUS_ID)).first();
+    if (counters == null || !LocalDate.now().toString().equals(counters.getString("asOf"))) {
+      counters = reconcile();
+    }
+
+    long total = counters.get("total", Number.class).longValue();
+    long active = counters.get("active", Number.class).longValue();
+    return new UsersCountWithStatus(total, active, total - active);
+  }
+
+  // Recount from the user collection and replace the counters. An $inc landing between the counts
+  // and the replace can be counted twice or not at all; the next recount settles it.
+  public Document reconcile() {
+    // Recounts don't overlap; ReentrantLock because the counts are queries
+    lock.lock();
+    try {
+      return recount();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Document recount() {
+    LocalDate today = LocalDate.now();
+    long total = userRepo.countByIsDeletedFalse();
+    long active = userRepo.countBySubscriptionEndDateAfterAndIsDeletedFalse(today);
+
+    Document counters = new Document("_id", STATUS_ID)
+        .append("total", total)
+        .append("active", active)
+        .append("asOf", today.toString())
+        .append("reconciledAt", new Date());
+    Document previous = counters().findOneAndReplace(Filters.eq("_id", STATUS_ID), counters,
+        new FindOneAndReplaceOptions().upsert(true));
+
+    if (previous != null && today.toString().equals(previous.getString("asOf"))
+        && (previous.get("total", Number.class).longValue() != total
+        || previous.get("active", Number.class).longValue() != active)) {
+      log.warn("User counters drifted: total {} -> {}, active {} -> {}",
+          previous.get("total"), total, previous.get("active"), active);
+    }
+    log.info("User counters recounted for {}: {} total, {} active", today, total, active);
+    return counters;
+  }
+
+  // Without a counters document (before the first recount) there is nothing to adjust
+  private void increment(long total, long active) {
+    counters().updateOne(Filters.eq("_id", STATUS_ID),
+        Updates.combine(Updates.inc("total", total), Updates.inc("active", active)));
+  }
+
+  // Same rule as the recount: active while the subscription ends after today
+  private boolean isActive(LocalDate subscriptionEndDate) {
+    return subscriptionEndDate != null && subscriptionEndDate.isAfter(LocalDate.now());
+  }
+
+  private MongoCollection<Document> counters() {
+    return mongoTemplate.getCollection(COUNTERS_COLLECTION);
+  }
+}
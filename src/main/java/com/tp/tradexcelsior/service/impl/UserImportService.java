@@ -0,0 +1,336 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.tp.tradexcelsior.dto.request.AddUserDto;
+import com.tp.tradexcelsior.dto.response.UserImportErrorDto;
+import com.tp.tradexcelsior.dto.response.UserImportReportDto;
+import com.tp.tradexcelsior.entity.User;
+import com.tp.tradexcelsior.util.CsvReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+// Bulk user provisioning from a CSV or JSON stream. Rows are parsed and validated on the request
+// thread while the passwords of the current batch are hashed on a bounded pool; a batch is inserted
+// (unordered, so one bad row does not stop the rest) while the next one is being read and hashed.
+// Uniqueness of email and mobile number is left to the unique indexes (see UserService), and welcome
+// emails go out per batch.
+@Slf4j
+@Service
+public class UserImportService {
+
+  private static final int MAX_REPORTED_ERRORS = 1000;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ModelMapper modelMapper;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private Validator validator;
+
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private EmailService emailService;
+
+  @Autowired
+  private UserCounterService userCounterService;
+
+  @Autowired
+  @Qualifier("passwordHashExecutor")
+  private Executor passwordHashExecutor;
+
+  @Value("${users.import.batch-size:500}")
+  private int batchSize;
+
+  // A user being imported, with its password hash still in progress
+  private record PendingUser(int row, User user, CompletableFuture<String> passwordHash) {
+  }
+
+  public UserImportReportDto importUsers(InputStream inputStream, boolean csv) throws IOException {
+    // Duplicates are only caught by the unique indexes
+    if (!userService.hasUniqueIndexes()) {
+      throw new IllegalStateException("Bulk import needs the unique email and mobile number indexes; resolve duplicate users first.");
+    }
+
+    UserImportReportDto report = new UserImportReportDto(0, 0, 0, new ArrayList<>());
+    List<PendingUser> current = new ArrayList<>();
+    List<PendingUser> previous = null;
+
+    try (RowReader rows = csv ? new CsvRowReader(inputStream) : new JsonRowReader(inputStream)) {
+      while (true) {
+        AddUserDto addUserDto;
+        try {
+          addUserDto = rows.next();
+        } catch (IllegalArgumentException e) {
+          report.setRowsRead(report.getRowsRead() + 1);
+          fail(report, rows.row(), null, e.getMessage());
+          continue;
+        } catch (JsonProcessingException e) {
+          // Malformed JSON: there is no telling where the next element starts. The rows read so far
+          // are still imported.
+          report.setRowsRead(report.getRowsRead() + 1);
+          fail(report, rows.row(), null, "Invalid JSON, the rest of the file was not read: " + e.getOriginalMessage());
+          break;
+        }
+        if (addUserDto == null) {
+          break;
+        }
+        report.setRowsRead(report.getRowsRead() + 1);
+
+        PendingUser pending = prepare(rows.row(), addUserDto, report);
+        if (pending != null) {
+          current.add(pending);
+        }
+
+        // Insert the previous batch while this one hashes
+        if (current.size() == batchSize) {
+          if (previous != null) {
+            insert(previous, report);
+          }
+          previous = current;
+          current = new ArrayList<>();
+        }
+      }
+    }
+
+    if (previous != null) {
+      insert(previous, report);
+    }
+    if (!current.isEmpty()) {
+      insert(current, report);
+    }
+
+    log.info("User import: {} rows, {} imported, {} failed", report.getRowsRead(), report.getImported(), report.getFailed());
+    return report;
+  }
+
+  // Validate the row and start hashing its password; null (and a reported failure) for invalid rows
+  private PendingUser prepare(int row, AddUserDto addUserDto, UserImportReportDto report) {
+    Set<ConstraintViolation<AddUserDto>> violations = validator.validate(addUserDto);
+    if (!violations.isEmpty()) {
+      fail(report, row, addUserDto.getEmail(), violations.stream()
+          .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+          .sorted()
+          .collect(Collectors.joining(", ")));
+      return null;
+    }
+    if (addUserDto.getPassword() == null) {
+      fail(report, row, addUserDto.getEmail(), "password: Password is required.");
+      return null;
+    }
+
+    // Same subscription dates as a single add
+    LocalDate subscriptionStartDate = LocalDate.now();
+    User user = modelMapper.map(addUserDto, User.class);
+    user.setSubscriptionStartDate(subscriptionStartDate);
+    user.setSubscriptionEndDate(subscriptionStartDate.plusYears(addUserDto.getSubscriptionDuration()).minusDays(1));
+
+    String password = addUserDto.getPassword();
+    return new PendingUser(row, user,
+        CompletableFuture.supplyAsync(() -> passwordEncoder.encode(password), passwordHashExecutor));
+  }
+
+  private void insert(List<PendingUser> batch, UserImportReportDto report) {
+    List<PendingUser> ready = new ArrayList<>();
+    for (PendingUser pending : batch) {
+      try {
+        pending.user().setPassword(pending.passwordHash().join());
+        ready.add(pending);
+      } catch (CompletionException e) {
+        fail(report, pending.row(), pending.user().getEmail(), "Could not hash password.");
+      }
+    }
+    if (ready.isEmpty()) {
+      return;
+    }
+
+    // Failed inserts by position in this bulk; duplicates are reported by the unique indexes
+    Map<Integer, String> failures = new HashMap<>();
+    try {
+      mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class)
+          .insert(ready.stream().map(PendingUser::user).toList())
+          .execute();
+    } catch (BulkOperationException e) {
+      for (BulkWriteError error : e.getErrors()) {
+        failures.put(error.getIndex(), describe(error));
+      }
+    }
+
+    List<String> emails = new ArrayList<>();
+    List<LocalDate> subscriptionEndDates = new ArrayList<>();
+    for (int i = 0; i < ready.size(); i++) {
+      User user = ready.get(i).user();
+      String failure = failures.get(i);
+      if (failure != null) {
+        fail(report, ready.get(i).row(), user.getEmail(), failure);
+      } else {
+        emails.add(user.getEmail());
+        subscriptionEndDates.add(user.getSubscriptionEndDate());
+      }
+    }
+
+    report.setImported(report.getImported() + emails.size());
+    userCounterService.usersAdded(subscriptionEndDates);
+    emailService.sendWelcomeEmails(emails);
+  }
+
+  private String describe(BulkWriteError error) {
+    if (error.getCode() == 11000) {
+      if (error.getMessage().contains(UserService.EMAIL_INDEX)) {
+        return "Email is already in use.";
+      }
+      if (error.getMessage().contains(UserService.MOBILE_NUMBER_INDEX)) {
+        return "Mobile number is already in use.";
+      }
+      return "User already exists.";
+    }
+    return error.getMessage();
+  }
+
+  private void fail(UserImportReportDto report, int row, String email, String error) {
+    report.setFailed(report.getFailed() + 1);
+    if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+      report.getErrors().add(new UserImportErrorDto(row, email, error));
+    }
+  }
+
+  // --- Input formats ---
+
+  private interface RowReader extends AutoCloseable {
+    // Next row, null at the end; IllegalArgumentException for a row that cannot be read
+    AddUserDto next() throws IOException;
+
+    // Number the last row (read or failed) is reported under
+    int row();
+
+    @Override
+    void close() throws IOException;
+  }
+
+  // Header line with AddUserDto field names, then one user per line
+  private class CsvRowReader implements RowReader {
+
+    private final CsvReader reader;
+    private final List<String> header;
+
+    CsvRowReader(InputStream inputStream) throws IOException {
+      reader = new CsvReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+      List<String> columns = reader.readRecord();
+      if (columns == null) {
+        throw new IllegalArgumentException("The CSV file is empty.");
+      }
+      header = columns.stream().map(column -> column.replace("\uFEFF", "").trim()).toList();
+    }
+
+    @Override
+    public AddUserDto next() throws IOException {
+      List<String> fields = reader.readRecord();
+      // Skip blank lines
+      while (fields != null && fields.stream().allMatch(String::isBlank)) {
+        fields = reader.readRecord();
+      }
+      if (fields == null) {
+        return null;
+      }
+      if (fields.size() != header.size()) {
+        throw new IllegalArgumentException("Expected " + header.size() + " columns, found " + fields.size() + ".");
+      }
+
+      Map<String, String> values = new HashMap<>();
+      for (int i = 0; i < header.size(); i++) {
+        values.put(header.get(i), fields.get(i).trim());
+      }
+      return objectMapper.convertValue(values, AddUserDto.class);
+    }
+
+    // The line of the file the row starts on
+    @Override
+    public int row() {
+      return reader.getLineNumber();
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  // A JSON array of AddUserDto objects, read one element at a time
+  private class JsonRowReader implements RowReader {
+
+    private final JsonParser parser;
+
+    private int index;
+
+    JsonRowReader(InputStream inputStream) throws IOException {
+      parser = objectMapper.getFactory().createParser(inputStream);
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new IllegalArgumentException("Expected a JSON array of users.");
+      }
+    }
+
+    @Override
+    public AddUserDto next() throws IOException {
+      index++;
+      JsonToken token = parser.nextToken();
+      if (token == null || token == JsonToken.END_ARRAY) {
+        return null;
+      }
+      // Read the element as a tree first, so a bad element does not leave the parser inside it
+      JsonNode element = objectMapper.readTree(parser);
+      if (!element.isObject()) {
+        throw new IllegalArgumentException("Expected a JSON object.");
+      }
+      return objectMapper.convertValue(element, AddUserDto.class);
+    }
+
+    // Position in the array
+    @Override
+    public int row() {
+      return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+      parser.close();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package com.tp.tradexcelsior.service.impl;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.tp.tradexcelsior.entity.User;
+import com.tp.tradexcelsior.util.SearchKeys;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+// Keeps the normalized search keys of users (see SearchKeys) in step with their names, email and
+// mobile number. Whole-document saves and inserts are covered by the before-convert event; partial
+// updates that touch a searchable field add the keys to their Update with setKeys (or setKey plus
+// updateTokens when the other fields are not at hand). Users saved before the keys existed are filled
+// in once at startup.
+@Slf4j
+@Service
+public class UserSearchKeysService extends AbstractMongoEventListener<User> {
+
+  private static final int BACKFILL_BATCH_SIZE = 500;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  // Trigram tokens make substring search use an index, at the cost of a larger document and index
+  @Value("${users.search.ngrams.enabled:true}")
+  private boolean ngramsEnabled;
+
+  public boolean isNgramsEnabled() {
+    return ngramsEnabled;
+  }
+
+  @PostConstruct
+  public void createIndexes() {
+    try {
+      MongoCollection<Document> users = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class));
+      users.createIndex(Indexes.ascending("firstNameKey"));
+      users.createIndex(Indexes.ascending("lastNameKey"));
+      users.createIndex(Indexes.ascending("emailKey"));
+      // The unique mobileNumber index is partial (non-deleted users), which search does not filter on
+      users.createIndex(Indexes.ascending("mobileNumber", "_id"), new IndexOptions().name("mobileNumber_search"));
+      if (ngramsEnabled) {
+        users.createIndex(Indexes.ascending("searchTokens"));
+      }
+    } catch (Exception e) {
+      log.error("Could not create user search indexes: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public void onBeforeConvert(BeforeConvertEvent<User> event) {
+    applyKeys(event.getSource());
+  }
+
+  public void applyKeys(User user) {
+    user.setFirstNameKey(SearchKeys.normalize(user.getFirstName()));
+    user.setLastNameKey(SearchKeys.normalize(user.getLastName()));
+    user.setEmailKey(SearchKeys.normalize(user.getEmail()));
+    user.setSearchTokens(ngramsEnabled ? tokens(user) : null);
+  }
+
+  // Adds the keys for the user as it will be after the update; the user must carry the new values
+  public void setKeys(Update update, User user) {
+    applyKeys(user);
+    update.set("firstNameKey", user.getFirstNameKey());
+    update.set("lastNameKey", user.getLastNameKey());
+    update.set("emailKey", user.getEmailKey());
+    if (ngramsEnabled) {
+      update.set("searchTokens", user.getSearchTokens());
+    } else {
+      // Written while ngrams were enabled; no longer kept in step with the fields
+      update.unset("searchTokens");
+    }
+  }
+
+  // Key for a single changed field; the tokens, which combine fields, are left to updateTokens (or
+  // dropped when ngrams are disabled)
+  public void setKey(Update update, String field, String value) {
+    switch (field) {
+      case "firstName" -> update.set("firstNameKey", SearchKeys.normalize(value));
+      case "lastName" -> update.set("lastNameKey", SearchKeys.normalize(value));
+      case "email" -> update.set("emailKey", SearchKeys.normalize(value));
+      default -> {
+      }
+    }
+    if (!ngramsEnabled) {
+      update.unset("searchTokens");
+    }
+  }
+
+  // Rebuilds the tokens of a user just updated in place
+  public void updateTokens(User user) {
+    if (!ngramsEnabled) {
+      return;
+    }
+    applyKeys(user);
+    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(user.getId())),
+        new Update().set("searchTokens", user.getSearchTokens()), User.class);
+  }
+
+  // Users written before the keys (or the tokens) were introduced, or still carrying tokens from
+  // when ngrams were enabled
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfill() {
+    try {
+      fillInKeys();
+    } catch (Exception e) {
+      log.error("Could not fill in user search keys: {}", e.getMessage());
+    }
+  }
+
+  private void fillInKeys() {
+    Criteria tokensOutOfStep = Criteria.where("searchTokens").exists(!ngramsEnabled);
+    Query query = Query.query(new Criteria().orOperator(Criteria.where("emailKey").exists(false), tokensOutOfStep));
+    query.fields().include("firstName", "lastName", "email", "mobileNumber");
+
+    int updated = 0;
+    List<User> batch = new ArrayList<>();
+    try (Stream<User> users = mongoTemplate.stream(query, User.class)) {
+      for (User user : (Iterable<User>) users::iterator) {
+        batch.add(user);
+        if (batch.size() == BACKFILL_BATCH_SIZE) {
+          updated += writeKeys(batch);
+          batch.clear();
+        }
+      }
+    }
+    updated += writeKeys(batch);
+
+    if (updated > 0) {
+      log.info("Filled in search keys for {} users", updated);
+    }
+  }
+
+  private int writeKeys(List<User> users) {
+    if (users.isEmpty()) {
+      return 0;
+    }
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class);
+    for (User user : users) {
+      Update update = new Update();
+      setKeys(update, user);
+      bulk.updateOne(Query.query(Criteria.where("_id").is(user.getId())), update);
+    }
+    return bulk.execute().getModifiedCount();
+  }
+
+  private List<String> tokens(User user) {
+    List<String> keys = new ArrayList<>();
+    keys.add(user.getFirstNameKey());
+    keys.add(user.getLastNameKey());
+    keys.add(user.getEmailKey());
+    keys.add(user.getMobileNumber());
+    return SearchKeys.ngrams(keys);
+  }
+}
@@ -1,5 +1,9 @@
 package com.tp.tradexcelsior.service.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import com.tp.tradexcelsior.criteria.UserSearchCriteriaBuilder;
 import com.tp.tradexcelsior.dto.request.AddUserDto;
 import com.tp.tradexcelsior.dto.request.ResetPasswordDto;
@@ -14,20 +18,29 @@ import com.tp.tradexcelsior.exception.custom.ValidationException;
 import com.tp.tradexcelsior.repo.UserRepo;
 import com.tp.tradexcelsior.service.IUserService;
 import com.tp.tradexcelsior.util.ResponseWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -41,6 +54,17 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class UserService implements IUserService {
 
+  // Unique among users that are not deleted, so a deleted user's email or number can be used again
+  public static final String EMAIL_INDEX = "email_active_unique";
+  public static final String MOBILE_NUMBER_INDEX = "mobileNumber_active_unique";
+
+  // Fields a merge patch may set; all are required, so none can be removed
+  private static final Set<String> PATCHABLE_FIELDS = Set.of(
+      "firstName", "lastName", "occupation", "mobileNumber", "email", "password", "licence", "address");
+
+  // Retries of a subscription update that lost a race with another one
+  private static final int SUBSCRIPTION_UPDATE_ATTEMPTS = 3;
+
   @Autowired
   private ModelMapper modelMapper;
 
@@ -56,6 +80,41 @@ public class UserService implements IUserService {
   @Autowired
   private PasswordEncoder passwordEncoder;
 
+  @Autowired
+  private CustomUserDetailsService userDetailsService;
+
+  @Autowired
+  private UserCounterService userCounterService;
+
+  @Autowired
+  private UserSearchKeysService userSearchKeysService;
+
+  @Autowired
+  private Validator validator;
+
+  private volatile boolean uniqueIndexesReady;
+
+  // Creation fails while live duplicates exist; until they are resolved, writes that rely on the
+  // indexes check for duplicates with queries instead, and bulk import is refused
+  @PostConstruct
+  public void createUniqueIndexes() {
+    MongoCollection<Document> users = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class));
+    Document notDeleted = new Document("isDeleted", false);
+    try {
+      users.createIndex(Indexes.ascending("email"),
+          new IndexOptions().name(EMAIL_INDEX).unique(true).partialFilterExpression(notDeleted));
+      users.createIndex(Indexes.ascending("mobileNumber"),
+          new IndexOptions().name(MOBILE_NUMBER_INDEX).unique(true).partialFilterExpression(notDeleted));
+      uniqueIndexesReady = true;
+    } catch (Exception e) {
+      log.error("Could not create unique user indexes: {}", e.getMessage());
+    }
+  }
+
+  public boolean hasUniqueIndexes() {
+    return uniqueIndexesReady;
+  }
+
   @Override
   @Transactional
   public ResponseWrapper<UserResponseDto> addUser(AddUserDto addUserDto) {
@@ -83,22 +142,14 @@ public class UserService implements IUserService {
 
     try {
       User savedUser = userRepo.save(user);
-      // Send email asynchronously and handle success/failure
-      CompletableFuture<Boolean> emailResult = emailService.sendEmail(user.getEmail());
-
-      // You can handle the result here or log if the email failed
-      emailResult.thenAccept(success -> {
-        if (!success) {
-          // Handle email failure (e.g., log, retry, notify admin, etc.)
-          log.error("Failed to send email to user: {}", user.getEmail());
-        }
-
-        if(success){
-          log.info("Sent activation email");
-        }
-      });
+      userCounterService.userAdded(savedUser.getSubscriptionEndDate());
+      // Queue the activation email; the outbox retries it until it is delivered
+      emailService.sendEmail(user.getEmail());
       UserResponseDto responseDto = modelMapper.map(savedUser, UserResponseDto.class);
       return ResponseWrapper.success(HttpStatus.CREATED.value(), responseDto, "New user added.");
+    } catch (DuplicateKeyException ex) {
+      // Added concurrently with the same email or number since the checks above
+      throw duplicateUser(ex);
     } catch (DataIntegrityViolationException ex) {
       log.error("Error saving user: {}", ex.getMessage());
       throw new RuntimeException("User already exists or invalid data", ex);
@@ -205,12 +256,25 @@ public class UserService implements IUserService {
 
     update.set("lastModified", LocalDateTime.now());
 
+    // Search keys follow the names and number as they are after this update
+    if (addUserDto.getFirstName() != null && !addUserDto.getFirstName().isEmpty()) {
+      existingUser.setFirstName(addUserDto.getFirstName());
+    }
+    if (addUserDto.getLastName() != null && !addUserDto.getLastName().isEmpty()) {
+      existingUser.setLastName(addUserDto.getLastName());
+    }
+    if (addUserDto.getMobileNumber() != null && !addUserDto.getMobileNumber().isEmpty()) {
+      existingUser.setMobileNumber(addUserDto.getMobileNumber());
+    }
+    userSearchKeysService.setKeys(update, existingUser);
+
     // Perform the update
     mongoTemplate.updateFirst(
         Query.query(Criteria.where("_id").is(id)),  // Find by the user ID
         update,  // Update object
         User.class  // Entity class
     );
+    userDetailsService.evictUser(id);
 
     // Fetch and return the updated user
     User updatedUser = userRepo.findByIdAndIsDeletedFalse(id).orElseThrow(() -> new UserNotFoundException("User not found with id: " + id));
@@ -219,6 +283,114 @@ public class UserService implements IUserService {
   }
 
 
+  // JSON merge patch (RFC 7396): only the fields present are changed. Applied with one findAndModify
+  // returning the updated user; email and mobile number uniqueness is left to the unique indexes.
+  @Override
+  public ResponseWrapper<UserResponseDto> patchUser(String id, JsonNode patch) {
+    if (patch == null || !patch.isObject()) {
+      throw new ValidationException("The patch must be a JSON object.");
+    }
+
+    Update update = new Update();
+    List<String> errors = new ArrayList<>();
+    Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      String name = field.getKey();
+      JsonNode value = field.getValue();
+
+      if (!PATCHABLE_FIELDS.contains(name)) {
+        errors.add("Field cannot be updated: " + name);
+        continue;
+      }
+      if (value.isNull()) {
+        errors.add("Field cannot be removed: " + name);
+        continue;
+      }
+      if (!value.isTextual()) {
+        errors.add("Field must be a string: " + name);
+        continue;
+      }
+
+      // Same constraints as when the user was added
+      String text = value.asText();
+      Set<ConstraintViolation<AddUserDto>> violations = validator.validateValue(AddUserDto.class, name, text);
+      if (!violations.isEmpty()) {
+        violations.forEach(violation -> errors.add(violation.getMessage()));
+        continue;
+      }
+
+      if ("password".equals(name)) {
+        update.set(name, passwordEncoder.encode(text));
+      } else {
+        update.set(name, text);
+        userSearchKeysService.setKey(update, name, text);
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw new ValidationException(String.join(", ", errors));
+    }
+
+    // Nothing to change
+    if (update.getUpdateObject().isEmpty()) {
+      return getUser(id);
+    }
+
+    if (!uniqueIndexesReady) {
+      checkUnique(id, patch);
+    }
+
+    update.set("lastModified", LocalDateTime.now());
+    Query query = Query.query(Criteria.where("_id").is(id).and("isDeleted").is(false));
+    User updatedUser;
+    try {
+      updatedUser = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), User.class);
+    } catch (DuplicateKeyException ex) {
+      throw duplicateUser(ex);
+    }
+    if (updatedUser == null) {
+      log.error("User not found with id: {}", id);
+      throw new UserNotFoundException("No user with this user id: " + id);
+    }
+
+    userDetailsService.evictUser(id);
+    if (patch.has("firstName") || patch.has("lastName") || patch.has("email") || patch.has("mobileNumber")) {
+      // The tokens combine several fields, so they are rebuilt from the updated user
+      userSearchKeysService.updateTokens(updatedUser);
+    }
+
+    UserResponseDto responseDto = modelMapper.map(updatedUser, UserResponseDto.class);
+    return ResponseWrapper.success(HttpStatus.OK.value(), responseDto, "User updated.");
+  }
+
+  // Pre-write duplicate checks, only while the unique indexes are missing
+  private void checkUnique(String id, JsonNode patch) {
+    if (patch.has("email")) {
+      Optional<User> userWithEmail = userRepo.findByEmailAndIsDeletedFalse(patch.get("email").asText());
+      if (userWithEmail.isPresent() && !userWithEmail.get().getId().equals(id)) {
+        throw new UserAlreadyExistsException("A user with this email already exists");
+      }
+    }
+    if (patch.has("mobileNumber")) {
+      Optional<User> userWithPhoneNumber = userRepo.findByMobileNumberAndIsDeletedFalse(patch.get("mobileNumber").asText());
+      if (userWithPhoneNumber.isPresent() && !userWithPhoneNumber.get().getId().equals(id)) {
+        throw new UserAlreadyExistsException("A user with this phone number already exists");
+      }
+    }
+  }
+
+  // The violated index tells which field is taken
+  private UserAlreadyExistsException duplicateUser(DuplicateKeyException ex) {
+    String message = String.valueOf(ex.getMessage());
+    if (message.contains(EMAIL_INDEX)) {
+      return new UserAlreadyExistsException("A user with this email already exists");
+    }
+    if (message.contains(MOBILE_NUMBER_INDEX)) {
+      return new UserAlreadyExistsException("A user with this phone number already exists");
+    }
+    return new UserAlreadyExistsException("User already exists");
+  }
+
   @Override
   @Transactional
   public ResponseWrapper<String> deleteUser(String id) {
@@ -230,12 +402,14 @@ public class UserService implements IUserService {
     user.setDeleted(true);
     user.setLastModified(LocalDateTime.now());
     userRepo.save(user);
+    userDetailsService.evictUser(id);
+    userCounterService.userDeleted(user.getSubscriptionEndDate());
     return ResponseWrapper.success(HttpStatus.OK.value(), "User id: "+ id, "Deleted successfully.");
   }
 
 
   @Override
-  public ResponseWrapper<PagedResponse<UserResponseDto>> searchUsers(String name, String email, String mobileNumber, int page, int size) {
+  public ResponseWrapper<PagedResponse<UserResponseDto>> searchUsers(String name, String email, String mobileNumber, boolean contains, int page, int size) {
 
     // If the page number is negative, throw an exception
     if (page < 0) {
@@ -249,7 +423,8 @@ public class UserService implements IUserService {
 
     // Build the query using the helper class
     Query query = new Query();
-    query.addCriteria(UserSearchCriteriaBuilder.buildSearchCriteria(name, email, mobileNumber));
+    query.addCriteria(UserSearchCriteriaBuilder.buildSearchCriteria(name, email, mobileNumber, contains,
+        userSearchKeysService.isNgramsEnabled()));
 
     // Calculate the total number of matching records based on search criteria
     long totalItems = mongoTemplate.count(query, User.class); // This counts the documents based on the search query
@@ -297,35 +472,46 @@ public class UserService implements IUserService {
       throw new ValidationException("Subscription duration must be a positive number.");
     }
 
-    // Step 1: Fetch the user from the database by userId
-    User user = userRepo.findByIdAndIsDeletedFalse(userId).orElseThrow(() -> {
-      throw new UserNotFoundException("User with ID " + userId + " not found");
-    });
-
-    // Step 2: Update only the subscription fields
-    LocalDate currentDate = LocalDate.now();
-    user.setSubscriptionDuration(user.getSubscriptionDuration() + extendSubscriptionByYear); // Add years to existing duration
-    user.setSubscriptionStartDate(currentDate);
-    user.setSubscriptionEndDate(currentDate.plusYears(user.getSubscriptionDuration()));
-    user.setLastModified(LocalDateTime.now());
-
-    // Step 3: Save the updated user back to the database
-    User updatedUser = userRepo.save(user);
+    for (int attempt = 1; ; attempt++) {
+      // Step 1: Fetch the user from the database by userId
+      User user = userRepo.findByIdAndIsDeletedFalse(userId).orElseThrow(() -> {
+        throw new UserNotFoundException("User with ID " + userId + " not found");
+      });
 
-    // Return the updated user details in the response format
-    UserResponseDto responseDto = modelMapper.map(updatedUser, UserResponseDto.class);
-    return ResponseWrapper.success(HttpStatus.OK.value(), responseDto, "Subscription updated.");
+      // Step 2: Update only the subscription fields, provided no other update changed the duration since
+      LocalDate previousEndDate = user.getSubscriptionEndDate();
+      LocalDate currentDate = LocalDate.now();
+      int subscriptionDuration = user.getSubscriptionDuration() + extendSubscriptionByYear; // Add years to existing duration
+      Query query = Query.query(Criteria.where("_id").is(userId).and("isDeleted").is(false)
+          .and("subscriptionDuration").is(user.getSubscriptionDuration()));
+      Update update = new Update()
+          .set("subscriptionDuration", subscriptionDuration)
+          .set("subscriptionStartDate", currentDate)
+          .set("subscriptionEndDate", currentDate.plusYears(subscriptionDuration))
+          .set("subscriptionExpired", false)
+          .set("lastModified", LocalDateTime.now());
+
+      // Step 3: Apply it and get the updated user back in the same round trip
+      User updatedUser = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), User.class);
+      if (updatedUser == null) {
+        if (attempt < SUBSCRIPTION_UPDATE_ATTEMPTS) {
+          continue;
+        }
+        throw new IllegalStateException("Subscription of user " + userId + " is being updated concurrently, please retry.");
+      }
+      userDetailsService.evictUser(userId);
+      userCounterService.subscriptionChanged(previousEndDate, updatedUser.getSubscriptionEndDate());
+
+      // Return the updated user details in the response format
+      UserResponseDto responseDto = modelMapper.map(updatedUser, UserResponseDto.class);
+      return ResponseWrapper.success(HttpStatus.OK.value(), responseDto, "Subscription updated.");
+    }
   }
 
   @Override
   public ResponseWrapper<UsersCountWithStatus> getUsersStatusCount() {
-    LocalDate currentDate = LocalDate.now();
-
-    long totalUsers = userRepo.countByIsDeletedFalse();
-    long activeUsers = userRepo.countBySubscriptionEndDateAfterAndIsDeletedFalse(currentDate);
-    long inactiveUsers = totalUsers - activeUsers;
-
-    UsersCountWithStatus usersCountWithStatus= new UsersCountWithStatus(totalUsers,  activeUsers, inactiveUsers);
+    // Maintained counters; no count queries on the read path
+    UsersCountWithStatus usersCountWithStatus = userCounterService.getCounts();
     return ResponseWrapper.success(HttpStatus.OK.value(), usersCountWithStatus, "Users count with status.");
   }
 
@@ -344,6 +530,7 @@ public class UserService implements IUserService {
     user.setPassword(passwordEncoder.encode(setPasswordDto.getPassword()));
     user.setLastModified(LocalDateTime.now());
     User updatedUser = userRepo.save(user); // Save the updated user to DB
+    userDetailsService.evictUser(userId);
 
     UserResponseDto userResponseDto = modelMapper.map(updatedUser, UserResponseDto.class);
 
@@ -369,6 +556,8 @@ public class UserService implements IUserService {
     user.setPassword(passwordEncoder.encode(resetPasswordDto.getNewPassword()));
     user.setLastModified(LocalDateTime.now());
     User updatedUser = userRepo.save(user); // Save the updated user to DB
+    userDetailsService.evictUser(userId);
+    emailService.sendPasswordReset(updatedUser.getEmail(), updatedUser.getFirstName());
 
     UserResponseDto userResponseDto = modelMapper.map(updatedUser, UserResponseDto.class);
 
@@ -0,0 +1,130 @@
+package com.tp.tradexcelsior.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+// Reports where virtual threads get pinned to their carrier thread, which on Java 21 happens when one
+// blocks (on I/O, a lock, a sleep) inside a synchronized block or a native frame. Pinned threads stop
+// sharing carriers, so a hot pinning site quietly caps throughput at the carrier count. Listens to the
+// JDK's own jdk.VirtualThreadPinned flight-recorder event in-process: the first pin at each site is
+// logged with its stack, after that sites are only counted and summarized periodically.
+@Slf4j
+@Service
+public class VirtualThreadPinningMonitor {
+
+  private static final int LOGGED_FRAMES = 12;
+
+  @Value("${diagnostics.virtual-threads.pinning.enabled:false}")
+  private boolean enabled;
+
+  // Pins shorter than this are not reported
+  @Value("${diagnostics.virtual-threads.pinning.threshold:PT0.02S}")
+  private Duration threshold;
+
+  @Value("${diagnostics.virtual-threads.pinning.summary-interval:PT5M}")
+  private Duration summaryInterval;
+
+  // Pin count and total pinned time per site (the first frame outside the JDK)
+  private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> pinnedNanos = new ConcurrentHashMap<>();
+  private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+
+  private volatile RecordingStream stream;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      stream = new RecordingStream();
+      stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+      stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+      stream.setReuse(true);
+      stream.startAsync();
+
+      Thread.ofPlatform().daemon().name("pinning-summary").start(this::summarizePeriodically);
+      log.info("Reporting virtual thread pinning over {}", threshold);
+    } catch (Exception e) {
+      log.warn("Could not start virtual thread pinning diagnostics: {}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    RecordingStream running = stream;
+    if (running != null) {
+      stream = null;
+      running.close();
+      logSummary();
+    }
+  }
+
+  private void onPinned(RecordedEvent event) {
+    RecordedStackTrace stackTrace = event.getStackTrace();
+    List<RecordedFrame> frames = stackTrace != null ? stackTrace.getFrames() : List.of();
+    String site = site(frames);
+
+    counts.computeIfAbsent(site, key -> new LongAdder()).increment();
+    pinnedNanos.computeIfAbsent(site, key -> new LongAdder()).add(event.getDuration().toNanos());
+
+    if (reportedSites.add(site)) {
+      StringBuilder stack = new StringBuilder();
+      frames.stream().limit(LOGGED_FRAMES).forEach(frame -> stack.append("\n    at ").append(describe(frame)));
+      log.warn("Virtual thread pinned for {} ms at {}{}", event.getDuration().toMillis(), site, stack);
+    }
+  }
+
+  // First application or library frame, skipping the JDK's own locking and I/O frames
+  private String site(List<RecordedFrame> frames) {
+    for (RecordedFrame frame : frames) {
+      String type = frame.getMethod().getType().getName();
+      if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+        return describe(frame);
+      }
+    }
+    return frames.isEmpty() ? "unknown" : describe(frames.get(0));
+  }
+
+  private String describe(RecordedFrame frame) {
+    return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+  }
+
+  private void summarizePeriodically() {
+    while (stream != null) {
+      try {
+        Thread.sleep(summaryInterval.toMillis());
+      } catch (InterruptedException e) {
+        return;
+      }
+      logSummary();
+    }
+  }
+
+  private void logSummary() {
+    if (counts.isEmpty()) {
+      return;
+    }
+    StringBuilder summary = new StringBuilder("Virtual thread pinning since startup:");
+    counts.entrySet().stream()
+        .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+        .forEach(entry -> summary.append("\n  ").append(entry.getValue().sum()).append(" pins, ")
+            .append(Duration.ofNanos(pinnedNanos.get(entry.getKey()).sum()).toMillis()).append(" ms at ")
+            .append(entry.getKey()));
+    log.info(summary.toString());
+  }
+}
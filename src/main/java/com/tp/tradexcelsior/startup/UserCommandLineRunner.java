@@ -3,6 +3,7 @@ package com.tp.tradexcelsior.startup;
 import com.tp.tradexcelsior.dto.request.AddUserDto;
 import com.tp.tradexcelsior.entity.User;
 import com.tp.tradexcelsior.repo.UserRepo;
+import com.tp.tradexcelsior.service.impl.UserCounterService;
 import com.tp.tradexcelsior.service.impl.UserService;
 import java.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +24,9 @@ public class UserCommandLineRunner implements CommandLineRunner {
   @Autowired
   private PasswordEncoder passwordEncoder;
 
+  @Autowired
+  private UserCounterService userCounterService;
+
   @Override
   public void run(String... args) throws Exception {
     // Check if the admin user already exists
@@ -63,6 +67,7 @@ public class UserCommandLineRunner implements CommandLineRunner {
 
       // Save the admin to the database
       userRepo.save(admin);
+      userCounterService.userAdded(admin.getSubscriptionEndDate());
       System.out.println("Admin user added to the database.");
     } catch (DataAccessException ex) {
       // This will catch any database-related exceptions (e.g., connection issues)
@@ -0,0 +1,29 @@
+package com.tp.tradexcelsior.storage;
+
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.bson.types.ObjectId;
+import org.springframework.core.io.Resource;
+
+// Where the bytes of a stored file live. Files are always catalogued in fs.files (name, length,
+// metadata); metadata.storage names the store holding their content, keyed by the same id.
+public interface BlobStore {
+
+  // Name recorded in metadata.storage and used for image.storage.backend
+  String getName();
+
+  // Whether content is read from local disk, so copying it to the local disk cache gains nothing
+  boolean isLocal();
+
+  // Store the content under the given id and return its length in bytes
+  long write(ObjectId id, InputStream content) throws IOException;
+
+  InputStream openStream(ObjectId id) throws IOException;
+
+  // Content as a Resource for HTTP responses (full body and byte ranges)
+  Resource getResource(ImageDto image);
+
+  void delete(List<ObjectId> ids);
+}
@@ -0,0 +1,106 @@
+package com.tp.tradexcelsior.storage;
+
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+// Content as plain files on local (or mounted) disk. Files are spread over two directory levels by
+// the last four hex digits of the id (the ObjectId counter), e.g. <root>/3f/a2/<id>, and written
+// through a temporary file so readers never see a partial file. Served as FileSystemResource, so
+// full responses go out through the connector's sendfile (FileChannel.transferTo) support.
+// Single-node unless the directory is shared by every node (see ImageStorage).
+@Slf4j
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+  public static final String NAME = "filesystem";
+
+  // Bytes moved per FileChannel.transferFrom call
+  private static final long TRANSFER_SIZE = 1024 * 1024;
+
+  @Value("${image.storage.filesystem.dir:${user.home}/tradexcelsior-images}")
+  private String directory;
+
+  private Path root;
+
+  @PostConstruct
+  public void init() throws IOException {
+    root = Path.of(directory);
+    Files.createDirectories(root);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isLocal() {
+    return true;
+  }
+
+  @Override
+  public long write(ObjectId id, InputStream content) throws IOException {
+    Path target = pathOf(id);
+    Files.createDirectories(target.getParent());
+    Path tempFile = Files.createTempFile(target.getParent(), id.toHexString(), ".tmp");
+
+    try {
+      long length = 0;
+      try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+          ReadableByteChannel source = Channels.newChannel(content)) {
+        long transferred;
+        while ((transferred = channel.transferFrom(source, length, TRANSFER_SIZE)) > 0) {
+          length += transferred;
+        }
+        channel.force(false);
+      }
+      Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+      return length;
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempFile);
+      throw e;
+    }
+  }
+
+  @Override
+  public InputStream openStream(ObjectId id) throws IOException {
+    return Files.newInputStream(pathOf(id));
+  }
+
+  @Override
+  public Resource getResource(ImageDto image) {
+    return new FileSystemResource(pathOf(new ObjectId(image.getImageId())));
+  }
+
+  @Override
+  public void delete(List<ObjectId> ids) {
+    for (ObjectId id : ids) {
+      try {
+        Files.deleteIfExists(pathOf(id));
+      } catch (IOException e) {
+        log.warn("Could not delete stored image file {}: {}", id, e.getMessage());
+      }
+    }
+  }
+
+  private Path pathOf(ObjectId id) {
+    String hex = id.toHexString();
+    return root.resolve(hex.substring(20, 22)).resolve(hex.substring(22, 24)).resolve(hex);
+  }
+}
@@ -0,0 +1,107 @@
+package com.tp.tradexcelsior.storage;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.util.GridFsImageResource;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+// Content in fs.chunks, in the standard GridFS layout, so the GridFS driver reads it back
+// (ranged reads skip straight to the right chunk). The fs.files entry is written by ImageStorage.
+@Slf4j
+@Component
+public class GridFsBlobStore implements BlobStore {
+
+  public static final String NAME = "gridfs";
+
+  public static final String CHUNKS_COLLECTION = "fs.chunks";
+
+  // Chunks sent to MongoDB per insert (about 4MB)
+  private static final int CHUNKS_PER_INSERT = 16;
+
+  @Autowired
+  private GridFSBucket gridFSBucket;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @PostConstruct
+  public void createIndexes() {
+    // The indexes the GridFS driver creates on its first upload; files and chunks are written here
+    // and by ImageStorage instead, so name lookups would otherwise scan fs.files
+    try {
+      mongoTemplate.getCollection(ImageStorage.FILES_COLLECTION).createIndex(Indexes.ascending("filename", "uploadDate"));
+      mongoTemplate.getCollection(CHUNKS_COLLECTION)
+          .createIndex(Indexes.ascending("files_id", "n"), new IndexOptions().unique(true));
+    } catch (Exception e) {
+      log.error("Could not create GridFS indexes: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isLocal() {
+    return false;
+  }
+
+  @Override
+  public long write(ObjectId id, InputStream content) throws IOException {
+    MongoCollection<Document> chunks = mongoTemplate.getCollection(CHUNKS_COLLECTION);
+    List<Document> pending = new ArrayList<>();
+    long length = 0;
+    int n = 0;
+
+    try {
+      byte[] data;
+      while ((data = content.readNBytes(ImageStorage.CHUNK_SIZE)).length > 0) {
+        pending.add(new Document("files_id", id).append("n", n++).append("data", new Binary(data)));
+        length += data.length;
+        if (pending.size() == CHUNKS_PER_INSERT) {
+          chunks.insertMany(pending);
+          pending.clear();
+        }
+      }
+      if (!pending.isEmpty()) {
+        chunks.insertMany(pending);
+      }
+    } catch (IOException | RuntimeException e) {
+      chunks.deleteMany(Filters.eq("files_id", id));
+      throw e;
+    }
+    return length;
+  }
+
+  @Override
+  public InputStream openStream(ObjectId id) {
+    return gridFSBucket.openDownloadStream(id);
+  }
+
+  @Override
+  public Resource getResource(ImageDto image) {
+    return new GridFsImageResource(mongoTemplate.getCollection(CHUNKS_COLLECTION), image);
+  }
+
+  @Override
+  public void delete(List<ObjectId> ids) {
+    mongoTemplate.getCollection(CHUNKS_COLLECTION).deleteMany(Filters.in("files_id", ids));
+  }
+}
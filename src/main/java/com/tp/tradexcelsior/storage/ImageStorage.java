@@ -0,0 +1,151 @@
+package com.tp.tradexcelsior.storage;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+// Single entry point for image bytes. Every file has its fs.files entry (the catalog all image
+// queries run against); its content lives in the blob store named by metadata.storage. New files
+// go to the store configured with image.storage.backend.
+@Component
+public class ImageStorage {
+
+  public static final String FILES_COLLECTION = "fs.files";
+
+  // GridFS default chunk size; recorded on every entry so GridFS-stored content can be read back
+  public static final int CHUNK_SIZE = 255 * 1024;
+
+  // Stamped on every fs.files write that changes what nodes cache about a file (its names or its
+  // descriptor), so polling nodes can pick up exactly those files
+  public static final String MODIFIED_AT = "metadata.modifiedAt";
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private List<BlobStore> blobStores;
+
+  @Value("${image.storage.backend:" + GridFsBlobStore.NAME + "}")
+  private String backend;
+
+  // Cross-node change propagation is on when the application runs on several nodes
+  @Value("${changes.enabled:true}")
+  private boolean changesEnabled;
+
+  // The filesystem directory is the same storage on every node (a shared mount)
+  @Value("${image.storage.filesystem.shared:false}")
+  private boolean filesystemShared;
+
+  private final Map<String, BlobStore> blobStoresByName = new HashMap<>();
+
+  @PostConstruct
+  public void init() {
+    blobStores.forEach(blobStore -> blobStoresByName.put(blobStore.getName(), blobStore));
+    if (!blobStoresByName.containsKey(backend)) {
+      throw new IllegalStateException("Unknown image storage backend: " + backend);
+    }
+    if (!isReadableByAllNodes(backend)) {
+      throw new IllegalStateException("The filesystem image storage backend is single-node: set changes.enabled=false, "
+          + "or image.storage.filesystem.shared=true when its directory is shared by all nodes");
+    }
+  }
+
+  // Files written to one node's disk would be missing on all the others
+  public boolean isReadableByAllNodes(String name) {
+    return !FileSystemBlobStore.NAME.equals(name) || !changesEnabled || filesystemShared;
+  }
+
+  // Name of the store new files are written to
+  public String getBackend() {
+    return backend;
+  }
+
+  // Entries written before storage backends existed carry no name and are in GridFS
+  public BlobStore getBlobStore(String name) {
+    BlobStore blobStore = blobStoresByName.get(name == null ? GridFsBlobStore.NAME : name);
+    if (blobStore == null) {
+      throw new IllegalArgumentException("Unknown image storage backend: " + name);
+    }
+    return blobStore;
+  }
+
+  // Write the content to the configured store, then catalog it; returns the new file id
+  public ObjectId store(String filename, InputStream content, Document metadata) throws IOException {
+    BlobStore blobStore = getBlobStore(backend);
+    ObjectId id = new ObjectId();
+    long length = blobStore.write(id, content);
+
+    Document file = new Document("_id", id)
+        .append("length", length)
+        .append("chunkSize", CHUNK_SIZE)
+        .append("uploadDate", new Date())
+        .append("filename", filename)
+        .append("metadata", new Document(metadata).append("storage", blobStore.getName()));
+    try {
+      files().insertOne(file);
+    } catch (RuntimeException e) {
+      blobStore.delete(List.of(id));
+      throw e;
+    }
+    return id;
+  }
+
+  // Content of a resolved image, read with what its descriptor already knows
+  public InputStream openStream(ImageDto image) throws IOException {
+    return getResource(image).getInputStream();
+  }
+
+  public InputStream openStream(ObjectId id, String storage) throws IOException {
+    return getBlobStore(storage).openStream(id);
+  }
+
+  public Resource getResource(ImageDto image) {
+    return getBlobStore(image.getStorage()).getResource(image);
+  }
+
+  public boolean isLocal(ImageDto image) {
+    return getBlobStore(image.getStorage()).isLocal();
+  }
+
+  // Remove the catalog entries first (so no reader finds an entry without content), then the content.
+  // Returns the number of entries removed.
+  public long delete(List<ObjectId> ids) {
+    if (ids.isEmpty()) {
+      return 0;
+    }
+
+    Map<String, List<ObjectId>> idsByStore = new HashMap<>();
+    files().find(Filters.in("_id", ids))
+        .projection(Projections.include("metadata.storage"))
+        .forEach(file -> {
+          Document metadata = file.get("metadata", Document.class);
+          String storage = metadata != null ? metadata.getString("storage") : null;
+          idsByStore.computeIfAbsent(getBlobStore(storage).getName(), name -> new ArrayList<>())
+              .add(file.getObjectId("_id"));
+        });
+
+    long deleted = files().deleteMany(Filters.in("_id", ids)).getDeletedCount();
+    idsByStore.forEach((name, storeIds) -> getBlobStore(name).delete(storeIds));
+    return deleted;
+  }
+
+  private MongoCollection<Document> files() {
+    return mongoTemplate.getCollection(FILES_COLLECTION);
+  }
+}
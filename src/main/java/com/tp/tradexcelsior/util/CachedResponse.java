@@ -0,0 +1,5 @@
+package com.tp.tradexcelsior.util;
+
+// A list response serialized once: the JSON bytes as the endpoint writes them and their strong ETag
+public record CachedResponse(byte[] body, String eTag) {
+}
@@ -0,0 +1,158 @@
+package com.tp.tradexcelsior.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Minimal streaming CSV reader (RFC 4180): comma separated, fields optionally enclosed in double
+// quotes, "" inside quotes for a quote; quoted fields may contain commas and line breaks. A quote
+// inside an unquoted field is taken literally. A record whose quoted field is never closed is
+// rejected on its own: the lines after its first one are read again as records of their own.
+public class CsvReader implements Closeable {
+
+  private static final int NONE = -2;
+
+  private final BufferedReader reader;
+
+  // Line the next character is on, and the line the last record started on (1-based)
+  private int line = 1;
+  private int recordLine;
+
+  // Text of the current record as read, kept to read it again after an unclosed quote
+  private final StringBuilder raw = new StringBuilder();
+
+  // Input to read before the reader: the lines following the start of a rejected record
+  private String replay;
+  private int replayIndex;
+
+  private int pushedBack = NONE;
+
+  public CsvReader(Reader reader) {
+    this.reader = new BufferedReader(reader);
+  }
+
+  // Next record's fields, or null at the end of the input. IllegalArgumentException for a record
+  // with an unclosed quote; reading can continue with the next record.
+  public List<String> readRecord() throws IOException {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    boolean fieldStart = true;
+    boolean empty = true;
+    recordLine = line;
+    raw.setLength(0);
+
+    int c;
+    while ((c = read()) != -1) {
+      empty = false;
+      if (quoted) {
+        if (c == '"') {
+          int next = read();
+          if (next == '"') {
+            field.append('"');
+          } else {
+            quoted = false;
+            unread(next);
+          }
+        } else {
+          field.append((char) c);
+          if (isLineBreak(c) && lineBreak(c)) {
+            field.append('\n');
+          }
+        }
+      } else if (c == '"' && fieldStart) {
+        quoted = true;
+        fieldStart = false;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+        fieldStart = true;
+      } else if (isLineBreak(c)) {
+        lineBreak(c);
+        fields.add(field.toString());
+        return fields;
+      } else {
+        field.append((char) c);
+        fieldStart = false;
+      }
+    }
+
+    if (quoted) {
+      replayAfterFirstLine();
+      throw new IllegalArgumentException("Quoted field is not closed.");
+    }
+    if (empty) {
+      return null;
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  // Line of the file the last record (returned or rejected) starts on
+  public int getLineNumber() {
+    return recordLine;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  private int read() throws IOException {
+    int c;
+    if (pushedBack != NONE) {
+      c = pushedBack;
+      pushedBack = NONE;
+    } else if (replay != null && replayIndex < replay.length()) {
+      c = replay.charAt(replayIndex++);
+    } else {
+      replay = null;
+      c = reader.read();
+    }
+    if (c != -1) {
+      raw.append((char) c);
+    }
+    return c;
+  }
+
+  private void unread(int c) {
+    if (c != -1) {
+      raw.setLength(raw.length() - 1);
+    }
+    pushedBack = c;
+  }
+
+  private boolean isLineBreak(int c) {
+    return c == '\n' || c == '\r';
+  }
+
+  // \n, \r\n and a lone \r each end one line; true when the \n of a \r\n was consumed as well
+  private boolean lineBreak(int c) throws IOException {
+    line++;
+    if (c == '\r') {
+      int next = read();
+      if (next == '\n') {
+        return true;
+      }
+      unread(next);
+    }
+    return false;
+  }
+
+  private void replayAfterFirstLine() {
+    int lineEnd = 0;
+    while (lineEnd < raw.length() && !isLineBreak(raw.charAt(lineEnd))) {
+      lineEnd++;
+    }
+    if (lineEnd < raw.length() && raw.charAt(lineEnd) == '\r' && lineEnd + 1 < raw.length()
+        && raw.charAt(lineEnd + 1) == '\n') {
+      lineEnd++;
+    }
+    replay = lineEnd < raw.length() ? raw.substring(lineEnd + 1) : null;
+    replayIndex = 0;
+    line = recordLine + 1;
+  }
+}
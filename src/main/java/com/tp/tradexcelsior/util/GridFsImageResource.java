@@ -0,0 +1,156 @@
+package com.tp.tradexcelsior.util;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import java.io.IOException;
+import java.io.InputStream;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.core.io.AbstractResource;
+
+// Resource view of a GridFS file. The chunks are read straight from fs.chunks with the id, length
+// and chunk size of the descriptor, so serving it costs no second fs.files lookup. Every call to
+// getInputStream() opens a fresh stream, so Spring can serve single and multipart byte ranges from
+// it (skipping to a range re-queries from its starting chunk instead of reading the file from the
+// beginning).
+public class GridFsImageResource extends AbstractResource {
+
+  // Number of 255KB chunks fetched per round trip; keeps a short range request from pulling
+  // a whole cursor batch of chunks it will never send
+  private static final int CHUNK_BATCH_SIZE = 4;
+
+  private final MongoCollection<Document> chunks;
+  private final ImageDto image;
+
+  public GridFsImageResource(MongoCollection<Document> chunks, ImageDto image) {
+    this.chunks = chunks;
+    this.image = image;
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new ChunkInputStream();
+  }
+
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  @Override
+  public long contentLength() {
+    return image.getLength();
+  }
+
+  @Override
+  public long lastModified() {
+    return image.getUploadDate().toEpochMilli();
+  }
+
+  @Override
+  public String getFilename() {
+    return image.getFilename();
+  }
+
+  @Override
+  public String getDescription() {
+    return "GridFS file [" + image.getImageId() + "]";
+  }
+
+  private final class ChunkInputStream extends InputStream {
+
+    private final ObjectId fileId = new ObjectId(image.getImageId());
+    private final int chunkSize = image.getChunkSize();
+    private final long length = image.getLength();
+
+    // Position in the file, and the chunk holding it (null until read, or after a skip past it)
+    private long position;
+    private MongoCursor<Document> cursor;
+    private byte[] chunk;
+    private long chunkStart;
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+      if (count == 0) {
+        return 0;
+      }
+      if (position >= length) {
+        return -1;
+      }
+      if (chunk == null || position >= chunkStart + chunk.length) {
+        nextChunk();
+      }
+
+      int chunkOffset = (int) (position - chunkStart);
+      int read = Math.min(count, chunk.length - chunkOffset);
+      System.arraycopy(chunk, chunkOffset, buffer, offset, read);
+      position += read;
+      return read;
+    }
+
+    @Override
+    public long skip(long count) {
+      if (count <= 0) {
+        return 0;
+      }
+      long skipped = Math.min(count, length - position);
+      position += skipped;
+      // Past the current chunk: the next read queries again from the chunk the position is in
+      if (chunk == null || position >= chunkStart + chunk.length) {
+        closeCursor();
+        chunk = null;
+      }
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return chunk == null ? 0 : (int) Math.max(0, chunkStart + chunk.length - position);
+    }
+
+    @Override
+    public void close() {
+      closeCursor();
+    }
+
+    private void nextChunk() throws IOException {
+      int expected = (int) (position / chunkSize);
+      if (cursor == null) {
+        cursor = chunks.find(Filters.and(Filters.eq("files_id", fileId), Filters.gte("n", expected)))
+            .projection(Projections.include("n", "data"))
+            .sort(Sorts.ascending("n"))
+            .batchSize(CHUNK_BATCH_SIZE)
+            .cursor();
+      }
+      if (!cursor.hasNext()) {
+        throw new IOException("Chunk " + expected + " of GridFS file " + fileId + " is missing");
+      }
+
+      Document next = cursor.next();
+      byte[] data = next.get("data", Binary.class).getData();
+      if (next.getInteger("n") != expected || position >= (long) expected * chunkSize + data.length) {
+        throw new IOException("Chunk " + expected + " of GridFS file " + fileId + " is missing");
+      }
+      chunk = data;
+      chunkStart = (long) expected * chunkSize;
+    }
+
+    private void closeCursor() {
+      if (cursor != null) {
+        cursor.close();
+        cursor = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.tp.tradexcelsior.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Identifies image formats by their leading "magic" bytes instead of the file name
+public class ImageTypeDetector {
+
+  // Bytes needed to recognise every supported format
+  public static final int HEADER_LENGTH = 12;
+
+  private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+  private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+  private static final byte[] GIF87A = "GIF87a".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] GIF89A = "GIF89a".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] BMP = "BM".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TIFF_LITTLE_ENDIAN = {'I', 'I', 42, 0};
+  private static final byte[] TIFF_BIG_ENDIAN = {'M', 'M', 0, 42};
+  private static final byte[] RIFF = "RIFF".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] WEBP = "WEBP".getBytes(StandardCharsets.US_ASCII);
+
+  private ImageTypeDetector() {
+  }
+
+  // MIME type of the image whose first bytes are given, or null when it is not a supported image
+  public static String detect(byte[] header, int length) {
+    if (startsWith(header, length, 0, JPEG)) {
+      return "image/jpeg";
+    }
+    if (startsWith(header, length, 0, PNG)) {
+      return "image/png";
+    }
+    if (startsWith(header, length, 0, GIF87A) || startsWith(header, length, 0, GIF89A)) {
+      return "image/gif";
+    }
+    if (startsWith(header, length, 0, TIFF_LITTLE_ENDIAN) || startsWith(header, length, 0, TIFF_BIG_ENDIAN)) {
+      return "image/tiff";
+    }
+    if (startsWith(header, length, 0, RIFF) && startsWith(header, length, 8, WEBP)) {
+      return "image/webp";
+    }
+    if (startsWith(header, length, 0, BMP)) {
+      return "image/bmp";
+    }
+    return null;
+  }
+
+  private static boolean startsWith(byte[] header, int length, int offset, byte[] signature) {
+    return length >= offset + signature.length
+        && Arrays.equals(header, offset, offset + signature.length, signature, 0, signature.length);
+  }
+}
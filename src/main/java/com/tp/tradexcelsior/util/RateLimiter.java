@@ -0,0 +1,54 @@
+package com.tp.tradexcelsior.util;
+
+// Token bucket: permits refill continuously at the given rate up to one second's worth, and acquire
+// blocks until enough are available. Shared by all threads sending through the same provider. No
+// more than the bucket holds can be taken at once, so a burst never exceeds one second's worth.
+public class RateLimiter {
+
+  private final double permitsPerSecond;
+  private final double capacity;
+
+  private double available;
+  private long lastRefillNanos;
+
+  public RateLimiter(double permitsPerSecond) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgumentException("Rate must be positive");
+    }
+    this.permitsPerSecond = permitsPerSecond;
+    this.capacity = Math.max(1, permitsPerSecond);
+    this.available = capacity;
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  // Largest number of permits a single acquire may ask for
+  public int getMaxPermits() {
+    return (int) capacity;
+  }
+
+  public void acquire(int permits) throws InterruptedException {
+    if (permits < 1 || permits > capacity) {
+      throw new IllegalArgumentException("Permits must be between 1 and " + getMaxPermits());
+    }
+    long waitNanos;
+    synchronized (this) {
+      refill();
+      if (available < permits) {
+        waitNanos = (long) ((permits - available) / permitsPerSecond * 1_000_000_000L);
+      } else {
+        waitNanos = 0;
+      }
+      // Reserved now; threads arriving while this one sleeps wait behind it
+      available -= permits;
+    }
+    if (waitNanos > 0) {
+      Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+    }
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    available = Math.min(capacity, available + (now - lastRefillNanos) / 1_000_000_000.0 * permitsPerSecond);
+    lastRefillNanos = now;
+  }
+}
@@ -0,0 +1,80 @@
+package com.tp.tradexcelsior.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Helpers for the normalized search keys stored next to searchable fields. A key is the value
+// trimmed, lowercased and stripped of accents, so a case-insensitive prefix search becomes an index
+// range scan on the key, and trigrams of the keys allow substring search through a multikey index.
+public class SearchKeys {
+
+  public static final int NGRAM_LENGTH = 3;
+
+  private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  // Characters with a meaning in a MongoDB (PCRE) regular expression
+  private static final String REGEX_SPECIAL = "\\^$.|?*+()[]{}-/";
+
+  public static String normalize(String value) {
+    if (value == null) {
+      return null;
+    }
+    String decomposed = Normalizer.normalize(value.trim(), Normalizer.Form.NFD);
+    String plain = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+    return WHITESPACE.matcher(plain).replaceAll(" ").toLowerCase(Locale.ROOT);
+  }
+
+  // Smallest string greater than every string starting with the prefix, or null when there is none
+  // (prefix made of U+FFFF only). Together with gte(prefix) this is the prefix as an index range.
+  public static String prefixUpperBound(String prefix) {
+    StringBuilder bound = new StringBuilder(prefix);
+    while (bound.length() > 0) {
+      int last = bound.length() - 1;
+      char next = (char) (bound.charAt(last) + 1);
+      if (next != Character.MIN_VALUE) {
+        bound.setCharAt(last, next);
+        return bound.toString();
+      }
+      bound.setLength(last);
+    }
+    return null;
+  }
+
+  // Distinct trigrams of every key; a key shorter than a trigram is kept whole
+  public static List<String> ngrams(Collection<String> keys) {
+    Set<String> ngrams = new LinkedHashSet<>();
+    for (String key : keys) {
+      if (key == null || key.isEmpty()) {
+        continue;
+      }
+      if (key.length() < NGRAM_LENGTH) {
+        ngrams.add(key);
+        continue;
+      }
+      for (int i = 0; i + NGRAM_LENGTH <= key.length(); i++) {
+        ngrams.add(key.substring(i, i + NGRAM_LENGTH));
+      }
+    }
+    return new ArrayList<>(ngrams);
+  }
+
+  // The value as a literal inside a regular expression
+  public static String escapeRegex(String value) {
+    StringBuilder escaped = new StringBuilder(value.length() + 8);
+    for (char c : value.toCharArray()) {
+      if (REGEX_SPECIAL.indexOf(c) >= 0) {
+        escaped.append('\\');
+      }
+      escaped.append(c);
+    }
+    return escaped.toString();
+  }
+}
@@ -0,0 +1,131 @@
+package com.tp.tradexcelsior.util;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// A template compiled once into literal fragments and typed placeholder slots, rendered by appending
+// them to a caller-supplied buffer. Placeholders are {{name}} or {{name:type}}:
+//   text (default)  the value as a string, HTML-escaped in HTML templates
+//   date            a LocalDate (or other date) written like 19 October 2026
+//   url             the value URL-encoded, for query parameters
+//   raw             the value as is
+public class TextTemplate {
+
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("d MMMM yyyy", Locale.ENGLISH);
+
+  private enum Type { TEXT, DATE, URL, RAW }
+
+  // Either a literal (name == null) or a placeholder
+  private record Fragment(String literal, String name, Type type) {
+  }
+
+  private final List<Fragment> fragments;
+  private final boolean html;
+  private final int literalLength;
+
+  private TextTemplate(List<Fragment> fragments, boolean html) {
+    this.fragments = fragments;
+    this.html = html;
+    this.literalLength = fragments.stream().mapToInt(fragment -> fragment.literal() != null ? fragment.literal().length() : 0).sum();
+  }
+
+  public static TextTemplate compile(String source, boolean html) {
+    List<Fragment> fragments = new ArrayList<>();
+    int position = 0;
+    while (position < source.length()) {
+      int open = source.indexOf("{{", position);
+      if (open < 0) {
+        break;
+      }
+      int close = source.indexOf("}}", open + 2);
+      if (close < 0) {
+        throw new IllegalArgumentException("Unclosed placeholder at offset " + open);
+      }
+      if (open > position) {
+        fragments.add(new Fragment(source.substring(position, open), null, null));
+      }
+      fragments.add(placeholder(source.substring(open + 2, close).trim(), open));
+      position = close + 2;
+    }
+    if (position < source.length()) {
+      fragments.add(new Fragment(source.substring(position), null, null));
+    }
+    return new TextTemplate(List.copyOf(fragments), html);
+  }
+
+  private static Fragment placeholder(String spec, int offset) {
+    int colon = spec.indexOf(':');
+    String name = colon < 0 ? spec : spec.substring(0, colon).trim();
+    String type = colon < 0 ? "text" : spec.substring(colon + 1).trim();
+    if (name.isEmpty()) {
+      throw new IllegalArgumentException("Empty placeholder at offset " + offset);
+    }
+    try {
+      return new Fragment(null, name, Type.valueOf(type.toUpperCase(Locale.ROOT)));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown placeholder type '" + type + "' at offset " + offset);
+    }
+  }
+
+  // Names of the placeholders, in order of first use
+  public Set<String> getPlaceholders() {
+    Set<String> names = new LinkedHashSet<>();
+    fragments.stream().filter(fragment -> fragment.name() != null).forEach(fragment -> names.add(fragment.name()));
+    return names;
+  }
+
+  // Literal text only; a hint for sizing the buffer
+  public int getLiteralLength() {
+    return literalLength;
+  }
+
+  public void render(Map<String, ?> values, StringBuilder out) {
+    for (Fragment fragment : fragments) {
+      if (fragment.name() == null) {
+        out.append(fragment.literal());
+        continue;
+      }
+      Object value = values.get(fragment.name());
+      if (value == null) {
+        throw new IllegalArgumentException("No value for placeholder: " + fragment.name());
+      }
+      switch (fragment.type()) {
+        case TEXT -> appendText(String.valueOf(value), out);
+        case DATE -> {
+          if (!(value instanceof TemporalAccessor date)) {
+            throw new IllegalArgumentException("Placeholder " + fragment.name() + " needs a date, got " + value.getClass().getSimpleName());
+          }
+          DATE_FORMAT.formatTo(date, out);
+        }
+        case URL -> out.append(URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8));
+        case RAW -> out.append(value);
+      }
+    }
+  }
+
+  private void appendText(String value, StringBuilder out) {
+    if (!html) {
+      out.append(value);
+      return;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '<' -> out.append("&lt;");
+        case '>' -> out.append("&gt;");
+        case '&' -> out.append("&amp;");
+        case '"' -> out.append("&quot;");
+        case '\'' -> out.append("&#39;");
+        default -> out.append(c);
+      }
+    }
+  }
+}
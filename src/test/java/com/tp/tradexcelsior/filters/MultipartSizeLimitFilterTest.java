@@ -0,0 +1,55 @@
+package com.tp.tradexcelsior.filters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+class MultipartSizeLimitFilterTest {
+
+  private MultipartSizeLimitFilter filter;
+
+  @BeforeEach
+  void setUp() {
+    filter = new MultipartSizeLimitFilter();
+    ReflectionTestUtils.setField(filter, "maxRequestSize", DataSize.ofMegabytes(10));
+    ReflectionTestUtils.setField(filter, "maxBatchRequestSize", DataSize.ofMegabytes(200));
+  }
+
+  @Test
+  void singleUploadIsHeldToTheGlobalLimit() throws Exception {
+    MockHttpServletResponse response = send("POST", "/images", DataSize.ofMegabytes(11).toBytes());
+
+    assertThat(response.getStatus()).isEqualTo(413);
+  }
+
+  @Test
+  void batchUploadMayUseTheLargerLimit() throws Exception {
+    assertThat(send("POST", "/images/batch", DataSize.ofMegabytes(150).toBytes()).getStatus()).isEqualTo(200);
+    assertThat(send("POST", "/images/batch", DataSize.ofMegabytes(201).toBytes()).getStatus()).isEqualTo(413);
+  }
+
+  @Test
+  void multipartWithoutLengthIsRefused() throws Exception {
+    assertThat(send("PUT", "/api/v1/book/1", -1).getStatus()).isEqualTo(411);
+  }
+
+  private MockHttpServletResponse send(String method, String path, long contentLength) throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest(method, path) {
+      @Override
+      public long getContentLengthLong() {
+        return contentLength;
+      }
+    };
+    request.setServletPath(path);
+    request.setContentType("multipart/form-data; boundary=x");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, new MockFilterChain());
+    return response;
+  }
+}
@@ -0,0 +1,58 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.tp.tradexcelsior.entity.OutboxEmail;
+import com.tp.tradexcelsior.util.RateLimiter;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class EmailOutboxServiceTest {
+
+  @Test
+  void eachSendIsNoLargerThanTheRateLimitAllows() {
+    List<OutboxEmail> emails = IntStream.range(0, 5)
+        .mapToObj(i -> new OutboxEmail("id" + i, null, "user" + i + "@example.com", "Hi", "<p>Hi</p>",
+            EmailOutboxService.SENDING, 0, null, "claim", null, null, null, null))
+        .toList();
+    MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    when(mongoTemplate.find(any(Query.class), eq(OutboxEmail.class))).thenReturn(emails, emails);
+    JavaMailSender javaMailSender = mock(JavaMailSender.class);
+    Session session = Session.getInstance(new Properties());
+    when(javaMailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(session));
+
+    EmailOutboxService outbox = new EmailOutboxService();
+    ReflectionTestUtils.setField(outbox, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(outbox, "javaMailSender", javaMailSender);
+    ReflectionTestUtils.setField(outbox, "emailOutboxExecutor", (Executor) Runnable::run);
+    ReflectionTestUtils.setField(outbox, "from", "noreply@example.com");
+    ReflectionTestUtils.setField(outbox, "batchSize", 100);
+    ReflectionTestUtils.setField(outbox, "workers", 1);
+    ReflectionTestUtils.setField(outbox, "claimTimeout", Duration.ofMinutes(5));
+    // Two messages per second: five go out as 2, 2 and 1
+    ReflectionTestUtils.setField(outbox, "rateLimiter", new RateLimiter(2));
+
+    outbox.dispatch();
+
+    ArgumentCaptor<MimeMessage[]> sends = ArgumentCaptor.forClass(MimeMessage[].class);
+    verify(javaMailSender, times(3)).send(sends.capture());
+    assertThat(sends.getAllValues()).extracting(messages -> messages.length).containsExactly(2, 2, 1);
+  }
+}
@@ -0,0 +1,96 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ImageCacheServiceTest {
+
+  private static final String IMAGE_ID = "65f1c0ffee0123456789abcd";
+
+  @TempDir
+  Path dir;
+
+  private ImageCacheService cache;
+  private ImageCacheService second;
+
+  @AfterEach
+  void release() throws Exception {
+    if (cache != null) {
+      cache.releaseDiskCacheDir();
+    }
+    if (second != null) {
+      second.releaseDiskCacheDir();
+    }
+  }
+
+  @Test
+  void refusesDirectoryHoldingOtherFiles() throws Exception {
+    Path unrelated = Files.writeString(dir.resolve("notes.txt"), "keep me");
+
+    cache = start(dir);
+
+    assertThat(unrelated).exists();
+    assertThat(diskCacheDir(cache)).isNull();
+  }
+
+  @Test
+  void removesOnlyCacheEntriesLeftByAnEarlierRun() throws Exception {
+    cache = start(dir);
+    cache.releaseDiskCacheDir();
+
+    Path shard = Files.createDirectories(dir.resolve("cd"));
+    Path entry = Files.writeString(shard.resolve(IMAGE_ID + ".img"), "cached");
+    Path temp = Files.writeString(shard.resolve(IMAGE_ID + "123.tmp"), "partial");
+    Path foreign = Files.writeString(shard.resolve("README"), "not ours");
+
+    cache = start(dir);
+
+    assertThat(entry).doesNotExist();
+    assertThat(temp).doesNotExist();
+    assertThat(foreign).exists();
+    assertThat(diskCacheDir(cache)).isEqualTo(dir);
+  }
+
+  @Test
+  void secondInstanceDoesNotShareTheDirectory() throws Exception {
+    cache = start(dir);
+    second = start(dir);
+
+    assertThat(diskCacheDir(cache)).isEqualTo(dir);
+    assertThat(diskCacheDir(second)).isNull();
+  }
+
+  @Test
+  void disabledDiskTierIsNeverConsulted() throws Exception {
+    Files.writeString(dir.resolve("notes.txt"), "keep me");
+    cache = start(dir);
+
+    ImageDto image = new ImageDto();
+    image.setImageId(IMAGE_ID);
+    image.setLength(10_000_000);
+    cache.copyToDisk(image); // No store is wired; returns before touching it
+
+    assertThat(cache.getCachedImage(image)).isNull();
+  }
+
+  private ImageCacheService start(Path directory) throws Exception {
+    ImageCacheService service = new ImageCacheService();
+    ReflectionTestUtils.setField(service, "memoryMaxBytes", 1024L);
+    ReflectionTestUtils.setField(service, "memoryMaxEntryBytes", 256L);
+    ReflectionTestUtils.setField(service, "diskMaxBytes", 1024L * 1024);
+    ReflectionTestUtils.setField(service, "diskCacheLocation", directory.toString());
+    service.init();
+    return service;
+  }
+
+  private Path diskCacheDir(ImageCacheService service) {
+    return (Path) ReflectionTestUtils.getField(service, "diskCacheDir");
+  }
+}
@@ -0,0 +1,226 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.tp.tradexcelsior.dto.response.ImageCleanupReportDto;
+import com.tp.tradexcelsior.entity.Book;
+import com.tp.tradexcelsior.entity.Reference;
+import com.tp.tradexcelsior.entity.SuccessStories;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ImageCleanupServiceTest {
+
+  private static final Date LAST_YEAR = Date.from(Instant.now().minus(Duration.ofDays(365)));
+
+  private final ObjectId storyImageId = new ObjectId();
+  private final ObjectId strayImageId = new ObjectId();
+
+  private ImageCleanupService cleanupService;
+  private ImageService imageService;
+  private MongoTemplate mongoTemplate;
+  private MongoCollection<Document> files;
+
+  @BeforeEach
+  void setUp() {
+    mongoTemplate = mock(MongoTemplate.class);
+    imageService = mock(ImageService.class);
+    files = collection("fs.files");
+    collection(Book.class, "book");
+    collection(Reference.class, "references");
+    MongoCollection<Document> stories = collection(SuccessStories.class, "successStories");
+    FindIterable<Document> storyImageIds = iterable(List.of());
+    FindIterable<Document> storyNames = iterable(List.of(new Document("userName", "alice")));
+    when(stories.find(any(Bson.class))).thenReturn(storyImageIds, storyNames);
+
+    cleanupService = new ImageCleanupService();
+    ReflectionTestUtils.setField(cleanupService, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(cleanupService, "imageService", imageService);
+    ReflectionTestUtils.setField(cleanupService, "gracePeriod", Duration.ofHours(24));
+    ReflectionTestUtils.setField(cleanupService, "batchSize", 100);
+    ReflectionTestUtils.setField(cleanupService, "maxFilesPerRun", 10_000);
+  }
+
+  @Test
+  void dryRunReportsLeftoversAndCountedFilesNothingLinksTo() {
+    ObjectId leftoverId = new ObjectId();
+    ObjectId leakedId = new ObjectId();
+    scan(List.of(file(leftoverId, "leftover.png", 0), file(leakedId, "leaked.png", 1), file(strayImageId, "stray.png")));
+
+    ImageCleanupReportDto report = cleanupService.cleanupOrphanedImages(true);
+
+    // The file without a count is neither swept nor reported unless uncounted files are included
+    assertThat(report.getOrphanIds()).containsExactly(leftoverId.toHexString());
+    assertThat(report.getCountedUnreferencedIds()).containsExactly(leakedId.toHexString());
+    assertThat(report.getCountedUnreferencedFiles()).isEqualTo(1);
+    assertThat(report.getScannedFiles()).isEqualTo(3);
+  }
+
+  @Test
+  void countedFilesAreNeverSwept() {
+    ReflectionTestUtils.setField(cleanupService, "includeUncounted", true);
+    ObjectId countedId = new ObjectId();
+    FindIterable<Document> scanned = iterable(List.of(file(countedId, "counted.png", 2), file(strayImageId, "stray.png")));
+    FindIterable<Document> claimed = claimEverythingOffered();
+    when(files.find(any(Bson.class))).thenReturn(scanned, claimed);
+
+    ImageCleanupReportDto report = cleanupService.cleanupOrphanedImages(false);
+
+    verify(imageService).deleteImages(List.of(strayImageId));
+    assertThat(report.getCountedUnreferencedFiles()).isEqualTo(1);
+    assertThat(report.getCountedUnreferencedIds()).isNull();
+  }
+
+  @Test
+  void imageNamedAfterALiveSuccessStoryIsKept() {
+    ReflectionTestUtils.setField(cleanupService, "includeUncounted", true);
+    scan(List.of(file(storyImageId, "alice_success_story.png"), file(strayImageId, "stray.png")));
+
+    ImageCleanupReportDto report = cleanupService.cleanupOrphanedImages(true);
+
+    assertThat(report.getOrphanIds()).containsExactly(strayImageId.toHexString());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void orphansAreClaimedBeforeTheyAreDeleted() {
+    FindIterable<Document> claimed = iterable(List.of());
+    when(claimed.into(any())).thenAnswer(invocation -> {
+      Collection<ObjectId> ids = invocation.getArgument(0);
+      ids.add(strayImageId);
+      return ids;
+    });
+    FindIterable<Document> scanned = iterable(List.of(file(strayImageId, "stray.png", 0)));
+    when(files.find(any(Bson.class))).thenReturn(scanned, claimed);
+
+    cleanupService.cleanupOrphanedImages(false);
+
+    ArgumentCaptor<Bson> claim = ArgumentCaptor.forClass(Bson.class);
+    verify(files).updateMany(claim.capture(), any(Bson.class));
+    assertThat(render(claim.getValue())).contains("{\"metadata.refCount\": {\"$not\": {\"$gt\": 0}}}");
+    verify(imageService).deleteImages(List.of(strayImageId));
+  }
+
+  private void scan(List<Document> documents) {
+    FindIterable<Document> scanned = iterable(documents);
+    when(files.find(any(Bson.class))).thenReturn(scanned);
+  }
+
+  private Document file(ObjectId id, String filename) {
+    return new Document("_id", id).append("filename", filename).append("length", 100L).append("uploadDate", LAST_YEAR);
+  }
+
+  private Document file(ObjectId id, String filename, int refCount) {
+    return file(id, filename).append("metadata", new Document("refCount", refCount));
+  }
+
+  // The claim query finds every file the claim update was offered
+  @SuppressWarnings("unchecked")
+  private FindIterable<Document> claimEverythingOffered() {
+    List<ObjectId> offered = new ArrayList<>();
+    when(files.updateMany(any(Bson.class), any(Bson.class))).thenAnswer(invocation -> {
+      BsonDocument claim = invocation.<Bson>getArgument(0)
+          .toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+      claim.getArray("$and").get(0).asDocument().getDocument("_id").getArray("$in")
+          .forEach(id -> offered.add(id.asObjectId().getValue()));
+      return null;
+    });
+    FindIterable<Document> claimed = iterable(List.of());
+    when(claimed.into(any())).thenAnswer(invocation -> {
+      Collection<ObjectId> ids = invocation.getArgument(0);
+      ids.addAll(offered);
+      return ids;
+    });
+    return claimed;
+  }
+
+  private MongoCollection<Document> collection(Class<?> entity, String name) {
+    when(mongoTemplate.getCollectionName(entity)).thenReturn(name);
+    MongoCollection<Document> collection = collection(name);
+    FindIterable<Document> none = iterable(List.of());
+    when(collection.find(any(Bson.class))).thenReturn(none);
+    return collection;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MongoCollection<Document> collection(String name) {
+    MongoCollection<Document> collection = mock(MongoCollection.class);
+    when(mongoTemplate.getCollection(name)).thenReturn(collection);
+    return collection;
+  }
+
+  @SuppressWarnings("unchecked")
+  private FindIterable<Document> iterable(List<Document> documents) {
+    FindIterable<Document> iterable = mock(FindIterable.class, RETURNS_SELF);
+    when(iterable.iterator()).thenAnswer(invocation -> new ListCursor(documents.iterator()));
+    doCallRealMethod().when(iterable).forEach(any());
+    return iterable;
+  }
+
+  private String render(Bson bson) {
+    return bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()).toJson();
+  }
+
+  private record ListCursor(Iterator<Document> documents) implements MongoCursor<Document> {
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean hasNext() {
+      return documents.hasNext();
+    }
+
+    @Override
+    public Document next() {
+      return documents.next();
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+
+    @Override
+    public Document tryNext() {
+      return hasNext() ? next() : null;
+    }
+
+    @Override
+    public ServerCursor getServerCursor() {
+      return null;
+    }
+
+    @Override
+    public ServerAddress getServerAddress() {
+      return null;
+    }
+  }
+}
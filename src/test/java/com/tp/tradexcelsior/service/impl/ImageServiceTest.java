@@ -0,0 +1,247 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSFindIterable;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.events.CollectionChangedEvent;
+import com.tp.tradexcelsior.storage.ImageStorage;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ImageServiceTest {
+
+  private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13};
+
+  private final ObjectId imageId = new ObjectId();
+
+  private ImageService imageService;
+  private ImageStorage imageStorage;
+  private GridFSBucket gridFSBucket;
+  private MongoCollection<Document> files;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    imageStorage = mock(ImageStorage.class);
+    gridFSBucket = mock(GridFSBucket.class);
+    files = mock(MongoCollection.class);
+    MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    when(mongoTemplate.getCollection(ImageStorage.FILES_COLLECTION)).thenReturn(files);
+
+    // No variants stored
+    GridFSFindIterable variants = mock(GridFSFindIterable.class);
+    MongoIterable<ObjectId> variantIds = mock(MongoIterable.class);
+    when(gridFSBucket.find(any(Bson.class))).thenReturn(variants);
+    when(variants.map(any())).thenReturn((MongoIterable) variantIds);
+    when(variantIds.into(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    ImageVariantService imageVariantService = mock(ImageVariantService.class);
+    when(imageVariantService.generateVariants(any(), anyString(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    imageService = new ImageService();
+    ReflectionTestUtils.setField(imageService, "gridFSBucket", gridFSBucket);
+    ReflectionTestUtils.setField(imageService, "imageCacheService", mock(ImageCacheService.class));
+    ReflectionTestUtils.setField(imageService, "imageVariantService", imageVariantService);
+    ReflectionTestUtils.setField(imageService, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(imageService, "imageStorage", imageStorage);
+  }
+
+  @Test
+  void uploadOfStoredContentReusesTheFile() throws Exception {
+    when(files.findOneAndUpdate(any(Bson.class), any(Bson.class))).thenReturn(new Document("_id", imageId));
+
+    Map<String, String> stored = imageService.uploadImageWithCustomName(png("cover.png"), "cover");
+
+    assertThat(stored).containsEntry("imageId", imageId.toHexString()).containsEntry("imageName", "cover.png");
+    verify(imageStorage, never()).store(anyString(), any(InputStream.class), any(Document.class));
+  }
+
+  @Test
+  void concurrentUploadOfTheSameContentReusesTheStoredFile() throws Exception {
+    when(files.findOneAndUpdate(any(Bson.class), any(Bson.class)))
+        .thenReturn(null)
+        .thenReturn(new Document("_id", imageId));
+    when(imageStorage.store(anyString(), any(InputStream.class), any(Document.class))).thenThrow(
+        new MongoWriteException(new WriteError(11000, "E11000 duplicate key", new BsonDocument()),
+            new ServerAddress(), Set.of()));
+
+    Map<String, String> stored = imageService.uploadImageWithCustomName(png("cover.png"), "cover");
+
+    assertThat(stored).containsEntry("imageId", imageId.toHexString());
+  }
+
+  @Test
+  void releasingTheLastReferenceDeletesTheFile() {
+    releaseLeaves(0);
+
+    imageService.releaseImage(imageId.toHexString());
+
+    verify(imageStorage).delete(List.of(imageId));
+  }
+
+  @Test
+  void releasingAReferenceKeepsAFileStillInUse() {
+    releaseLeaves(1);
+
+    imageService.releaseImage(imageId.toHexString());
+
+    verify(imageStorage, never()).delete(anyList());
+  }
+
+  @Test
+  void deletingANameGivenToADuplicateOnlyGivesUpThatName() {
+    storedFile(new Document("refCount", 2).append("aliases", List.of("copy.png")));
+    releaseLeaves(1);
+
+    imageService.deleteImageByName("copy.png");
+
+    String update = render(capturedRelease(1));
+    assertThat(update).contains("\"$pull\": {\"metadata.aliases\": \"copy.png\"}");
+    verify(imageStorage, never()).delete(anyList());
+  }
+
+  @Test
+  void deletingTheSameImageAgainDoesNotReleaseOtherReferences() {
+    storedFile(new Document("refCount", 2));
+    releaseLeaves(1);
+
+    imageService.deleteImageById(imageId.toHexString());
+
+    assertThat(render(capturedRelease(0))).contains("\"metadata.uploadReleased\": {\"$ne\": true}");
+    verify(imageStorage, never()).delete(anyList());
+  }
+
+  @Test
+  void entitiesSharingContentKeepTheirReferencesWhenTheImageIsDeleted() throws Exception {
+    // Book A stores the content, book B uploads the same bytes and reuses the file
+    when(files.findOneAndUpdate(any(Bson.class), any(Bson.class)))
+        .thenReturn(null)
+        .thenReturn(new Document("_id", imageId));
+    when(imageStorage.store(anyString(), any(InputStream.class), any(Document.class))).thenReturn(imageId);
+
+    imageService.uploadImageForEntity(png("a.png"), "a_book");
+    imageService.uploadImageForEntity(png("b.png"), "b_book");
+
+    ArgumentCaptor<Document> metadata = ArgumentCaptor.forClass(Document.class);
+    verify(imageStorage).store(anyString(), any(InputStream.class), metadata.capture());
+    assertThat(metadata.getValue()).containsEntry("refCount", 1).containsEntry("uploadReleased", true);
+    ArgumentCaptor<Bson> reuse = ArgumentCaptor.forClass(Bson.class);
+    verify(files, times(2)).findOneAndUpdate(any(Bson.class), reuse.capture());
+    assertThat(render(reuse.getValue())).contains("\"metadata.entityAliases\": \"b_book.png\"");
+
+    // Deleting the image by B's name or by id leaves both books' references alone
+    storedFile(new Document("refCount", 2).append("uploadReleased", true)
+        .append("aliases", List.of("b_book.png")).append("entityAliases", List.of("b_book.png")));
+
+    imageService.deleteImageByName("b_book.png");
+    imageService.deleteImageById(imageId.toHexString());
+
+    verify(files).updateOne(any(Bson.class), any(Bson.class));
+    ArgumentCaptor<Bson> release = ArgumentCaptor.forClass(Bson.class);
+    verify(files).findOneAndUpdate(release.capture(), any(Bson.class), any(FindOneAndUpdateOptions.class));
+    assertThat(render(release.getValue())).contains("\"metadata.uploadReleased\": {\"$ne\": true}");
+    verify(imageStorage, never()).delete(anyList());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void retainingIsASingleUpdate() {
+    imageService.retainImage(imageId.toHexString());
+
+    ArgumentCaptor<List<Bson>> pipeline = ArgumentCaptor.forClass(List.class);
+    verify(files).updateOne(any(Bson.class), pipeline.capture());
+    assertThat(pipeline.getValue()).hasSize(1);
+    assertThat(render(pipeline.getValue().get(0)))
+        .contains("\"metadata.refCount\": {\"$cond\"")
+        .contains("\"metadata.referencedAt\"");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void changedFileOnlyDropsItsOwnNames() {
+    ObjectId changedId = new ObjectId();
+    Cache<String, ImageDto> byName = (Cache<String, ImageDto>) ReflectionTestUtils.getField(imageService, "imageMetadataByName");
+    byName.put("cover.png", image(imageId));
+    byName.put("logo", image(new ObjectId()));
+    byName.put("old.png", image(changedId));
+    FindIterable<Document> found = mock(FindIterable.class, RETURNS_SELF);
+    when(found.first()).thenReturn(new Document("_id", changedId).append("filename", "new.png")
+        .append("metadata", new Document("aliases", List.of("logo.png"))));
+    when(files.find(any(Bson.class))).thenReturn(found);
+
+    imageService.onFilesChanged(new CollectionChangedEvent(ImageStorage.FILES_COLLECTION, changedId.toHexString(), false));
+
+    assertThat(byName.asMap()).containsOnlyKeys("cover.png");
+  }
+
+  private ImageDto image(ObjectId id) {
+    ImageDto image = new ImageDto();
+    image.setImageId(id.toHexString());
+    return image;
+  }
+
+  private MockMultipartFile png(String name) {
+    return new MockMultipartFile("file", name, "image/png", PNG);
+  }
+
+  private void storedFile(Document metadata) {
+    GridFSFile file = new GridFSFile(new BsonObjectId(imageId), "cover.png", PNG.length, 255 * 1024, new Date(), metadata);
+    GridFSFindIterable found = mock(GridFSFindIterable.class);
+    when(found.first()).thenReturn(file);
+    when(gridFSBucket.find(any(Bson.class))).thenReturn(found);
+  }
+
+  private void releaseLeaves(int refCount) {
+    when(files.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class)))
+        .thenReturn(new Document("_id", imageId).append("metadata", new Document("refCount", refCount)));
+  }
+
+  // The filter (0) or update (1) of the release
+  private Bson capturedRelease(int argument) {
+    ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+    ArgumentCaptor<Bson> update = ArgumentCaptor.forClass(Bson.class);
+    verify(files).findOneAndUpdate(filter.capture(), update.capture(), any(FindOneAndUpdateOptions.class));
+    return argument == 0 ? filter.getValue() : update.getValue();
+  }
+
+  private String render(Bson bson) {
+    return bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()).toJson();
+  }
+}
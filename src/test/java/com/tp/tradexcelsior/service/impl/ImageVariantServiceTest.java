@@ -0,0 +1,114 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.result.UpdateResult;
+import com.tp.tradexcelsior.storage.ImageStorage;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ImageVariantServiceTest {
+
+  private final ObjectId imageId = new ObjectId();
+
+  private ImageVariantService service;
+  private ImageStorage imageStorage;
+  private MongoCollection<Document> files;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    imageStorage = mock(ImageStorage.class);
+    files = mock(MongoCollection.class);
+    MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    when(mongoTemplate.getCollection(ImageStorage.FILES_COLLECTION)).thenReturn(files);
+    when(files.updateOne(any(Bson.class), any(Bson.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+    service = new ImageVariantService();
+    ReflectionTestUtils.setField(service, "imageStorage", imageStorage);
+    ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(service, "maxPixels", 1_000_000L);
+  }
+
+  @Test
+  void storesVariantsNarrowerThanTheOriginal() throws Exception {
+    content(png(400, 200));
+    when(imageStorage.store(anyString(), any(InputStream.class), any(Document.class))).thenReturn(new ObjectId());
+
+    service.generateVariants(imageId, "book.png", "gridfs");
+
+    verify(imageStorage, times(2)).store(anyString(), any(InputStream.class), any(Document.class));
+    assertThat(update()).contains("\"metadata.width\": 400").contains("\"width\": 160").contains("\"width\": 320");
+  }
+
+  @Test
+  void imageOverThePixelBudgetIsMarkedWithoutDecoding() throws Exception {
+    content(png(2000, 1000));
+
+    service.generateVariants(imageId, "huge.png", "gridfs");
+
+    verify(imageStorage, never()).store(anyString(), any(InputStream.class), any(Document.class));
+    assertThat(update()).contains("\"metadata.variants\": []").contains("\"metadata.width\": 2000");
+  }
+
+  @Test
+  void unsupportedFormatIsMarkedProcessed() throws Exception {
+    content("%PDF-1.7".getBytes());
+
+    service.generateVariants(imageId, "doc.pdf", "gridfs");
+
+    assertThat(update()).contains("\"metadata.variants\": []");
+  }
+
+  @Test
+  void storageFailureLeavesTheImageUnmarked() throws Exception {
+    when(imageStorage.openStream(imageId, "gridfs"))
+        .thenThrow(new MongoSocketReadException("connection reset", new ServerAddress()));
+
+    service.generateVariants(imageId, "book.png", "gridfs");
+
+    verify(files, never()).updateOne(any(Bson.class), any(Bson.class));
+    verify(imageStorage).delete(anyList());
+  }
+
+  private void content(byte[] bytes) throws Exception {
+    when(imageStorage.openStream(imageId, "gridfs")).thenReturn(new ByteArrayInputStream(bytes));
+  }
+
+  private byte[] png(int width, int height) throws Exception {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", outputStream);
+    return outputStream.toByteArray();
+  }
+
+  private String update() {
+    ArgumentCaptor<Bson> update = ArgumentCaptor.forClass(Bson.class);
+    verify(files).updateOne(any(Bson.class), update.capture());
+    return update.getValue().toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry())
+        .toJson();
+  }
+}
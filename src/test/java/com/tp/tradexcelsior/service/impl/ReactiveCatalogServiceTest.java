@@ -0,0 +1,109 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.storage.GridFsBlobStore;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ReactiveCatalogServiceTest {
+
+  private final ObjectId fileId = new ObjectId();
+
+  private ReactiveCatalogService catalogService;
+  private ImageCacheService imageCacheService;
+  private MongoCollection<Document> chunks;
+  private List<Document> stored;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    chunks = mock(MongoCollection.class);
+    when(chunks.find(any(Bson.class))).thenAnswer(invocation -> {
+      FindPublisher<Document> found = mock(FindPublisher.class, RETURNS_SELF);
+      doAnswer(subscribe -> {
+        Flux.fromIterable(stored).subscribe((Subscriber<Document>) subscribe.getArgument(0));
+        return null;
+      }).when(found).subscribe(any());
+      return found;
+    });
+    ReactiveMongoTemplate reactiveMongoTemplate = mock(ReactiveMongoTemplate.class);
+    when(reactiveMongoTemplate.getCollection(GridFsBlobStore.CHUNKS_COLLECTION)).thenReturn(Mono.just(chunks));
+    imageCacheService = mock(ImageCacheService.class);
+
+    catalogService = new ReactiveCatalogService();
+    ReflectionTestUtils.setField(catalogService, "reactiveMongoTemplate", reactiveMongoTemplate);
+    ReflectionTestUtils.setField(catalogService, "imageCacheService", imageCacheService);
+  }
+
+  @Test
+  void smallImageIsLoadedIntoMemory() {
+    stored = List.of(chunk(0, "abcd"), chunk(1, "ef"));
+    ImageDto image = image(6);
+    when(imageCacheService.fitsInMemory(image)).thenReturn(true);
+
+    assertThat(content(catalogService.streamContent(image))).isEqualTo("abcdef");
+    verify(imageCacheService).putInMemory(eq(image), eq("abcdef".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void largeImageStreamsChunkByChunk() {
+    stored = List.of(chunk(0, "abcd"), chunk(1, "ef"));
+    ImageDto image = image(6);
+
+    assertThat(catalogService.streamContent(image).collectList().block()).hasSize(2);
+    verify(imageCacheService).copyToDisk(image);
+    verify(imageCacheService, never()).putInMemory(any(), any());
+  }
+
+  @Test
+  void missingChunkFailsTheStream() {
+    stored = List.of(chunk(0, "abcd"), chunk(2, "ef"));
+    ImageDto image = image(6);
+
+    assertThatIllegalStateException().isThrownBy(() -> catalogService.streamContent(image).blockLast());
+  }
+
+  private String content(Flux<DataBuffer> buffers) {
+    DataBuffer joined = DataBufferUtils.join(buffers).block();
+    return joined.toString(StandardCharsets.UTF_8);
+  }
+
+  private ImageDto image(long length) {
+    ImageDto image = new ImageDto();
+    image.setImageId(fileId.toHexString());
+    image.setLength(length);
+    image.setUploadDate(Instant.now());
+    return image;
+  }
+
+  private Document chunk(int n, String data) {
+    return new Document("files_id", fileId).append("n", n).append("data", new Binary(data.getBytes(StandardCharsets.UTF_8)));
+  }
+}
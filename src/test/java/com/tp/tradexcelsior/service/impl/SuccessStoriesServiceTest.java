@@ -0,0 +1,96 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.tp.tradexcelsior.dto.request.SuccessStoriesRequestDto;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import com.tp.tradexcelsior.entity.SuccessStories;
+import com.tp.tradexcelsior.repo.SuccessStoriesRepo;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.modelmapper.ModelMapper;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SuccessStoriesServiceTest {
+
+  private static final String IMAGE_ID = "65f1c0ffee0123456789abcd";
+
+  private SuccessStoriesService successStoriesService;
+  private SuccessStoriesRepo successStoriesRepo;
+  private ImageService imageService;
+
+  @BeforeEach
+  void setUp() {
+    successStoriesRepo = mock(SuccessStoriesRepo.class);
+    imageService = mock(ImageService.class);
+    when(successStoriesRepo.findByUserNameAndIsDeletedFalse(anyString())).thenReturn(Optional.empty());
+
+    successStoriesService = new SuccessStoriesService();
+    ReflectionTestUtils.setField(successStoriesService, "successStoriesRepo", successStoriesRepo);
+    ReflectionTestUtils.setField(successStoriesService, "imageService", imageService);
+    ReflectionTestUtils.setField(successStoriesService, "modelMapper", new ModelMapper());
+  }
+
+  @Test
+  void linkedImageIsRetainedAfterTheStoryIsSaved() {
+    linkable();
+    when(successStoriesRepo.save(any(SuccessStories.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    successStoriesService.addSuccessStories(request());
+
+    InOrder order = inOrder(successStoriesRepo, imageService);
+    order.verify(successStoriesRepo).save(any(SuccessStories.class));
+    order.verify(imageService).retainImage(IMAGE_ID);
+  }
+
+  @Test
+  void failedSaveTakesNoReference() {
+    linkable();
+    when(successStoriesRepo.save(any(SuccessStories.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+    assertThatThrownBy(() -> successStoriesService.addSuccessStories(request()))
+        .isInstanceOf(DataAccessResourceFailureException.class);
+
+    verify(imageService, never()).retainImage(anyString());
+  }
+
+  @Test
+  void failedSaveGivesBackTheUploadedImage() throws Exception {
+    when(imageService.uploadImageForEntity(any(), anyString())).thenReturn(Map.of("imageId", IMAGE_ID));
+    when(successStoriesRepo.save(any(SuccessStories.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+    MockMultipartFile image = new MockMultipartFile("image", "alice.png", "image/png", new byte[] {1});
+    assertThatThrownBy(() -> successStoriesService.addSuccessStoriesWithImage(request(), image))
+        .isInstanceOf(DataAccessResourceFailureException.class);
+
+    verify(imageService).releaseImage(IMAGE_ID);
+  }
+
+  private void linkable() {
+    ImageDto image = new ImageDto();
+    image.setImageId(IMAGE_ID);
+    when(imageService.resolveImageToLink(IMAGE_ID, null)).thenReturn(image);
+  }
+
+  private SuccessStoriesRequestDto request() {
+    SuccessStoriesRequestDto request = new SuccessStoriesRequestDto();
+    request.setUserName("alice");
+    request.setFeedback("Learned to read the charts properly.");
+    request.setVideoUrl("https://example.com/alice");
+    request.setTagline("From zero to trading");
+    request.setImageId(IMAGE_ID);
+    return request;
+  }
+}
@@ -0,0 +1,107 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp.tradexcelsior.entity.CoreWatchlist;
+import com.tp.tradexcelsior.entity.MarketTrendByMonth;
+import com.tp.tradexcelsior.events.CollectionChangedEvent;
+import com.tp.tradexcelsior.events.TrendChangedEvent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TrendBroadcasterTest {
+
+  private static final String COLLECTION = "coreWatchlist";
+  private static final String ID = "65f1c0ffee0123456789abcd";
+
+  private TrendBroadcaster broadcaster;
+  private MongoTemplate mongoTemplate;
+  private ObjectMapper objectMapper;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    mongoTemplate = mock(MongoTemplate.class);
+    when(mongoTemplate.getCollectionName(CoreWatchlist.class)).thenReturn(COLLECTION);
+    objectMapper = mock(ObjectMapper.class);
+    when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+
+    broadcaster = new TrendBroadcaster();
+    ReflectionTestUtils.setField(broadcaster, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(broadcaster, "objectMapper", objectMapper);
+    // Frames are only queued; nothing is written to a client here
+    ReflectionTestUtils.setField(broadcaster, "senders", (Executor) runnable -> { });
+    ReflectionTestUtils.setField(broadcaster, "bufferSize", 64);
+    ReflectionTestUtils.setField(broadcaster, "maxClients", 10);
+    ReflectionTestUtils.setField(broadcaster, "timeout", Duration.ofMinutes(1));
+    ReflectionTestUtils.setField(broadcaster, "reconnectDelay", Duration.ofSeconds(3));
+    broadcaster.init();
+    broadcaster.subscribe();
+  }
+
+  @Test
+  void trendWrittenOnAnotherNodeIsSent() throws Exception {
+    stored(watchlist("Jan 2026", "STRONG"));
+
+    broadcaster.onCollectionChanged(new CollectionChangedEvent(COLLECTION, ID, false));
+
+    verify(objectMapper).writeValueAsString(new TrendChangedEvent(ID, "Acme", "Jan 2026", "STRONG"));
+  }
+
+  @Test
+  void localChangeIsNotSentAgainWhenTheWatcherReportsIt() throws Exception {
+    stored(watchlist("Jan 2026", "WEAK"));
+
+    broadcaster.onTrendChanged(new TrendChangedEvent(ID, "Acme", "Jan 2026", "WEAK"));
+    broadcaster.onCollectionChanged(new CollectionChangedEvent(COLLECTION, ID, false));
+
+    verify(objectMapper, times(1)).writeValueAsString(any());
+  }
+
+  @Test
+  void writesLeavingTheTrendAsItWasAreNotSent() throws Exception {
+    when(mongoTemplate.find(any(Query.class), eq(CoreWatchlist.class)))
+        .thenReturn(List.of(watchlist("Dec 2025", "MEDIUM")));
+    broadcaster.loadCurrentTrends();
+
+    // Month rollover adds an empty current month
+    stored(watchlist("Jan 2026", ""));
+    broadcaster.onCollectionChanged(new CollectionChangedEvent(COLLECTION, ID, false));
+    // Another field of the entry changed
+    broadcaster.onCollectionChanged(new CollectionChangedEvent(COLLECTION, ID, false));
+
+    verify(objectMapper, never()).writeValueAsString(any());
+  }
+
+  @Test
+  void otherCollectionsAreIgnored() {
+    broadcaster.onCollectionChanged(new CollectionChangedEvent("book", ID, false));
+
+    verify(mongoTemplate, never()).findOne(any(Query.class), eq(CoreWatchlist.class));
+  }
+
+  private void stored(CoreWatchlist watchlist) {
+    when(mongoTemplate.findOne(any(Query.class), eq(CoreWatchlist.class))).thenReturn(watchlist);
+  }
+
+  private CoreWatchlist watchlist(String monthYear, String trend) {
+    CoreWatchlist watchlist = new CoreWatchlist();
+    watchlist.setId(ID);
+    watchlist.setCompany("Acme");
+    watchlist.setMarketTrendByMonthList(new ArrayList<>(List.of(new MarketTrendByMonth(monthYear, trend))));
+    return watchlist;
+  }
+}
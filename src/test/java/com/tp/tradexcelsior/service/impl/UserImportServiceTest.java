@@ -0,0 +1,93 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp.tradexcelsior.dto.response.UserImportErrorDto;
+import com.tp.tradexcelsior.dto.response.UserImportReportDto;
+import com.tp.tradexcelsior.entity.User;
+import jakarta.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UserImportServiceTest {
+
+  private static final String HEADER = "firstName,lastName,occupation,mobileNumber,email,password,role,licence,address,subscriptionDuration\n";
+
+  private UserImportService importService;
+  private BulkOperations bulkOperations;
+
+  @BeforeEach
+  void setUp() {
+    MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    bulkOperations = mock(BulkOperations.class, RETURNS_SELF);
+    when(mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class)).thenReturn(bulkOperations);
+    UserService userService = mock(UserService.class);
+    when(userService.hasUniqueIndexes()).thenReturn(true);
+    PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+    when(passwordEncoder.encode(any())).thenReturn("hash");
+
+    importService = new UserImportService();
+    ReflectionTestUtils.setField(importService, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(importService, "modelMapper", new ModelMapper());
+    ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper());
+    ReflectionTestUtils.setField(importService, "validator", mock(Validator.class));
+    ReflectionTestUtils.setField(importService, "passwordEncoder", passwordEncoder);
+    ReflectionTestUtils.setField(importService, "userService", userService);
+    ReflectionTestUtils.setField(importService, "emailService", mock(EmailService.class));
+    ReflectionTestUtils.setField(importService, "userCounterService", mock(UserCounterService.class));
+    ReflectionTestUtils.setField(importService, "passwordHashExecutor", (Executor) Runnable::run);
+    ReflectionTestUtils.setField(importService, "batchSize", 500);
+  }
+
+  @Test
+  void csvErrorsAreReportedUnderTheirFileLine() throws Exception {
+    String csv = HEADER
+        + "Ann,Lee,Dev,9000000001,ann@example.com,secret123,USER,L1,\"1 Main St\nFlat 2\",1\n"
+        + "\n"
+        + "Bob,Roy,Dev,9000000002\n"
+        + "\"Cy,Ng,Dev,9000000003,cy@example.com,secret123,USER,L3,Street,1\n"
+        + "Di,Fox,Dev,9000000004,di@example.com,secret123,USER,L4,Street,1\n";
+
+    UserImportReportDto report = importService.importUsers(stream(csv), true);
+
+    assertThat(report.getRowsRead()).isEqualTo(4);
+    assertThat(report.getImported()).isEqualTo(2);
+    assertThat(report.getErrors()).extracting(UserImportErrorDto::getRow).containsExactly(5, 6);
+  }
+
+  @Test
+  void malformedJsonStillImportsTheRowsBeforeIt() throws Exception {
+    String json = "[{\"firstName\":\"Ann\",\"email\":\"ann@example.com\",\"password\":\"secret123\",\"subscriptionDuration\":1},"
+        + "{\"firstName\": oops}]";
+
+    UserImportReportDto report = importService.importUsers(stream(json), false);
+
+    assertThat(report.getRowsRead()).isEqualTo(2);
+    assertThat(report.getImported()).isEqualTo(1);
+    assertThat(report.getErrors()).singleElement().satisfies(error -> {
+      assertThat(error.getRow()).isEqualTo(2);
+      assertThat(error.getError()).startsWith("Invalid JSON");
+    });
+    verify(bulkOperations).insert(anyList());
+  }
+
+  private ByteArrayInputStream stream(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,56 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tp.tradexcelsior.entity.User;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UserSearchKeysServiceTest {
+
+  @Test
+  void keysIncludeTheTokensWhenNgramsAreEnabled() {
+    Document update = keysFor(true);
+
+    assertThat(update.get("$set", Document.class)).containsEntry("emailKey", "ann@example.com")
+        .containsKey("searchTokens");
+    assertThat(update).doesNotContainKey("$unset");
+  }
+
+  @Test
+  void tokensLeftFromEnabledNgramsAreRemoved() {
+    Document update = keysFor(false);
+
+    assertThat(update.get("$set", Document.class)).doesNotContainKey("searchTokens");
+    assertThat(update.get("$unset", Document.class)).containsKey("searchTokens");
+  }
+
+  @Test
+  void singleKeyUpdateRemovesStaleTokensWhenNgramsAreDisabled() {
+    Update update = new Update();
+
+    service(false).setKey(update, "lastName", "Lée");
+
+    assertThat(update.getUpdateObject().get("$set", Document.class)).containsEntry("lastNameKey", "lee");
+    assertThat(update.getUpdateObject().get("$unset", Document.class)).containsKey("searchTokens");
+  }
+
+  private Document keysFor(boolean ngramsEnabled) {
+    User user = new User();
+    user.setFirstName("Ann");
+    user.setLastName("Lee");
+    user.setEmail("Ann@Example.com");
+    user.setMobileNumber("9000000001");
+    Update update = new Update();
+    service(ngramsEnabled).setKeys(update, user);
+    return update.getUpdateObject();
+  }
+
+  private UserSearchKeysService service(boolean ngramsEnabled) {
+    UserSearchKeysService service = new UserSearchKeysService();
+    ReflectionTestUtils.setField(service, "ngramsEnabled", ngramsEnabled);
+    return service;
+  }
+}
@@ -0,0 +1,73 @@
+package com.tp.tradexcelsior.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp.tradexcelsior.entity.User;
+import com.tp.tradexcelsior.exception.custom.UserAlreadyExistsException;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UserServiceTest {
+
+  private static final String USER_ID = "65f1c0ffee0123456789abcd";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private ValidatorFactory validatorFactory;
+  private UserService userService;
+  private MongoTemplate mongoTemplate;
+
+  @BeforeEach
+  void setUp() {
+    validatorFactory = Validation.buildDefaultValidatorFactory();
+    mongoTemplate = mock(MongoTemplate.class);
+
+    userService = new UserService();
+    ReflectionTestUtils.setField(userService, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(userService, "validator", validatorFactory.getValidator());
+    ReflectionTestUtils.setField(userService, "userSearchKeysService", new UserSearchKeysService());
+    ReflectionTestUtils.setField(userService, "uniqueIndexesReady", true);
+  }
+
+  @AfterEach
+  void closeValidator() {
+    validatorFactory.close();
+  }
+
+  @Test
+  void patchToATakenEmailIsReportedAsAnExistingUser() throws Exception {
+    duplicateKeyOn(UserService.EMAIL_INDEX);
+
+    assertThatThrownBy(() -> userService.patchUser(USER_ID, objectMapper.readTree("{\"email\": \"taken@example.com\"}")))
+        .isInstanceOf(UserAlreadyExistsException.class)
+        .hasMessage("A user with this email already exists");
+  }
+
+  @Test
+  void patchToATakenMobileNumberIsReportedAsAnExistingUser() throws Exception {
+    duplicateKeyOn(UserService.MOBILE_NUMBER_INDEX);
+
+    assertThatThrownBy(() -> userService.patchUser(USER_ID, objectMapper.readTree("{\"mobileNumber\": \"9000000001\"}")))
+        .isInstanceOf(UserAlreadyExistsException.class)
+        .hasMessage("A user with this phone number already exists");
+  }
+
+  private void duplicateKeyOn(String index) {
+    when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(User.class)))
+        .thenThrow(new DuplicateKeyException("E11000 duplicate key error collection: excelsior.users index: " + index));
+  }
+}
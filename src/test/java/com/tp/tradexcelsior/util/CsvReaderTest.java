@@ -0,0 +1,86 @@
+package com.tp.tradexcelsior.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+
+  @Test
+  void readsPlainAndQuotedFields() throws Exception {
+    CsvReader reader = reader("name,email\n\"Doe, Jane\",\"say \"\"hi\"\"\"\n");
+
+    assertThat(reader.readRecord()).containsExactly("name", "email");
+    assertThat(reader.readRecord()).containsExactly("Doe, Jane", "say \"hi\"");
+    assertThat(reader.readRecord()).isNull();
+  }
+
+  @Test
+  void lastRecordNeedsNoLineBreak() throws Exception {
+    CsvReader reader = reader("a,b\r\nc,");
+
+    assertThat(reader.readRecord()).containsExactly("a", "b");
+    assertThat(reader.readRecord()).containsExactly("c", "");
+    assertThat(reader.readRecord()).isNull();
+  }
+
+  @Test
+  void quotedFieldKeepsItsLineBreaks() throws Exception {
+    CsvReader reader = reader("\"first\r\nsecond\",x\n");
+
+    assertThat(reader.readRecord()).containsExactly("first\r\nsecond", "x");
+  }
+
+  @Test
+  void quoteInsideAnUnquotedFieldIsLiteral() throws Exception {
+    CsvReader reader = reader("O\"Brien,x\nnext,y\n");
+
+    assertThat(reader.readRecord()).containsExactly("O\"Brien", "x");
+    assertThat(reader.readRecord()).containsExactly("next", "y");
+  }
+
+  @Test
+  void lineNumbersCountBlankLinesAndMultiLineFields() throws Exception {
+    CsvReader reader = reader("header\n\n\"two\nlines\"\n\r\nlast\n");
+
+    reader.readRecord();
+    assertThat(reader.getLineNumber()).isEqualTo(1);
+    assertThat(reader.readRecord()).containsExactly("");
+    assertThat(reader.getLineNumber()).isEqualTo(2);
+    reader.readRecord();
+    assertThat(reader.getLineNumber()).isEqualTo(3);
+    reader.readRecord();
+    assertThat(reader.getLineNumber()).isEqualTo(5);
+    assertThat(reader.readRecord()).containsExactly("last");
+    assertThat(reader.getLineNumber()).isEqualTo(6);
+  }
+
+  @Test
+  void unclosedQuoteOnlyRejectsItsOwnRecord() throws Exception {
+    CsvReader reader = reader("a,b\n\"broken,b\nc,d\r\ne,f\n");
+
+    assertThat(reader.readRecord()).containsExactly("a", "b");
+    assertThatIllegalArgumentException().isThrownBy(reader::readRecord);
+    assertThat(reader.getLineNumber()).isEqualTo(2);
+    assertThat(reader.readRecord()).containsExactly("c", "d");
+    assertThat(reader.getLineNumber()).isEqualTo(3);
+    assertThat(reader.readRecord()).containsExactly("e", "f");
+    assertThat(reader.getLineNumber()).isEqualTo(4);
+    assertThat(reader.readRecord()).isNull();
+  }
+
+  @Test
+  void unclosedQuoteOnTheLastLineEndsTheInput() throws Exception {
+    CsvReader reader = reader("a\n\"open");
+
+    reader.readRecord();
+    assertThatIllegalArgumentException().isThrownBy(reader::readRecord);
+    assertThat(reader.readRecord()).isNull();
+  }
+
+  private CsvReader reader(String csv) {
+    return new CsvReader(new StringReader(csv));
+  }
+}
@@ -0,0 +1,105 @@
+package com.tp.tradexcelsior.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.tp.tradexcelsior.dto.response.ImageDto;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class GridFsImageResourceTest {
+
+  private static final int CHUNK_SIZE = 4;
+
+  private final ObjectId fileId = new ObjectId();
+
+  private MongoCollection<Document> chunks;
+  private GridFsImageResource resource;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    chunks = mock(MongoCollection.class);
+    // Chunks "abcd", "efgh", "ij"; a query starting at chunk n gets the chunks from n on
+    when(chunks.find(any(Bson.class))).thenAnswer(invocation -> {
+      int from = startChunk(invocation.getArgument(0));
+      List<Document> stored = List.of(chunk(0, "abcd"), chunk(1, "efgh"), chunk(2, "ij"));
+      MongoCursor<Document> cursor = cursor(stored.subList(from, stored.size()).iterator());
+      FindIterable<Document> found = mock(FindIterable.class, RETURNS_SELF);
+      when(found.cursor()).thenReturn(cursor);
+      return found;
+    });
+
+    ImageDto image = new ImageDto();
+    image.setImageId(fileId.toHexString());
+    image.setLength(10);
+    image.setChunkSize(CHUNK_SIZE);
+    image.setUploadDate(Instant.now());
+    resource = new GridFsImageResource(chunks, image);
+  }
+
+  @Test
+  void readsTheWholeFileWithOneQuery() throws Exception {
+    try (InputStream content = resource.getInputStream()) {
+      assertThat(new String(content.readAllBytes())).isEqualTo("abcdefghij");
+    }
+    verify(chunks, times(1)).find(any(Bson.class));
+  }
+
+  @Test
+  void skipToALaterChunkQueriesFromThatChunk() throws Exception {
+    try (InputStream content = resource.getInputStream()) {
+      assertThat(content.skip(9)).isEqualTo(9);
+      assertThat(new String(content.readAllBytes())).isEqualTo("j");
+    }
+    ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+    verify(chunks).find(filter.capture());
+    assertThat(startChunk(filter.getValue())).isEqualTo(2);
+  }
+
+  @Test
+  void skipWithinTheCurrentChunkKeepsReading() throws Exception {
+    try (InputStream content = resource.getInputStream()) {
+      assertThat(content.read()).isEqualTo('a');
+      content.skip(2);
+      assertThat(new String(content.readAllBytes())).isEqualTo("defghij");
+    }
+    verify(chunks, times(1)).find(any(Bson.class));
+  }
+
+  private int startChunk(Bson filter) {
+    BsonDocument query = filter.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    return query.getArray("$and").get(1).asDocument().getDocument("n").getInt32("$gte").getValue();
+  }
+
+  private Document chunk(int n, String data) {
+    return new Document("files_id", fileId).append("n", n).append("data", new Binary(data.getBytes()));
+  }
+
+  @SuppressWarnings("unchecked")
+  private MongoCursor<Document> cursor(Iterator<Document> documents) {
+    MongoCursor<Document> cursor = mock(MongoCursor.class);
+    when(cursor.hasNext()).thenAnswer(invocation -> documents.hasNext());
+    when(cursor.next()).thenAnswer(invocation -> documents.next());
+    return cursor;
+  }
+}
@@ -0,0 +1,49 @@
+package com.tp.tradexcelsior.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class ImageTypeDetectorTest {
+
+  @Test
+  void recognisesEverySupportedFormat() {
+    assertThat(detect(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0})).isEqualTo("image/jpeg");
+    assertThat(detect(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})).isEqualTo("image/png");
+    assertThat(detect(ascii("GIF87a"))).isEqualTo("image/gif");
+    assertThat(detect(ascii("GIF89a"))).isEqualTo("image/gif");
+    assertThat(detect(new byte[] {'I', 'I', 42, 0})).isEqualTo("image/tiff");
+    assertThat(detect(new byte[] {'M', 'M', 0, 42})).isEqualTo("image/tiff");
+    assertThat(detect(ascii("RIFF\0\0\0\0WEBP"))).isEqualTo("image/webp");
+    assertThat(detect(ascii("BM"))).isEqualTo("image/bmp");
+  }
+
+  @Test
+  void otherContentIsNotAnImage() {
+    assertThat(detect(ascii("%PDF-1.7"))).isNull();
+    assertThat(detect(ascii("RIFF\0\0\0\0WAVE"))).isNull();
+    assertThat(detect(new byte[0])).isNull();
+  }
+
+  @Test
+  void onlyTheBytesReadCount() {
+    byte[] header = new byte[ImageTypeDetector.HEADER_LENGTH];
+    byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    System.arraycopy(png, 0, header, 0, png.length);
+
+    assertThat(ImageTypeDetector.detect(header, png.length)).isEqualTo("image/png");
+    // A truncated signature is not enough, whatever else the buffer holds
+    assertThat(ImageTypeDetector.detect(header, 4)).isNull();
+  }
+
+  private String detect(byte[] bytes) {
+    byte[] header = Arrays.copyOf(bytes, Math.max(bytes.length, ImageTypeDetector.HEADER_LENGTH));
+    return ImageTypeDetector.detect(header, bytes.length);
+  }
+
+  private byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
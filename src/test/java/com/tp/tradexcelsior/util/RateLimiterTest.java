@@ -0,0 +1,53 @@
+package com.tp.tradexcelsior.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+  @Test
+  void fullBucketIsAvailableAtOnce() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(20);
+
+    assertThat(millisToAcquire(rateLimiter, 20)).isLessThan(100);
+  }
+
+  @Test
+  void emptyBucketWaitsForTheRefill() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(20);
+    rateLimiter.acquire(20);
+
+    // 10 permits at 20 per second
+    assertThat(millisToAcquire(rateLimiter, 10)).isBetween(400L, 1000L);
+  }
+
+  @Test
+  void noMoreThanTheBucketHoldsCanBeTakenAtOnce() {
+    RateLimiter rateLimiter = new RateLimiter(10);
+
+    assertThat(rateLimiter.getMaxPermits()).isEqualTo(10);
+    assertThatIllegalArgumentException().isThrownBy(() -> rateLimiter.acquire(11));
+    assertThatIllegalArgumentException().isThrownBy(() -> rateLimiter.acquire(0));
+  }
+
+  @Test
+  void slowRateStillAllowsOnePermit() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(0.5);
+
+    assertThat(rateLimiter.getMaxPermits()).isEqualTo(1);
+    assertThat(millisToAcquire(rateLimiter, 1)).isLessThan(100);
+  }
+
+  @Test
+  void rejectsANonPositiveRate() {
+    assertThatIllegalArgumentException().isThrownBy(() -> new RateLimiter(0));
+  }
+
+  private long millisToAcquire(RateLimiter rateLimiter, int permits) throws InterruptedException {
+    long start = System.nanoTime();
+    rateLimiter.acquire(permits);
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+}
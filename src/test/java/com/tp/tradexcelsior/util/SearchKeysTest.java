@@ -0,0 +1,36 @@
+package com.tp.tradexcelsior.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class SearchKeysTest {
+
+  @Test
+  void normalizeTrimsLowercasesAndStripsAccents() {
+    assertThat(SearchKeys.normalize("  Zoë  ÅNGSTRÖM ")).isEqualTo("zoe angstrom");
+    assertThat(SearchKeys.normalize("a\t\n b")).isEqualTo("a b");
+    assertThat(SearchKeys.normalize(null)).isNull();
+  }
+
+  @Test
+  void prefixUpperBoundIsTheNextStringAfterThePrefix() {
+    assertThat(SearchKeys.prefixUpperBound("ab")).isEqualTo("ac");
+    assertThat(SearchKeys.prefixUpperBound("a\uFFFF")).isEqualTo("b");
+    assertThat(SearchKeys.prefixUpperBound("\uFFFF\uFFFF")).isNull();
+  }
+
+  @Test
+  void ngramsAreDistinctTrigramsAndShortKeysStayWhole() {
+    assertThat(SearchKeys.ngrams(Arrays.asList("anna", "an", null, "", "nna")))
+        .containsExactly("ann", "nna", "an");
+  }
+
+  @Test
+  void escapeRegexQuotesEveryMetacharacter() {
+    assertThat(SearchKeys.escapeRegex("a.b*c(d)")).isEqualTo("a\\.b\\*c\\(d\\)");
+    assertThat("x+y@z.com".matches(SearchKeys.escapeRegex("x+y@z.com"))).isTrue();
+    assertThat(SearchKeys.escapeRegex("plain")).isEqualTo("plain");
+  }
+}
@@ -0,0 +1,71 @@
+package com.tp.tradexcelsior.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.time.LocalDate;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class TextTemplateTest {
+
+  @Test
+  void rendersEveryPlaceholderType() {
+    TextTemplate template = TextTemplate.compile(
+        "Hi {{name}}, ends {{ end : date }}. <a href=\"/reset?email={{email:url}}\">{{link:raw}}</a>", true);
+
+    String rendered = render(template, Map.of("name", "Ann <Lee> & 'Co'", "end", LocalDate.of(2026, 10, 19),
+        "email", "a+b@example.com", "link", "<b>Reset</b>"));
+
+    assertThat(rendered).isEqualTo("Hi Ann &lt;Lee&gt; &amp; &#39;Co&#39;, ends 19 October 2026. "
+        + "<a href=\"/reset?email=a%2Bb%40example.com\"><b>Reset</b></a>");
+  }
+
+  @Test
+  void plainTextTemplatesDoNotEscape() {
+    TextTemplate template = TextTemplate.compile("{{name}} says \"hi\"", false);
+
+    assertThat(render(template, Map.of("name", "<Ann>"))).isEqualTo("<Ann> says \"hi\"");
+  }
+
+  @Test
+  void reportsPlaceholdersAndLiteralLength() {
+    TextTemplate template = TextTemplate.compile("{{a}}-{{b}}-{{a}}", false);
+
+    assertThat(template.getPlaceholders()).containsExactly("a", "b");
+    assertThat(template.getLiteralLength()).isEqualTo(2);
+  }
+
+  @Test
+  void templateWithoutPlaceholdersIsItsOwnOutput() {
+    TextTemplate template = TextTemplate.compile("No {placeholders} here", true);
+
+    assertThat(render(template, Map.of())).isEqualTo("No {placeholders} here");
+  }
+
+  @Test
+  void malformedPlaceholdersAreRejectedWhenCompiled() {
+    assertThatIllegalArgumentException().isThrownBy(() -> TextTemplate.compile("Hi {{name", true))
+        .withMessage("Unclosed placeholder at offset 3");
+    assertThatIllegalArgumentException().isThrownBy(() -> TextTemplate.compile("Hi {{ }}", true))
+        .withMessage("Empty placeholder at offset 3");
+    assertThatIllegalArgumentException().isThrownBy(() -> TextTemplate.compile("{{name:bold}}", true))
+        .withMessage("Unknown placeholder type 'bold' at offset 0");
+  }
+
+  @Test
+  void missingOrMistypedValuesAreRejectedWhenRendered() {
+    TextTemplate template = TextTemplate.compile("Ends {{end:date}}", true);
+
+    assertThatIllegalArgumentException().isThrownBy(() -> render(template, Map.of()))
+        .withMessage("No value for placeholder: end");
+    assertThatIllegalArgumentException().isThrownBy(() -> render(template, Map.of("end", "tomorrow")))
+        .withMessage("Placeholder end needs a date, got String");
+  }
+
+  private String render(TextTemplate template, Map<String, ?> values) {
+    StringBuilder out = new StringBuilder(template.getLiteralLength());
+    template.render(values, out);
+    return out.toString();
+  }
+}